@@ -0,0 +1,38 @@
+package com.cristina.interview.jpmorgan.stocks.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options, always adding the GC profiler so the allocation rate
+ * of each benchmark is reported next to its score.
+ *
+ * @author CristinaGroapa
+ */
+public final class BenchmarkMain {
+
+    /**
+     * Utility class.
+     */
+    private BenchmarkMain() {
+    }
+
+    /**
+     * @param args the JMH command line options
+     * @throws CommandLineOptionException if the options are not valid
+     * @throws RunnerException if the benchmarks fail
+     */
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+        if (commandLineOptions.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
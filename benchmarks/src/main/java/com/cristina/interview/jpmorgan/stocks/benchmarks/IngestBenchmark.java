@@ -0,0 +1,75 @@
+package com.cristina.interview.jpmorgan.stocks.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cristina.interview.jpmorgan.stocks.TradeBatch;
+import com.cristina.interview.jpmorgan.stocks.Transaction;
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Measures adding transactions to the service, one at a time and in batches. Run with <code>-t N</code> to add
+ * transactions from N threads at once.
+ *
+ * @author CristinaGroapa
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=log4j-benchmarks.properties")
+public class IngestBenchmark {
+
+    /** The number of transactions per batch */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * A batch reused by each benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class BatchState {
+
+        /** The batch */
+        final TradeBatch batch = new TradeBatch(BATCH_SIZE);
+    }
+
+    /**
+     * Adds one transaction.
+     *
+     * @param market the market
+     * @param cursor the stock to add the transaction to
+     */
+    @Benchmark
+    public void addTransaction(final MarketState market, final SymbolCursor cursor) {
+        market.service.addTransaction(cursor.next(market), new Transaction(100, TransactionType.BUY, 12.5));
+    }
+
+    /**
+     * Adds a batch of transactions spread over several stocks.
+     *
+     * @param market the market
+     * @param cursor the stocks to add the transactions to
+     * @param state the batch to fill
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void addTransactions(final MarketState market, final SymbolCursor cursor, final BatchState state) {
+        TradeBatch batch = state.batch;
+        batch.clear();
+        long nowNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(cursor.next(market), nowNanos, 100, TransactionType.SELL, 12.5);
+        }
+        market.service.addTransactions(batch);
+    }
+}
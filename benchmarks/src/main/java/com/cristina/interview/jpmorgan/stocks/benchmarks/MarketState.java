@@ -0,0 +1,68 @@
+package com.cristina.interview.jpmorgan.stocks.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.cristina.interview.jpmorgan.stocks.StockExchangeServiceImpl;
+import com.cristina.interview.jpmorgan.stocks.StockSymbol;
+import com.cristina.interview.jpmorgan.stocks.Transaction;
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * A stock exchange service shared by all the benchmark threads, with a given number of listed stocks, each with a
+ * given number of transactions inside its price window.
+ *
+ * @author CristinaGroapa
+ */
+@State(Scope.Benchmark)
+public class MarketState {
+
+    /** The number of listed stocks */
+    @Param({ "5", "100", "1000", "10000" })
+    public int symbolCount;
+
+    /** The number of transactions inside the price window of each stock when the benchmark starts */
+    @Param({ "10", "1000" })
+    public int windowDepth;
+
+    /** The service under test */
+    public StockExchangeServiceImpl service;
+
+    /** The symbols of the listed stocks */
+    public StockSymbol[] symbols;
+
+    /**
+     * Lists the stocks and fills their price windows. The transactions are spread over the last 10 minutes, so they
+     * stay inside the 15 minute price window for the whole benchmark run.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.service = new StockExchangeServiceImpl();
+        this.symbols = new StockSymbol[this.symbolCount];
+        for (int i = 0; i < this.symbolCount; i++) {
+            this.symbols[i] = StockSymbol.valueOf("BENCH" + i);
+            if (i % 5 == 3) {
+                this.service.createPreferredStock(this.symbols[i], 100.0, 8.0, 0.02);
+            } else {
+                this.service.createCommonStock(this.symbols[i], 100.0, 8.0);
+            }
+        }
+
+        long nowNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        long spreadNanos = TimeUnit.MINUTES.toNanos(10);
+        for (int i = 0; i < this.symbolCount; i++) {
+            for (int j = 0; j < this.windowDepth; j++) {
+                long timestampNanos = nowNanos - spreadNanos + spreadNanos / this.windowDepth * j;
+                TransactionType type = j % 2 == 0 ? TransactionType.BUY : TransactionType.SELL;
+                this.service.addTransaction(this.symbols[i], new Transaction(timestampNanos, 100 + j % 7, type,
+                                                                             10.0 + j % 13));
+            }
+        }
+        this.service.calculateGeometricMean();
+    }
+}
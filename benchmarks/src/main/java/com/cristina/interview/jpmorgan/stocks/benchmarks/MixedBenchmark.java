@@ -0,0 +1,76 @@
+package com.cristina.interview.jpmorgan.stocks.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction;
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Measures transactions being added while the calculations are queried, at two different trade rates: an
+ * ingest-heavy mix (market open) and a query-heavy mix (dashboards during a quiet session).
+ *
+ * @author CristinaGroapa
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=log4j-benchmarks.properties")
+public class MixedBenchmark {
+
+    /**
+     * @param market the market
+     * @param cursor the stock to add the transaction to
+     */
+    @Benchmark
+    @Group("ingestHeavy")
+    @GroupThreads(3)
+    public void ingestHeavyAdd(final MarketState market, final SymbolCursor cursor) {
+        market.service.addTransaction(cursor.next(market), new Transaction(100, TransactionType.BUY, 12.5));
+    }
+
+    /**
+     * @param market the market
+     * @param cursor the stock to query
+     * @return the stock price
+     */
+    @Benchmark
+    @Group("ingestHeavy")
+    @GroupThreads(1)
+    public Double ingestHeavyQuery(final MarketState market, final SymbolCursor cursor) {
+        return market.service.calculateStockPrice(cursor.next(market));
+    }
+
+    /**
+     * @param market the market
+     * @param cursor the stock to add the transaction to
+     */
+    @Benchmark
+    @Group("queryHeavy")
+    @GroupThreads(1)
+    public void queryHeavyAdd(final MarketState market, final SymbolCursor cursor) {
+        market.service.addTransaction(cursor.next(market), new Transaction(100, TransactionType.BUY, 12.5));
+    }
+
+    /**
+     * @param market the market
+     * @param cursor the stock to query
+     * @return the stock price
+     */
+    @Benchmark
+    @Group("queryHeavy")
+    @GroupThreads(3)
+    public Double queryHeavyQuery(final MarketState market, final SymbolCursor cursor) {
+        return market.service.calculateStockPrice(cursor.next(market));
+    }
+}
@@ -0,0 +1,153 @@
+package com.cristina.interview.jpmorgan.stocks.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cristina.interview.jpmorgan.stocks.ScreenResult;
+import com.cristina.interview.jpmorgan.stocks.StockScreener;
+
+/**
+ * Measures the calculations offered by the service. Run with <code>-t N</code> to query from N threads at once.
+ *
+ * @author CristinaGroapa
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=log4j-benchmarks.properties")
+public class QueryBenchmark {
+
+    /**
+     * @param market the market
+     * @param cursor the stock to query
+     * @return the stock price
+     */
+    @Benchmark
+    public Double calculateStockPrice(final MarketState market, final SymbolCursor cursor) {
+        return market.service.calculateStockPrice(cursor.next(market));
+    }
+
+    /**
+     * @param market the market
+     * @param cursor the stock to query
+     * @return the dividend yield
+     */
+    @Benchmark
+    public Double calculateDividendYield(final MarketState market, final SymbolCursor cursor) {
+        return market.service.calculateDividendYield(cursor.next(market));
+    }
+
+    /**
+     * @param market the market
+     * @param cursor the stock to query
+     * @return the P/E Ratio
+     */
+    @Benchmark
+    public Double calculatePERatio(final MarketState market, final SymbolCursor cursor) {
+        return market.service.calculatePERatio(cursor.next(market));
+    }
+
+    /**
+     * @param market the market
+     * @return the geometric mean of all the stock prices
+     */
+    @Benchmark
+    public Double calculateGeometricMean(final MarketState market) {
+        return market.service.calculateGeometricMean();
+    }
+
+    /**
+     * @param market the market
+     * @param cursor the stock to query
+     * @return the stock price, unboxed
+     */
+    @Benchmark
+    public double calculateStockPriceAsDouble(final MarketState market, final SymbolCursor cursor) {
+        return market.service.calculateStockPriceAsDouble(cursor.next(market));
+    }
+
+    /**
+     * @param market the market
+     * @param buffers the arrays receiving the metrics
+     * @return the number of stocks scanned
+     */
+    @Benchmark
+    public int scanMarket(final MarketState market, final MetricsBuffers buffers) {
+        return market.service.fillMetrics(market.symbols, buffers.stockPrices, buffers.dividendYields,
+                                          buffers.peRatios);
+    }
+
+    /**
+     * @param market the market
+     * @param screen the screener
+     * @return the stocks with the highest dividend yields
+     */
+    @Benchmark
+    public ScreenResult screenMarket(final MarketState market, final MarketScreen screen) {
+        return screen.screener.screen(StockScreener.ALL, StockScreener.Metric.DIVIDEND_YIELD, true, 10);
+    }
+
+    /**
+     * A screener of all the listed stocks, with its own fork-join pool, used by each benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class MarketScreen {
+
+        /** The screener */
+        StockScreener screener;
+
+        /**
+         * @param market the market to screen
+         */
+        @Setup
+        public void setUp(final MarketState market) {
+            this.screener = new StockScreener(market.service);
+        }
+
+        /**
+         * Stops the threads of the screener.
+         */
+        @TearDown
+        public void tearDown() {
+            this.screener.close();
+        }
+    }
+
+    /**
+     * The arrays receiving the metrics of all the listed stocks, reused by each benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class MetricsBuffers {
+
+        /** Receives the stock prices */
+        double[] stockPrices;
+
+        /** Receives the dividend yields */
+        double[] dividendYields;
+
+        /** Receives the P/E Ratios */
+        double[] peRatios;
+
+        /**
+         * @param market the market to scan
+         */
+        @Setup
+        public void setUp(final MarketState market) {
+            this.stockPrices = new double[market.symbols.length];
+            this.dividendYields = new double[market.symbols.length];
+            this.peRatios = new double[market.symbols.length];
+        }
+    }
+}
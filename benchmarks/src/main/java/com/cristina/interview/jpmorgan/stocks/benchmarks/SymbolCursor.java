@@ -0,0 +1,32 @@
+package com.cristina.interview.jpmorgan.stocks.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.cristina.interview.jpmorgan.stocks.StockSymbol;
+
+/**
+ * Walks through the listed stocks, so each benchmark thread spreads its operations over all of them. Every thread
+ * starts from a different stock.
+ *
+ * @author CristinaGroapa
+ */
+@State(Scope.Thread)
+public class SymbolCursor {
+
+    /** A large prime, used to spread the threads' starting points */
+    private static final int STRIDE = 7919;
+
+    /** The position of the next stock */
+    private int position = (int) (Thread.currentThread().getId() * STRIDE);
+
+    /**
+     * @param market the market to walk through
+     * @return the next stock's symbol
+     */
+    public StockSymbol next(final MarketState market) {
+        StockSymbol[] symbols = market.symbols;
+        this.position = (this.position + 1) & Integer.MAX_VALUE;
+        return symbols[this.position % symbols.length];
+    }
+}
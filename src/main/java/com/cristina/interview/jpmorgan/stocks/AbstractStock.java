@@ -1,139 +1,677 @@
 package com.cristina.interview.jpmorgan.stocks;
 
-import java.util.ArrayDeque;
-import java.util.Date;
-import java.util.Deque;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
-import org.apache.commons.lang3.time.DateUtils;
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
 
 /**
  * Common representation of a stock.
+ * <p>
+ * A stock is safe to use from multiple threads. Changes - i.e. adding transactions and setting the last dividend -
+ * are serialised by a lock which belongs to the stock, so writers of different stocks never contend with each other.
+ * After each change the state needed by the calculations - and the metrics derived from it - is published through a
+ * {@link StockStatePublisher}, which the calculations read without locking - with one exception: the published price
+ * only ages when a trade is added, so when transactions have aged out of the price window since the last change, the
+ * first calculation to notice takes the lock to advance the window and publish the aged state. Aging the window needs
+ * the trades leaving it, which only the lock holder may read, so it cannot be derived by a reader on its own. The
+ * cost is bounded by the trades rather than by the reads: the lock is taken at most once each time the oldest trade
+ * of the window ages out, by one reader, the others waiting for it then reading the republished state.
  *
  * @author CristinaGroapa
  */
 public abstract class AbstractStock {
 
-    /** The historical time interval (in minutes) to be taken into consideration for calculating the stock price. */
-    private static final int PRICE_TIME_INTERVAL = 15;
+    /** Updater for {@link #addedCount} */
+    private static final AtomicLongFieldUpdater<AbstractStock> ADDED =
+            AtomicLongFieldUpdater.newUpdater(AbstractStock.class, "addedCount");
+
+    /** Updater for {@link #rejectedCount} */
+    private static final AtomicLongFieldUpdater<AbstractStock> REJECTED =
+            AtomicLongFieldUpdater.newUpdater(AbstractStock.class, "rejectedCount");
 
     /** This stock's symbol */
     private final StockSymbol symbol;
 
     /**
-     * A record of all the transactions that took place for this stock. The most recent are at the head of the list.
-     * <b>NB I assumed that the transactions are added in real-time, i.e. in chronological order, which is why I am not
-     * sorting
-     * the queue by the timestamp. Otherwise the transaction history could be a sorted collection and Transaction could
-     * implement Comparable.</b>
+     * A record of the transactions that took place for this stock, kept according to the retention policy. The store
+     * is in chronological order, the most recent transactions being at its head; transactions arriving late - e.g. from
+     * several feed handlers - are inserted at their place, as long as the retention policy tolerates their lateness.
      */
-    private final Deque<Transaction> transactionHistory;
+    private final TradeStore transactionHistory;
+
+    /** The lookback windows over which the prices of this stock are kept */
+    private final PriceWindows priceWindows;
+
+    /** Keeps the running sums of each lookback window, in the order of {@link PriceWindows#getLookbacksNanos()} */
+    private final WindowedPriceAggregator[] windowAggregators;
+
+    /** Keeps the running sums used to calculate the stock price; one of the {@link #windowAggregators} */
+    private final WindowedPriceAggregator priceAggregator;
+
+    /** The OHLCV bars built from the transactions, one series per {@link BarInterval} */
+    private final BarSeries[] bars;
+
+    /** Decides which transactions are evicted from the transaction history */
+    private final RetentionPolicy retentionPolicy;
+
+    /** Gives the current time - i.e. the end of the price window */
+    private final MarketClock clock;
 
     /** This stock's par value */
-    private final Double parValue;
+    private final double parValue;
 
     /** This stock's last dividend */
-    private Double lastDividend;
+    private double lastDividend;
+
+    /** Serialises the changes made to this stock */
+    private final Object lock;
+
+    /** Publishes the state of this stock as of its last change to the calculations */
+    private final StockStatePublisher state;
+
+    /** The number of transactions added; only written while holding the lock */
+    private volatile long addedCount;
+
+    /** The number of transactions rejected for arriving too late; only written while holding the lock */
+    private volatile long rejectedCount;
 
     /**
-     * Constructor that receives all necessary details to create a new stock.
+     * The membership of this stock in the all-share index, if any. Set before the stock is made visible to other
+     * threads.
+     */
+    private GeometricMeanIndex.Member indexMember;
+
+    /**
+     * Pushes the metrics of this stock to their subscribers, if any. Set before the stock is made visible to other
+     * threads.
+     */
+    private StockMetricsPublisher metricsPublisher;
+
+    /**
+     * Constructor that receives all necessary details to create a new stock, with the
+     * {@link StockSettings#defaults() default settings}.
      *
      * @param symbol the stock's symbol
      * @param parValue the stock's par value
      * @param lastDividend the stock's last dividend
      */
     public AbstractStock(final StockSymbol symbol, final double parValue, final double lastDividend) {
+        this(symbol, parValue, lastDividend, StockSettings.defaults());
+    }
+
+    /**
+     * Constructor that receives all necessary details to create a new stock and its settings - i.e. the policy for
+     * keeping its transactions, the clock giving the end of its price windows and the lookbacks of the windows.
+     *
+     * @param symbol the stock's symbol
+     * @param parValue the stock's par value
+     * @param lastDividend the stock's last dividend
+     * @param settings the stock's settings; the trades added to the stock are reported to their clock
+     */
+    public AbstractStock(final StockSymbol symbol, final double parValue, final double lastDividend,
+            final StockSettings settings) {
+        PriceWindows priceWindows = settings.getPriceWindows();
         this.symbol = symbol;
         this.parValue = parValue;
         this.lastDividend = lastDividend;
-        this.transactionHistory = new ArrayDeque<>();
+        this.retentionPolicy = settings.getRetentionPolicy();
+        this.clock = settings.getClock();
+        this.transactionHistory = new TradeStore();
+        this.priceWindows = priceWindows;
+        long[] lookbacksNanos = priceWindows.getLookbacksNanos();
+        this.windowAggregators = new WindowedPriceAggregator[lookbacksNanos.length];
+        for (int i = 0; i < lookbacksNanos.length; i++) {
+            this.windowAggregators[i] = new WindowedPriceAggregator(this.transactionHistory, lookbacksNanos[i]);
+        }
+        this.priceAggregator = this.windowAggregators[priceWindows.indexOf(priceWindows.getStockPriceLookbackNanos())];
+        BarInterval[] intervals = BarInterval.values();
+        this.bars = new BarSeries[intervals.length];
+        for (int i = 0; i < intervals.length; i++) {
+            this.bars[i] = new BarSeries(intervals[i], BarSeries.DEFAULT_CAPACITY);
+        }
+        this.lock = new Object();
+        this.state = new StockStatePublisher(lastDividend);
+    }
+
+    /**
+     * @return the retention policy which keeps the transactions needed for the {@link PriceWindows#defaultWindows()
+     *         default price windows}
+     */
+    public static RetentionPolicy defaultRetentionPolicy() {
+        return RetentionPolicy.byAge(PriceWindows.defaultWindows().getLongestLookbackNanos(), TimeUnit.NANOSECONDS);
     }
 
     /**
-     * Calculates the dividend yield for this stock.
+     * Returns the dividend yield for this stock. The dividend yield is calculated when the ticker price or the last
+     * dividend change, so this is a single read.
      *
+     * @return the dividend yield, or {@link Double#NaN} if there are no transactions
+     */
+    public double calculateDividendYield() {
+        return this.state.getDividendYield();
+    }
+
+    /**
+     * Calculates the dividend yield for this stock from a consistent view of its state. Called while holding the lock
+     * whenever the ticker price or the last dividend change.
+     *
+     * @param tickerPrice this stock's ticker price
+     * @param dividend this stock's last dividend
      * @return the dividend yield
      */
-    public abstract Double calculateDividendYield();
+    protected abstract double calculateDividendYield(double tickerPrice, double dividend);
 
     /**
-     * Calculates the P/E Ratio for this stock.
+     * Returns the P/E Ratio for this stock. The P/E Ratio is calculated when the ticker price or the last dividend
+     * change, so this is a single read.
      *
      * @return the P/E Ratio of this stock, or {@link Double#NaN} if not enough data is available
      */
-    public Double calculatePERatio() {
-        if (this.transactionHistory.isEmpty() || this.lastDividend == null || this.lastDividend == 0.0) {
+    public double calculatePERatio() {
+        return this.state.getPERatio();
+    }
+
+    /**
+     * Calculates the P/E Ratio for this stock from a consistent view of its state.
+     *
+     * @param tickerPrice this stock's ticker price
+     * @param dividend this stock's last dividend
+     * @return the P/E Ratio, or {@link Double#NaN} if the dividend is 0
+     */
+    private static double calculatePERatio(final double tickerPrice, final double dividend) {
+        if (dividend == 0.0) {
             return Double.NaN;
         }
-
-        return getTickerPrice() / getLastDividend();
+        return tickerPrice / dividend;
     }
 
     /**
-     * Calculates the stock price for this stock.
+     * Calculates the stock price for this stock. The price published with the last change is returned as is, unless
+     * transactions have aged out of the price window since then.
      *
      * @return the stock price of this stock, or {@link Double#NaN} if not enough data is available - i.e. there are no
      *         transactions
      */
-    public Double calculateStockPrice() {
-        if (this.transactionHistory.isEmpty()) {
-            return Double.NaN;
+    public double calculateStockPrice() {
+        long nowNanos = this.clock.nowNanos();
+        long readSequence;
+        double stockPrice;
+        do {
+            readSequence = beginCurrentRead(nowNanos);
+            stockPrice = this.state.getStockPrice();
+        } while (!this.state.validate(readSequence));
+        return stockPrice;
+    }
+
+    /**
+     * Reads the stock price, dividend yield and P/E Ratio from one consistent published state, as of a given time. A
+     * caller reading the metrics of many stocks, like the {@link StockScreener}, reads the clock once for all of them.
+     *
+     * @param nowNanos the current time of the {@link #getClock() clock} of this stock, in nanoseconds since the epoch
+     * @param index the index at which the metrics are stored
+     * @param stockPrices receives the stock price
+     * @param dividendYields receives the dividend yield
+     * @param peRatios receives the P/E Ratio
+     */
+    void readMetrics(final long nowNanos, final int index, final double[] stockPrices, final double[] dividendYields,
+            final double[] peRatios) {
+        long readSequence;
+        do {
+            readSequence = beginCurrentRead(nowNanos);
+            stockPrices[index] = this.state.getStockPrice();
+            dividendYields[index] = this.state.getDividendYield();
+            peRatios[index] = this.state.getPERatio();
+        } while (!this.state.validate(readSequence));
+    }
+
+    /**
+     * Begins a lock-free read of the published state, as of a given time. If transactions have aged out of the price
+     * window since the state was published, the window is advanced and the state published again first, while holding
+     * the lock - see the class comment for why readers do not age the window on their own. The readers which noticed
+     * the same aging while another one held the lock find the state already republished and leave it alone, so a
+     * burst of readers publishes the aged state once rather than invalidating each other's reads.
+     *
+     * @param nowNanos the current time of the clock of this stock, in nanoseconds since the epoch
+     * @return the sequence with which to {@link StockStatePublisher#validate validate} the read
+     */
+    private long beginCurrentRead(final long nowNanos) {
+        long windowStartNanos = nowNanos - this.priceAggregator.getWindowNanos();
+        long readSequence = this.state.beginRead();
+        if (this.state.getWindowStartNanos() <= windowStartNanos && this.state.validate(readSequence)) {
+            synchronized (this.lock) {
+                if (this.state.getWindowStartNanos() <= windowStartNanos) {
+                    this.priceAggregator.advanceTo(nowNanos);
+                    publishState();
+                }
+            }
+            readSequence = this.state.beginRead();
         }
+        return readSequence;
+    }
 
-        Date timeIntervalStart = DateUtils.addMinutes(new Date(), -1 * PRICE_TIME_INTERVAL);
-        Iterator<Transaction> iterator = this.transactionHistory.iterator();
+    /**
+     * Calculates the volume weighted price of this stock over one of its lookback windows.
+     *
+     * @param lookback the lookback of the window
+     * @param unit the time unit of the lookback
+     * @return the volume weighted price, or {@link Double#NaN} if there are no transactions inside the window
+     * @throws IllegalArgumentException if this stock has no window with the given lookback
+     */
+    public double calculateVwap(final long lookback, final TimeUnit unit) {
+        WindowedPriceAggregator aggregator = windowAggregator(unit.toNanos(lookback));
+        if (aggregator == this.priceAggregator) {
+            return calculateStockPrice();
+        }
+        synchronized (this.lock) {
+            return aggregator.calculatePrice(this.clock.nowNanos());
+        }
+    }
 
-        double stockPriceSum = 0.0d;
-        long stockQuantitySum = 0l;
-        boolean intervalFinished = false;
+    /**
+     * Calculates the time weighted price of this stock over one of its lookback windows - i.e. the price of each
+     * transaction is weighted by the time until the next transaction, or until now for the most recent one.
+     *
+     * @param lookback the lookback of the window
+     * @param unit the time unit of the lookback
+     * @return the time weighted price, or {@link Double#NaN} if there are no transactions inside the window
+     * @throws IllegalArgumentException if this stock has no window with the given lookback
+     */
+    public double calculateTwap(final long lookback, final TimeUnit unit) {
+        WindowedPriceAggregator aggregator = windowAggregator(unit.toNanos(lookback));
+        synchronized (this.lock) {
+            double twap = aggregator.calculateTimeWeightedPrice(this.clock.nowNanos());
+            if (aggregator == this.priceAggregator) {
+                // the stock price window may have moved
+                publishState();
+            }
+            return twap;
+        }
+    }
 
-        while (iterator.hasNext() && !intervalFinished) {
-            Transaction tx = iterator.next();
-            if (tx.getTimestamp().after(timeIntervalStart)) {
-                long quantity = tx.getQuantityOfShares();
-                double price = tx.getPrice();
-                stockPriceSum += quantity * price;
-                stockQuantitySum += quantity;
-            } else {
-                intervalFinished = true;
+    /**
+     * Calculates the order flow of this stock over one of its lookback windows, from the running sums which the window
+     * keeps for each side.
+     *
+     * @param lookback the lookback of the window
+     * @param unit the time unit of the lookback
+     * @return the order flow
+     * @throws IllegalArgumentException if this stock has no window with the given lookback
+     */
+    public OrderFlow calculateOrderFlow(final long lookback, final TimeUnit unit) {
+        WindowedPriceAggregator aggregator = windowAggregator(unit.toNanos(lookback));
+        long quantitySum;
+        double buyPriceQuantitySum;
+        long buyQuantitySum;
+        double sellPriceQuantitySum;
+        long sellQuantitySum;
+        synchronized (this.lock) {
+            aggregator.advanceTo(this.clock.nowNanos());
+            if (aggregator == this.priceAggregator) {
+                // the stock price window may have moved
+                publishState();
             }
+            quantitySum = aggregator.getQuantitySum();
+            buyPriceQuantitySum = aggregator.getBuyPriceQuantitySum();
+            buyQuantitySum = aggregator.getBuyQuantitySum();
+            sellPriceQuantitySum = aggregator.getSellPriceQuantitySum();
+            sellQuantitySum = aggregator.getSellQuantitySum();
+        }
+        return new OrderFlow(this.symbol, buyQuantitySum, sellQuantitySum,
+                             buyQuantitySum == 0 ? Double.NaN : buyPriceQuantitySum / buyQuantitySum,
+                             sellQuantitySum == 0 ? Double.NaN : sellPriceQuantitySum / sellQuantitySum,
+                             (double) (buyQuantitySum - sellQuantitySum) / quantitySum,
+                             buyPriceQuantitySum - sellPriceQuantitySum);
+    }
+
+    /**
+     * @return the lookback windows over which the prices of this stock are kept
+     */
+    public PriceWindows getPriceWindows() {
+        return this.priceWindows;
+    }
+
+    /**
+     * @param lookbackNanos the lookback of a window, in nanoseconds
+     * @return the aggregator of the window
+     * @throws IllegalArgumentException if this stock has no window with the given lookback
+     */
+    private WindowedPriceAggregator windowAggregator(final long lookbackNanos) {
+        int index = this.priceWindows.indexOf(lookbackNanos);
+        if (index < 0) {
+            throw new IllegalArgumentException("Stock " + this.symbol + " has no price window of " + lookbackNanos
+                    + " ns; the windows are " + this.priceWindows);
         }
+        return this.windowAggregators[index];
+    }
 
-        return stockPriceSum / stockQuantitySum;
+    /**
+     * @return a consistent view of the state of this stock, as of its last change
+     */
+    public StockSnapshot getSnapshot() {
+        return this.state.readSnapshot();
     }
 
     /**
-     * @return this stock's ticker price
+     * @return this stock's ticker price, or {@link Double#NaN} if there are no transactions
      */
     protected double getTickerPrice() {
-        return this.transactionHistory.peek().getPrice();
+        return this.state.getTickerPrice();
     }
 
     /**
-     * Adds a transaction to the transaction history.
-     * <b>NB I assumed that the transactions are added in real-time, i.e. in chronological order, which is why I am not
-     * sorting
-     * the queue by the timestamp. Otherwise the transaction history could be a sorted list and Transaction could
-     * implement Comparable.</b>
+     * Adds a transaction to the transaction history and evicts the transactions which are no longer retained according
+     * to this stock's retention policy. A transaction arriving out of order is inserted at its place in chronological
+     * order, unless it is later than the lateness tolerance of the retention policy.
      *
      * @param transaction the transaction to add
+     * @return true if the transaction was added, false if it arrived later than the retention policy tolerates
+     */
+    public boolean addTransaction(final Transaction transaction) {
+        return addTrade(transaction.getTimestampNanos(), transaction.getQuantityOfShares(),
+                        transaction.getTransactionType(), transaction.getPrice());
+    }
+
+    /**
+     * Adds a trade to the transaction history without the need for a {@link Transaction} object. Behaves exactly like
+     * {@link #addTransaction(Transaction)}.
+     *
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param transactionType BUY or SELL
+     * @param price the price per share
+     * @return true if the trade was added, false if it arrived later than the retention policy tolerates
      */
-    public void addTransaction(final Transaction transaction) {
-        this.transactionHistory.push(transaction);
+    public boolean addTrade(final long timestampNanos, final long quantityOfShares,
+            final TransactionType transactionType, final double price) {
+        synchronized (this.lock) {
+            if (!store(timestampNanos, quantityOfShares, TradeStore.toSide(transactionType), price)) {
+                REJECTED.lazySet(this, this.rejectedCount + 1);
+                return false;
+            }
+            ADDED.lazySet(this, this.addedCount + 1);
+            evictTransactions(this.transactionHistory.newestTimestamp());
+            publishState();
+        }
+        this.clock.onTrade(timestampNanos);
+        notifyPriceChanged();
+        return true;
+    }
+
+    /**
+     * Adds a range of trades from a batch to the transaction history. The lock is taken, the retention policy applied
+     * and the state published only once for the whole range.
+     *
+     * @param batch the batch holding the trades, grouped by symbol
+     * @param from the first position of the range in the grouped order of the batch (inclusive)
+     * @param to the last position of the range in the grouped order of the batch (exclusive)
+     * @return the number of trades added; the others arrived later than the retention policy tolerates, and are
+     *         {@link TradeBatch#reject(int) marked as rejected} in the batch
+     */
+    int addTrades(final TradeBatch batch, final int from, final int to) {
+        if (from >= to) {
+            return 0;
+        }
+        int added = 0;
+        long latestNanos = Long.MIN_VALUE;
+        synchronized (this.lock) {
+            for (int position = from; position < to; position++) {
+                int index = batch.orderedIndex(position);
+                if (store(batch.timestamp(index), batch.quantity(index), batch.side(index), batch.price(index))) {
+                    latestNanos = Math.max(latestNanos, batch.timestamp(index));
+                    added++;
+                } else {
+                    batch.reject(index);
+                }
+            }
+            if (added < to - from) {
+                REJECTED.lazySet(this, this.rejectedCount + to - from - added);
+            }
+            if (added == 0) {
+                return 0;
+            }
+            ADDED.lazySet(this, this.addedCount + added);
+            evictTransactions(this.transactionHistory.newestTimestamp());
+            publishState();
+        }
+        this.clock.onTrade(latestNanos);
+        notifyPriceChanged();
+        return added;
+    }
+
+    /**
+     * Returns the most recent OHLCV bars of this stock at a given resolution. Only the intervals with transactions have
+     * a bar, and only the last {@value BarSeries#DEFAULT_CAPACITY} bars are kept at each resolution.
+     *
+     * @param interval the resolution of the bars
+     * @param count the maximum number of bars to return
+     * @return the bars, oldest first
+     */
+    public List<Bar> getBars(final BarInterval interval, final int count) {
+        synchronized (this.lock) {
+            return this.bars[interval.ordinal()].lastBars(count);
+        }
+    }
+
+    /**
+     * Stores a trade in the transaction history, adds it to the price windows and to the bars: a trade arriving in
+     * order is appended, a late one is inserted at its place unless it is too late. Must be called while holding the
+     * lock.
+     *
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param side the trade side, as stored in a {@link TradeStore}
+     * @param price the price per share
+     * @return true if the trade was stored, false if it arrived too late
+     */
+    private boolean store(final long timestampNanos, final long quantityOfShares, final byte side,
+            final double price) {
+        long newestNanos = this.transactionHistory.newestTimestamp();
+        if (timestampNanos >= newestNanos) {
+            long sequence = this.transactionHistory.append(timestampNanos, quantityOfShares, side, price);
+            for (WindowedPriceAggregator aggregator : this.windowAggregators) {
+                aggregator.add(sequence);
+            }
+        } else if (this.retentionPolicy.isTooLate(timestampNanos, newestNanos)) {
+            return false;
+        } else {
+            long sequence = this.transactionHistory.insert(timestampNanos, quantityOfShares, side, price);
+            for (WindowedPriceAggregator aggregator : this.windowAggregators) {
+                aggregator.insert(sequence);
+            }
+        }
+        for (BarSeries series : this.bars) {
+            series.add(timestampNanos, quantityOfShares, price);
+        }
+        return true;
+    }
+
+    /**
+     * Lets the all-share index and the subscribers know that the stock price may have changed.
+     */
+    private void notifyPriceChanged() {
+        if (this.indexMember != null) {
+            this.indexMember.priceChanged();
+        }
+        notifyMetricsChanged();
+    }
+
+    /**
+     * Lets the subscribers know that the metrics of this stock may have changed.
+     */
+    private void notifyMetricsChanged() {
+        if (this.metricsPublisher != null) {
+            this.metricsPublisher.metricsChanged();
+        }
+    }
+
+    /**
+     * @param metricsPublisher pushes the metrics of this stock to their subscribers
+     */
+    void setMetricsPublisher(final StockMetricsPublisher metricsPublisher) {
+        this.metricsPublisher = metricsPublisher;
+    }
+
+    /**
+     * @param indexMember the membership of this stock in the all-share index
+     */
+    void setIndexMember(final GeometricMeanIndex.Member indexMember) {
+        this.indexMember = indexMember;
+    }
+
+    /**
+     * @return the membership of this stock in the all-share index, or null if it is not part of one
+     */
+    GeometricMeanIndex.Member getIndexMember() {
+        return this.indexMember;
+    }
+
+    /**
+     * @return the timestamp of the oldest transaction inside the price window, as of the last change, in nanoseconds
+     *         since the epoch, or {@link Long#MAX_VALUE} if the window is empty
+     */
+    long getWindowStartNanos() {
+        return this.state.getWindowStartNanos();
+    }
+
+    /**
+     * @return the length of the price window, in nanoseconds
+     */
+    long getPriceWindowNanos() {
+        return this.priceAggregator.getWindowNanos();
+    }
+
+    /**
+     * Publishes the current state of this stock to the calculations. Must be called while holding the lock.
+     */
+    private void publishState() {
+        TradeStore store = this.transactionHistory;
+        double tickerPrice = store.isEmpty() ? Double.NaN : store.price(store.head() - 1);
+        double dividend = this.lastDividend;
+        double dividendYield;
+        double peRatio;
+        if (Double.compare(tickerPrice, this.state.getTickerPrice()) == 0
+                && Double.compare(dividend, this.state.getLastDividend()) == 0) {
+            // the inputs did not change - e.g. a trade at the same price, or the window aging
+            dividendYield = this.state.getDividendYield();
+            peRatio = this.state.getPERatio();
+        } else if (Double.isNaN(tickerPrice)) {
+            dividendYield = Double.NaN;
+            peRatio = Double.NaN;
+        } else {
+            dividendYield = calculateDividendYield(tickerPrice, dividend);
+            peRatio = calculatePERatio(tickerPrice, dividend);
+        }
+        this.state.publish(tickerPrice, this.priceAggregator.getPriceQuantitySum(),
+                           this.priceAggregator.getQuantitySum(), this.priceAggregator.getWindowStartTimestamp(),
+                           dividend, dividendYield, peRatio);
+    }
+
+    /**
+     * Evicts the oldest transactions from the transaction history, as long as the retention policy says so.
+     *
+     * @param newestNanos the timestamp of the most recent transaction, in nanoseconds since the epoch
+     */
+    private void evictTransactions(final long newestNanos) {
+        long tail = this.transactionHistory.tail();
+        long head = this.transactionHistory.head();
+        while (this.retentionPolicy.shouldEvict((int) (head - tail), this.transactionHistory.timestamp(tail),
+                                                newestNanos)) {
+            tail++;
+        }
+        if (tail != this.transactionHistory.tail()) {
+            for (WindowedPriceAggregator aggregator : this.windowAggregators) {
+                aggregator.evictTo(tail);
+            }
+            this.transactionHistory.evictTo(tail);
+        }
+    }
+
+    /**
+     * @return the retentionPolicy
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        return this.retentionPolicy;
+    }
+
+    /**
+     * @return the number of transactions currently kept in the transaction history
+     */
+    public int getTransactionCount() {
+        synchronized (this.lock) {
+            return this.transactionHistory.size();
+        }
+    }
+
+    /**
+     * Copies the transactions of the history which took place after a given time, oldest first, to a batch.
+     *
+     * @param batch the batch receiving the transactions
+     * @param afterNanos only the transactions after this time, in nanoseconds since the epoch, are copied
+     * @return the number of transactions copied
+     */
+    int copyTransactions(final TradeBatch batch, final long afterNanos) {
+        synchronized (this.lock) {
+            TradeStore store = this.transactionHistory;
+            long first = store.head();
+            while (first > store.tail() && store.timestamp(first - 1) > afterNanos) {
+                first--;
+            }
+            for (long sequence = first; sequence < store.head(); sequence++) {
+                batch.add(this.symbol, store.timestamp(sequence), store.quantity(sequence), store.side(sequence),
+                          store.price(sequence));
+            }
+            return (int) (store.head() - first);
+        }
+    }
+
+    /**
+     * @return the number of transactions added to this stock since it was created
+     */
+    public long getAddedCount() {
+        return this.addedCount;
+    }
+
+    /**
+     * @return the number of transactions rejected by this stock for arriving later than its retention policy tolerates
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount;
+    }
+
+    /**
+     * @return the number of transactions inside the price window, as of the last change
+     */
+    public int getWindowDepth() {
+        synchronized (this.lock) {
+            return this.priceAggregator.getTradeCount();
+        }
+    }
+
+    /**
+     * @return the clock giving the current time to this stock
+     */
+    MarketClock getClock() {
+        return this.clock;
     }
 
     /**
      * @return the lastDividend
      */
     public double getLastDividend() {
-        return this.lastDividend;
+        return this.state.getLastDividend();
     }
 
     /**
      * @param lastDividend the lastDividend to set
      */
     public void setLastDividend(final double lastDividend) {
-        this.lastDividend = lastDividend;
+        synchronized (this.lock) {
+            this.lastDividend = lastDividend;
+            publishState();
+        }
+        notifyMetricsChanged();
     }
 
     /**
@@ -147,7 +685,7 @@ public abstract class AbstractStock {
      * @return true if the transaction history is not empty, false otherwise
      */
     public boolean hasTransactions() {
-        return !this.transactionHistory.isEmpty();
+        return !Double.isNaN(this.state.getTickerPrice());
     }
 
     /**
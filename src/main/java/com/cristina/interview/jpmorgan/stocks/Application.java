@@ -1,9 +1,31 @@
 package com.cristina.interview.jpmorgan.stocks;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Starts the GBCE service and serves it over the {@link ExchangeProtocol}. The server only listens on the loopback
+ * interface unless an address to bind to is given explicitly - e.g. <code>0.0.0.0</code> for all interfaces.
+ *
+ * @author CristinaGroapa
+ */
 public class Application {
 
-    public static void main(final String[] args) {
+    /** The port listened on when none is given */
+    private static final int DEFAULT_PORT = 7070;
+
+    /**
+     * @param args the port to listen on and the address to bind to, both optional
+     * @throws IOException if the server fails
+     */
+    public static void main(final String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InetAddress bindAddress = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
         StockExchangeService service = new StockExchangeServiceImplGBCE();
+        try (ExchangeServer server = new ExchangeServer(service, new InetSocketAddress(bindAddress, port))) {
+            server.serve();
+        }
     }
 
 }
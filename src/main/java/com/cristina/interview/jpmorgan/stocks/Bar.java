@@ -0,0 +1,120 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * An immutable OHLCV bar: the open, high, low and close prices, the volume and the volume weighted price of the trades
+ * of a stock during a time interval.
+ *
+ * @author CristinaGroapa
+ */
+public final class Bar {
+
+    /** The start of the interval, in nanoseconds since the epoch */
+    private final long startNanos;
+
+    /** The length of the interval */
+    private final BarInterval interval;
+
+    /** The price of the first trade of the interval */
+    private final double open;
+
+    /** The highest price of the interval */
+    private final double high;
+
+    /** The lowest price of the interval */
+    private final double low;
+
+    /** The price of the last trade of the interval */
+    private final double close;
+
+    /** The number of shares transacted during the interval */
+    private final long volume;
+
+    /** The sum of price * quantity for the trades of the interval */
+    private final double priceQuantitySum;
+
+    /**
+     * Constructor.
+     *
+     * @param startNanos the start of the interval, in nanoseconds since the epoch
+     * @param interval the length of the interval
+     * @param open the price of the first trade of the interval
+     * @param high the highest price of the interval
+     * @param low the lowest price of the interval
+     * @param close the price of the last trade of the interval
+     * @param volume the number of shares transacted during the interval
+     * @param priceQuantitySum the sum of price * quantity for the trades of the interval
+     */
+    Bar(final long startNanos, final BarInterval interval, final double open, final double high, final double low,
+            final double close, final long volume, final double priceQuantitySum) {
+        this.startNanos = startNanos;
+        this.interval = interval;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.priceQuantitySum = priceQuantitySum;
+    }
+
+    /**
+     * @return the start of the interval, in nanoseconds since the epoch
+     */
+    public long getStartNanos() {
+        return this.startNanos;
+    }
+
+    /**
+     * @return the length of the interval
+     */
+    public BarInterval getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * @return the price of the first trade of the interval
+     */
+    public double getOpen() {
+        return this.open;
+    }
+
+    /**
+     * @return the highest price of the interval
+     */
+    public double getHigh() {
+        return this.high;
+    }
+
+    /**
+     * @return the lowest price of the interval
+     */
+    public double getLow() {
+        return this.low;
+    }
+
+    /**
+     * @return the price of the last trade of the interval
+     */
+    public double getClose() {
+        return this.close;
+    }
+
+    /**
+     * @return the number of shares transacted during the interval
+     */
+    public long getVolume() {
+        return this.volume;
+    }
+
+    /**
+     * @return the volume weighted price of the interval
+     */
+    public double getVwap() {
+        return this.priceQuantitySum / this.volume;
+    }
+
+    @Override
+    public String toString() {
+        return "Bar[startNanos=" + this.startNanos + ", interval=" + this.interval + ", open=" + this.open + ", high="
+                + this.high + ", low=" + this.low + ", close=" + this.close + ", volume=" + this.volume + "]";
+    }
+}
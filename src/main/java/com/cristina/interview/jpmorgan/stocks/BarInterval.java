@@ -0,0 +1,42 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The resolutions at which each stock builds OHLCV bars from its trades.
+ *
+ * @author CristinaGroapa
+ */
+public enum BarInterval {
+
+    /** One second bars */
+    ONE_SECOND(TimeUnit.SECONDS.toNanos(1)),
+
+    /** One minute bars */
+    ONE_MINUTE(TimeUnit.MINUTES.toNanos(1)),
+
+    /** Five minute bars */
+    FIVE_MINUTES(TimeUnit.MINUTES.toNanos(5)),
+
+    /** Fifteen minute bars */
+    FIFTEEN_MINUTES(TimeUnit.MINUTES.toNanos(15));
+
+    /** The length of a bar, in nanoseconds */
+    private final long nanos;
+
+    /**
+     * Constructor.
+     *
+     * @param nanos the length of a bar, in nanoseconds
+     */
+    BarInterval(final long nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return the length of a bar, in nanoseconds
+     */
+    public long getNanos() {
+        return this.nanos;
+    }
+}
@@ -0,0 +1,249 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds the OHLCV bars of a stock at one resolution as its trades are added, keeping the most recent bars in
+ * primitive columns organised as a ring buffer. A trade updates the bar of its interval in O(1) - a new bar is started
+ * when a trade falls after the most recent bar. Only the intervals with trades have a bar. A trade arriving late
+ * updates the bar of its interval, or creates it in place if the interval had no trades, as long as the interval is
+ * not older than the oldest bar kept. The columns are allocated when the first trade is added, so stocks without
+ * trades take no room.
+ * <b>NB This class is not thread safe.</b>
+ *
+ * @author CristinaGroapa
+ */
+final class BarSeries {
+
+    /** The default number of bars kept; must be a power of two */
+    static final int DEFAULT_CAPACITY = 64;
+
+    /** The resolution of the bars */
+    private final BarInterval interval;
+
+    /** The number of bars kept; a power of two */
+    private final int capacity;
+
+    /** The start of the interval of each bar, in nanoseconds since the epoch */
+    private long[] starts;
+
+    /** The price of the first trade of each bar */
+    private double[] opens;
+
+    /** The highest price of each bar */
+    private double[] highs;
+
+    /** The lowest price of each bar */
+    private double[] lows;
+
+    /** The price of the last trade of each bar */
+    private double[] closes;
+
+    /** The number of shares transacted during each bar */
+    private long[] volumes;
+
+    /** The sum of price * quantity for the trades of each bar */
+    private double[] priceQuantitySums;
+
+    /** The timestamp of the first trade of each bar, used to place late trades */
+    private long[] firstTimestamps;
+
+    /** The timestamp of the last trade of each bar, used to place late trades */
+    private long[] lastTimestamps;
+
+    /** The sequence number of the next bar to be started */
+    private long head;
+
+    /** The sequence number of the oldest bar kept */
+    private long tail;
+
+    /**
+     * Constructor.
+     *
+     * @param interval the resolution of the bars
+     * @param capacity the number of bars kept; must be a power of two
+     */
+    BarSeries(final BarInterval interval, final int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two, but was " + capacity);
+        }
+        this.interval = interval;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a trade to the bar of its interval.
+     *
+     * @param timestampNanos the trade timestamp, in nanoseconds since the epoch
+     * @param quantity the number of shares transacted
+     * @param price the price per share
+     */
+    void add(final long timestampNanos, final long quantity, final double price) {
+        if (this.starts == null) {
+            allocate();
+        }
+        long startNanos = intervalStart(timestampNanos);
+
+        if (this.head == this.tail || startNanos > this.starts[index(this.head - 1)]) {
+            if (this.head - this.tail == this.capacity) {
+                this.tail++;
+            }
+            start(this.head++, startNanos, timestampNanos, quantity, price);
+            return;
+        }
+
+        long sequence = this.head - 1;
+        while (sequence >= this.tail && this.starts[index(sequence)] > startNanos) {
+            sequence--;
+        }
+        if (sequence >= this.tail && this.starts[index(sequence)] == startNanos) {
+            update(index(sequence), timestampNanos, quantity, price);
+        } else {
+            insert(sequence + 1, startNanos, timestampNanos, quantity, price);
+        }
+    }
+
+    /**
+     * Returns the most recent bars, oldest first.
+     *
+     * @param count the maximum number of bars to return
+     * @return the bars
+     */
+    List<Bar> lastBars(final int count) {
+        int size = (int) Math.min(Math.max(count, 0), this.head - this.tail);
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<Bar> bars = new ArrayList<>(size);
+        for (long sequence = this.head - size; sequence < this.head; sequence++) {
+            int index = index(sequence);
+            bars.add(new Bar(this.starts[index], this.interval, this.opens[index], this.highs[index], this.lows[index],
+                             this.closes[index], this.volumes[index], this.priceQuantitySums[index]));
+        }
+        return bars;
+    }
+
+    /**
+     * @return the number of bars kept
+     */
+    int size() {
+        return (int) (this.head - this.tail);
+    }
+
+    /**
+     * @param timestampNanos a timestamp, in nanoseconds since the epoch
+     * @return the start of the interval holding the timestamp, in nanoseconds since the epoch
+     */
+    private long intervalStart(final long timestampNanos) {
+        long intervalNanos = this.interval.getNanos();
+        long startNanos = timestampNanos / intervalNanos * intervalNanos;
+        return startNanos > timestampNanos ? startNanos - intervalNanos : startNanos;
+    }
+
+    /**
+     * Creates a bar for a trade which falls in an interval without a bar, between existing bars, moving the newer bars
+     * up by one sequence number. If the ring buffer is full, the oldest bar is dropped - unless the new bar would be
+     * the oldest, in which case the trade is ignored.
+     *
+     * @param sequence the sequence number of the new bar
+     * @param startNanos the start of the interval, in nanoseconds since the epoch
+     * @param timestampNanos the trade timestamp, in nanoseconds since the epoch
+     * @param quantity the number of shares transacted
+     * @param price the price per share
+     */
+    private void insert(final long sequence, final long startNanos, final long timestampNanos, final long quantity,
+            final double price) {
+        if (this.head - this.tail == this.capacity) {
+            if (sequence == this.tail) {
+                return;
+            }
+            this.tail++;
+        }
+        for (long moved = this.head; moved > sequence; moved--) {
+            int to = index(moved);
+            int from = index(moved - 1);
+            this.starts[to] = this.starts[from];
+            this.opens[to] = this.opens[from];
+            this.highs[to] = this.highs[from];
+            this.lows[to] = this.lows[from];
+            this.closes[to] = this.closes[from];
+            this.volumes[to] = this.volumes[from];
+            this.priceQuantitySums[to] = this.priceQuantitySums[from];
+            this.firstTimestamps[to] = this.firstTimestamps[from];
+            this.lastTimestamps[to] = this.lastTimestamps[from];
+        }
+        this.head++;
+        start(sequence, startNanos, timestampNanos, quantity, price);
+    }
+
+    /**
+     * Starts a bar with its first trade.
+     *
+     * @param sequence the sequence number of the bar
+     * @param startNanos the start of the interval, in nanoseconds since the epoch
+     * @param timestampNanos the trade timestamp, in nanoseconds since the epoch
+     * @param quantity the number of shares transacted
+     * @param price the price per share
+     */
+    private void start(final long sequence, final long startNanos, final long timestampNanos, final long quantity,
+            final double price) {
+        int index = index(sequence);
+        this.starts[index] = startNanos;
+        this.opens[index] = price;
+        this.highs[index] = price;
+        this.lows[index] = price;
+        this.closes[index] = price;
+        this.volumes[index] = quantity;
+        this.priceQuantitySums[index] = quantity * price;
+        this.firstTimestamps[index] = timestampNanos;
+        this.lastTimestamps[index] = timestampNanos;
+    }
+
+    /**
+     * Adds a trade to an existing bar.
+     *
+     * @param index the index of the bar in the columns
+     * @param timestampNanos the trade timestamp, in nanoseconds since the epoch
+     * @param quantity the number of shares transacted
+     * @param price the price per share
+     */
+    private void update(final int index, final long timestampNanos, final long quantity, final double price) {
+        if (timestampNanos < this.firstTimestamps[index]) {
+            this.firstTimestamps[index] = timestampNanos;
+            this.opens[index] = price;
+        }
+        if (timestampNanos >= this.lastTimestamps[index]) {
+            this.lastTimestamps[index] = timestampNanos;
+            this.closes[index] = price;
+        }
+        this.highs[index] = Math.max(this.highs[index], price);
+        this.lows[index] = Math.min(this.lows[index], price);
+        this.volumes[index] += quantity;
+        this.priceQuantitySums[index] += quantity * price;
+    }
+
+    /**
+     * @param sequence the sequence number of a bar
+     * @return the index of the bar in the columns
+     */
+    private int index(final long sequence) {
+        return (int) sequence & (this.capacity - 1);
+    }
+
+    /**
+     * Allocates the columns.
+     */
+    private void allocate() {
+        this.starts = new long[this.capacity];
+        this.opens = new double[this.capacity];
+        this.highs = new double[this.capacity];
+        this.lows = new double[this.capacity];
+        this.closes = new double[this.capacity];
+        this.volumes = new long[this.capacity];
+        this.priceQuantitySums = new double[this.capacity];
+        this.firstTimestamps = new long[this.capacity];
+        this.lastTimestamps = new long[this.capacity];
+    }
+}
@@ -18,11 +18,21 @@ public class CommonStock extends AbstractStock {
         super(symbol, parValue, lastDividend);
     }
 
+    /**
+     * Constructor with arguments.
+     *
+     * @param symbol this stock's symbol
+     * @param parValue this stock's par value
+     * @param lastDividend this stock's last dividend
+     * @param settings this stock's retention policy, clock and price windows
+     */
+    public CommonStock(final StockSymbol symbol, final double parValue, final double lastDividend,
+            final StockSettings settings) {
+        super(symbol, parValue, lastDividend, settings);
+    }
+
     @Override
-    public Double calculateDividendYield() {
-        if (hasTransactions()) {
-            return getLastDividend() / getTickerPrice();
-        }
-        return Double.NaN;
+    protected double calculateDividendYield(final double tickerPrice, final double dividend) {
+        return dividend / tickerPrice;
     }
 }
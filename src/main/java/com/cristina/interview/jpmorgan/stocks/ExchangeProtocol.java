@@ -0,0 +1,66 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * The binary protocol spoken by the {@link ExchangeServer}. Every message starts with a one byte type, followed by
+ * fixed-size fields in big-endian order. Messages can be pipelined: a client may send any number of messages without
+ * waiting, and the responses come back in the order of the requests.
+ * <ul>
+ * <li>{@link #SYMBOL}: ticker length (1 byte), ticker (ASCII). Response: {@link #SYMBOL}, symbol id (4 bytes), or -1
+ * if the service has no stock for the ticker. The id identifies the symbol in the other messages sent to the same
+ * server.</li>
+ * <li>{@link #TRADE}: symbol id (4 bytes), timestamp in nanoseconds since the epoch (8), quantity (8), side (1, 0 for
+ * BUY and 1 for SELL), price (8). No response: trades are fire-and-forget, for throughput.</li>
+ * <li>{@link #QUERY}: metric (1 byte, e.g. {@link #STOCK_PRICE}), symbol id (4 bytes, ignored for
+ * {@link #GEOMETRIC_MEAN}). Response: {@link #QUERY}, value (8 byte double, NaN if not available).</li>
+ * <li>{@link #SYNC}: no fields. Response: {@link #SYNC}, once all the previous messages were handled - e.g. to know
+ * that trades were added.</li>
+ * </ul>
+ * A message which cannot be decoded - e.g. of an unknown type, or a trade with an unknown symbol id or side - closes
+ * the connection.
+ *
+ * @author CristinaGroapa
+ */
+public final class ExchangeProtocol {
+
+    /** Resolves a ticker to its symbol id */
+    public static final byte SYMBOL = 1;
+
+    /** Adds a trade */
+    public static final byte TRADE = 2;
+
+    /** Calculates a metric */
+    public static final byte QUERY = 3;
+
+    /** Waits for the previous messages to be handled */
+    public static final byte SYNC = 4;
+
+    /** The size of a {@link #TRADE} message, in bytes */
+    public static final int TRADE_SIZE = 1 + 4 + 8 + 8 + 1 + 8;
+
+    /** The size of a {@link #QUERY} message, in bytes */
+    public static final int QUERY_SIZE = 1 + 1 + 4;
+
+    /** The size of a {@link #SYMBOL} response, in bytes */
+    public static final int SYMBOL_RESPONSE_SIZE = 1 + 4;
+
+    /** The size of a {@link #QUERY} response, in bytes */
+    public static final int QUERY_RESPONSE_SIZE = 1 + 8;
+
+    /** The stock price metric */
+    public static final byte STOCK_PRICE = 0;
+
+    /** The dividend yield metric */
+    public static final byte DIVIDEND_YIELD = 1;
+
+    /** The P/E Ratio metric */
+    public static final byte PE_RATIO = 2;
+
+    /** The geometric mean metric, over all the stocks */
+    public static final byte GEOMETRIC_MEAN = 3;
+
+    /**
+     * Constructor. Not to be instantiated.
+     */
+    private ExchangeProtocol() {
+    }
+}
@@ -0,0 +1,461 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A non-blocking server giving access to a {@link StockExchangeService} through the {@link ExchangeProtocol}. A single
+ * thread serves all the connections with a selector. Each connection has a direct buffer for its input and one for its
+ * output: messages are decoded straight from the input buffer, the trades received in one read are added as one
+ * {@link TradeBatch}, and the responses to all the messages of one read are written in one go. When a client does not
+ * read its responses, the server stops reading its requests until the output buffer drains.
+ *
+ * @author CristinaGroapa
+ */
+public class ExchangeServer implements Closeable {
+
+    /** The logger for this class */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExchangeServer.class);
+
+    /** The size of the input and output buffers of each connection */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The largest response, which must fit in the output buffer before a message is handled */
+    private static final int MAX_RESPONSE_SIZE = ExchangeProtocol.QUERY_RESPONSE_SIZE;
+
+    /** The service */
+    private final StockExchangeService service;
+
+    /** Waits for the channels to be ready */
+    private final Selector selector;
+
+    /** Accepts the connections */
+    private final ServerSocketChannel serverChannel;
+
+    /** Whether the server is closed */
+    private volatile boolean closed;
+
+    /**
+     * Whether a thread is serving the connections, in which case it closes them when the server is closed; guarded by
+     * this server
+     */
+    private boolean serving;
+
+    /**
+     * Constructor. Binds the server, which serves no connection until {@link #serve()} or {@link #start()} is called.
+     *
+     * @param service the service
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the server cannot be bound
+     */
+    public ExchangeServer(final StockExchangeService service, final InetSocketAddress address) throws IOException {
+        this.service = service;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.bind(address);
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        LOGGER.info("Exchange server listening on {}", this.serverChannel.getLocalAddress());
+    }
+
+    /**
+     * @return the address the server listens on
+     * @throws IOException if the server is closed
+     */
+    public SocketAddress getLocalAddress() throws IOException {
+        return this.serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Serves the connections in a new daemon thread.
+     *
+     * @return the thread
+     */
+    public Thread start() {
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    serve();
+                } catch (IOException e) {
+                    LOGGER.error("Exchange server failed", e);
+                }
+            }
+        }, "exchange-server");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Serves the connections in the calling thread, until the server is closed. The connections and the server channel
+     * are then closed by this thread, so the selector and its keys are only ever used by it.
+     *
+     * @throws IOException if the server fails
+     * @throws IllegalStateException if another thread is already serving the connections
+     */
+    public void serve() throws IOException {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            if (this.serving) {
+                throw new IllegalStateException("The exchange server is already serving its connections");
+            }
+            this.serving = true;
+        }
+        try {
+            while (!this.closed) {
+                this.selector.select();
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isWritable()) {
+                                connection.onWritable();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            LOGGER.info("Closing connection {}: {}", connection, e.toString());
+                            connection.close();
+                        }
+                    }
+                }
+            }
+        } finally {
+            this.closed = true;
+            try {
+                closeChannels();
+            } finally {
+                synchronized (this) {
+                    this.serving = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts a new connection.
+     *
+     * @throws IOException if the connection cannot be set up
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = this.serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+        SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+        key.attach(new Connection(this.service, channel, key));
+        LOGGER.info("Accepted connection from {}", channel.getRemoteAddress());
+    }
+
+    /**
+     * Closes the server. If a thread is serving the connections, it is woken up and closes them, along with the server
+     * channel, before it returns from {@link #serve()}; otherwise they are closed by the calling thread.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.closed && !this.serving) {
+                return;
+            }
+            this.closed = true;
+            if (this.serving) {
+                this.selector.wakeup();
+                return;
+            }
+        }
+        closeChannels();
+    }
+
+    /**
+     * Closes the connections, the server channel and the selector. Only called by the thread serving the connections,
+     * or by {@link #close()} if there is none.
+     *
+     * @throws IOException if the selector or the server channel cannot be closed
+     */
+    private void closeChannels() throws IOException {
+        for (SelectionKey key : this.selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                LOGGER.info("Could not close channel {}: {}", key.channel(), e.toString());
+            }
+        }
+        this.selector.close();
+        this.serverChannel.close();
+    }
+
+    /**
+     * The state of one connection. Only used by the thread serving the connections.
+     */
+    private static final class Connection {
+
+        /** The service */
+        private final StockExchangeService service;
+
+        /** The channel */
+        private final SocketChannel channel;
+
+        /** The selection key of the channel */
+        private final SelectionKey key;
+
+        /** The bytes received and not handled yet; in read mode only while handling them */
+        private final ByteBuffer input;
+
+        /** The responses not sent yet; in write mode */
+        private final ByteBuffer output;
+
+        /** The trades received since the last time they were added */
+        private final TradeBatch trades;
+
+        /**
+         * Constructor.
+         *
+         * @param service the service
+         * @param channel the channel
+         * @param key the selection key of the channel
+         */
+        Connection(final StockExchangeService service, final SocketChannel channel, final SelectionKey key) {
+            this.service = service;
+            this.channel = channel;
+            this.key = key;
+            this.input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.trades = new TradeBatch();
+        }
+
+        /**
+         * Reads the available bytes, handles the complete messages and sends the responses.
+         *
+         * @throws IOException if the channel fails or the client sent an invalid message
+         */
+        void onReadable() throws IOException {
+            if (this.channel.read(this.input) < 0) {
+                close();
+                return;
+            }
+            handleAndFlush();
+        }
+
+        /**
+         * Sends the pending responses, then handles the messages left in the input buffer while waiting.
+         *
+         * @throws IOException if the channel fails or the client sent an invalid message
+         */
+        void onWritable() throws IOException {
+            if (flush()) {
+                handleAndFlush();
+            }
+        }
+
+        /**
+         * Handles the complete messages in the input buffer and sends the responses.
+         *
+         * @throws IOException if the channel fails or the client sent an invalid message
+         */
+        private void handleAndFlush() throws IOException {
+            boolean outputFull;
+            do {
+                this.input.flip();
+                try {
+                    outputFull = handleMessages();
+                } finally {
+                    this.input.compact();
+                }
+                if (!flush()) {
+                    // stop reading until the client reads its responses
+                    this.key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+            } while (outputFull);
+            this.key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * Handles the complete messages in the input buffer, as long as their responses fit in the output buffer.
+         *
+         * @return true if some messages were left because the output buffer is full, false otherwise
+         * @throws IOException if the client sent an invalid message
+         */
+        private boolean handleMessages() throws IOException {
+            ByteBuffer in = this.input;
+            while (in.hasRemaining()) {
+                if (this.output.remaining() < MAX_RESPONSE_SIZE) {
+                    addTrades();
+                    return true;
+                }
+                int start = in.position();
+                byte type = in.get(start);
+                if (type == ExchangeProtocol.TRADE) {
+                    if (in.remaining() < ExchangeProtocol.TRADE_SIZE) {
+                        break;
+                    }
+                    handleTrade(in, start + 1);
+                    in.position(start + ExchangeProtocol.TRADE_SIZE);
+                } else if (type == ExchangeProtocol.QUERY) {
+                    if (in.remaining() < ExchangeProtocol.QUERY_SIZE) {
+                        break;
+                    }
+                    addTrades();
+                    handleQuery(in.get(start + 1), in.getInt(start + 2));
+                    in.position(start + ExchangeProtocol.QUERY_SIZE);
+                } else if (type == ExchangeProtocol.SYMBOL) {
+                    if (in.remaining() < 2 || in.remaining() < 2 + (in.get(start + 1) & 0xFF)) {
+                        break;
+                    }
+                    int length = in.get(start + 1) & 0xFF;
+                    byte[] ticker = new byte[length];
+                    in.position(start + 2);
+                    in.get(ticker);
+                    this.output.put(ExchangeProtocol.SYMBOL);
+                    this.output.putInt(resolveSymbol(ticker));
+                } else if (type == ExchangeProtocol.SYNC) {
+                    addTrades();
+                    in.position(start + 1);
+                    this.output.put(ExchangeProtocol.SYNC);
+                } else {
+                    throw new IOException("Unknown message type " + type);
+                }
+            }
+            addTrades();
+            return false;
+        }
+
+        /**
+         * Resolves a ticker against the stocks of the service, without registering it, so that clients cannot grow
+         * the symbol registry.
+         *
+         * @param ticker the ticker, in ASCII
+         * @return the id of the symbol, or -1 if the service has no stock for the ticker
+         */
+        private int resolveSymbol(final byte[] ticker) {
+            if (ticker.length == 0 || ticker.length > TradeJournal.MAX_TICKER_LENGTH) {
+                return -1;
+            }
+            StockSymbol symbol = StockSymbol.lookup(new String(ticker, StandardCharsets.US_ASCII));
+            if (symbol == null || this.service.getMetrics(symbol) == null) {
+                return -1;
+            }
+            return symbol.id();
+        }
+
+        /**
+         * Decodes a trade from the input buffer into the batch of trades.
+         *
+         * @param in the input buffer
+         * @param offset the position of the first field of the trade
+         * @throws IOException if the trade refers to an unknown symbol or side
+         */
+        private void handleTrade(final ByteBuffer in, final int offset) throws IOException {
+            StockSymbol symbol = StockSymbol.forId(in.getInt(offset));
+            if (symbol == null) {
+                throw new IOException("Unknown symbol id " + in.getInt(offset));
+            }
+            byte side = in.get(offset + 20);
+            if (side != TradeStore.SIDE_BUY && side != TradeStore.SIDE_SELL) {
+                throw new IOException("Unknown side " + side);
+            }
+            this.trades.add(symbol, in.getLong(offset + 4), in.getLong(offset + 12), side, in.getDouble(offset + 21));
+        }
+
+        /**
+         * Calculates a metric and writes the response.
+         *
+         * @param metric the metric
+         * @param symbolId the id of the symbol
+         */
+        private void handleQuery(final byte metric, final int symbolId) {
+            double value;
+            if (metric == ExchangeProtocol.GEOMETRIC_MEAN) {
+                value = this.service.calculateGeometricMeanAsDouble();
+            } else {
+                StockSymbol symbol = StockSymbol.forId(symbolId);
+                if (symbol == null) {
+                    value = Double.NaN;
+                } else if (metric == ExchangeProtocol.STOCK_PRICE) {
+                    value = this.service.calculateStockPriceAsDouble(symbol);
+                } else if (metric == ExchangeProtocol.DIVIDEND_YIELD) {
+                    value = this.service.calculateDividendYieldAsDouble(symbol);
+                } else if (metric == ExchangeProtocol.PE_RATIO) {
+                    value = this.service.calculatePERatioAsDouble(symbol);
+                } else {
+                    value = Double.NaN;
+                }
+            }
+            this.output.put(ExchangeProtocol.QUERY);
+            this.output.putDouble(value);
+        }
+
+        /**
+         * Adds the trades received so far to the service, so that the following messages see them.
+         */
+        private void addTrades() {
+            if (!this.trades.isEmpty()) {
+                this.service.addTransactions(this.trades);
+                this.trades.clear();
+            }
+        }
+
+        /**
+         * Sends as many pending responses as the channel takes.
+         *
+         * @return true if all the responses were sent, false otherwise
+         * @throws IOException if the channel fails
+         */
+        private boolean flush() throws IOException {
+            this.output.flip();
+            try {
+                if (this.output.hasRemaining()) {
+                    this.channel.write(this.output);
+                }
+                return !this.output.hasRemaining();
+            } finally {
+                this.output.compact();
+            }
+        }
+
+        /**
+         * Closes the connection.
+         */
+        void close() {
+            this.key.cancel();
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close connection", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(this.channel);
+        }
+    }
+}
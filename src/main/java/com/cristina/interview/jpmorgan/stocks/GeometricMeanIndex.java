@@ -0,0 +1,282 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Keeps the geometric mean of the stock prices of a set of stocks (the all-share index) up to date incrementally.
+ * Instead of multiplying all the prices - which overflows or underflows for thousands of stocks - it keeps the sum of
+ * the logarithms of the valid prices and their count. The sum is compensated (Kahan-Babuska summation): the rounding
+ * error of each addition is kept in a separate term, so a long-running index whose stocks are added and subtracted
+ * over and over does not drift away from the sum of the current logarithms. When asked for the index, only the
+ * contributions of the stocks whose price changed since the last time are adjusted: the stocks which had transactions
+ * added (they mark themselves as changed) and the stocks whose price window lost transactions by aging (they are kept
+ * in a queue ordered by the time their oldest transaction ages out). The index is therefore obtained in O(1) amortized
+ * time with respect to the number of stocks.
+ *
+ * @author CristinaGroapa
+ */
+class GeometricMeanIndex {
+
+    /** Orders the expiries by time */
+    private static final Comparator<Expiry> EXPIRY_ORDER = new Comparator<Expiry>() {
+
+        @Override
+        public int compare(final Expiry first, final Expiry second) {
+            return Long.compare(first.expiryNanos, second.expiryNanos);
+        }
+    };
+
+    /** Gives the time at which the index is calculated */
+    private final MarketClock clock;
+
+    /** The stocks which had transactions added since they were last taken into account */
+    private final Queue<Member> changed;
+
+    /** The times at which the price window of the stocks loses its oldest transaction */
+    private final PriorityQueue<Expiry> expiries;
+
+    /** The sum of the logarithms of the valid stock prices, without {@link #logPriceCompensation} */
+    private double logPriceSum;
+
+    /** The accumulated rounding error of {@link #logPriceSum} */
+    private double logPriceCompensation;
+
+    /** The number of stocks with a valid stock price */
+    private int count;
+
+    /**
+     * Constructor.
+     *
+     * @param clock the clock giving the time at which the index is calculated
+     */
+    GeometricMeanIndex(final MarketClock clock) {
+        this.clock = clock;
+        this.changed = new ConcurrentLinkedQueue<>();
+        this.expiries = new PriorityQueue<>(16, EXPIRY_ORDER);
+    }
+
+    /**
+     * Adds a stock to the index.
+     *
+     * @param stock the stock to add
+     */
+    void add(final AbstractStock stock) {
+        Member member = new Member(this, stock);
+        stock.setIndexMember(member);
+        member.priceChanged();
+    }
+
+    /**
+     * Removes a stock from the index.
+     *
+     * @param stock the stock to remove
+     */
+    synchronized void remove(final AbstractStock stock) {
+        Member member = stock.getIndexMember();
+        if (member == null || member.removed) {
+            return;
+        }
+        member.removed = true;
+        updateContribution(member, Double.NaN);
+    }
+
+    /**
+     * Calculates the geometric mean of the stock prices of the stocks in the index which have a valid price.
+     *
+     * @return the geometric mean, or {@link Double#NaN} if no stock has a valid price
+     */
+    synchronized double calculate() {
+        refreshChanged();
+        if (this.count == 0) {
+            return Double.NaN;
+        }
+        return Math.exp((this.logPriceSum + this.logPriceCompensation) / this.count);
+    }
+
+    /**
+     * Calculates the contribution of the stocks in the index to a geometric mean spanning several indexes.
+     *
+     * @return the sum of the logarithms of the valid stock prices and their count
+     */
+    synchronized GeometricMeanPartial calculatePartial() {
+        refreshChanged();
+        return new GeometricMeanPartial(this.logPriceSum + this.logPriceCompensation, this.count);
+    }
+
+    /**
+     * Takes into account the stocks whose price changed since the last calculation. Must be called while holding the
+     * lock of the index.
+     */
+    private void refreshChanged() {
+        long nowNanos = this.clock.nowNanos();
+
+        Member member;
+        while ((member = this.changed.poll()) != null) {
+            // clear the flag before reading the price, so a transaction added meanwhile marks the stock again
+            member.clearChanged();
+            refresh(member);
+        }
+
+        Expiry expiry;
+        while ((expiry = this.expiries.peek()) != null && expiry.expiryNanos <= nowNanos) {
+            this.expiries.poll();
+            if (expiry.expiryNanos == expiry.member.expiryNanos) {
+                expiry.member.expiryNanos = Long.MIN_VALUE;
+                refresh(expiry.member);
+            }
+        }
+    }
+
+    /**
+     * Takes into account the current stock price of a stock. Must be called while holding the lock of the index.
+     *
+     * @param member the stock's membership
+     */
+    private void refresh(final Member member) {
+        if (member.removed) {
+            return;
+        }
+
+        double price = member.stock.calculateStockPrice();
+        updateContribution(member, price > 0.0 ? Math.log(price) : Double.NaN);
+
+        long windowStartNanos = member.stock.getWindowStartNanos();
+        if (windowStartNanos == Long.MAX_VALUE) {
+            member.expiryNanos = Long.MIN_VALUE;
+        } else {
+            long expiryNanos = windowStartNanos + member.stock.getPriceWindowNanos();
+            if (expiryNanos != member.expiryNanos) {
+                member.expiryNanos = expiryNanos;
+                this.expiries.add(new Expiry(member, expiryNanos));
+            }
+        }
+    }
+
+    /**
+     * Replaces the contribution of a stock to the sum of logarithms. Must be called while holding the lock of the
+     * index.
+     *
+     * @param member the stock's membership
+     * @param logPrice the logarithm of the stock price, or {@link Double#NaN} if the price is not valid
+     */
+    private void updateContribution(final Member member, final double logPrice) {
+        if (!Double.isNaN(member.logPrice)) {
+            addToLogPriceSum(-member.logPrice);
+            this.count--;
+        }
+        if (!Double.isNaN(logPrice)) {
+            addToLogPriceSum(logPrice);
+            this.count++;
+        }
+        member.logPrice = logPrice;
+
+        if (this.count == 0) {
+            this.logPriceSum = 0.0d;
+            this.logPriceCompensation = 0.0d;
+        }
+    }
+
+    /**
+     * Adds a value to the sum of logarithms, keeping the rounding error of the addition in the compensation term.
+     * Must be called while holding the lock of the index.
+     *
+     * @param value the value to add
+     */
+    private void addToLogPriceSum(final double value) {
+        double sum = this.logPriceSum + value;
+        if (Math.abs(this.logPriceSum) >= Math.abs(value)) {
+            this.logPriceCompensation += (this.logPriceSum - sum) + value;
+        } else {
+            this.logPriceCompensation += (value - sum) + this.logPriceSum;
+        }
+        this.logPriceSum = sum;
+    }
+
+    /**
+     * The membership of a stock in the index.
+     */
+    static final class Member {
+
+        /** Updater for {@link #changedFlag} */
+        private static final AtomicIntegerFieldUpdater<Member> CHANGED =
+                AtomicIntegerFieldUpdater.newUpdater(Member.class, "changedFlag");
+
+        /** The index */
+        private final GeometricMeanIndex index;
+
+        /** The stock */
+        private final AbstractStock stock;
+
+        /** 1 if the stock is waiting in the queue of changed stocks, 0 otherwise */
+        private volatile int changedFlag;
+
+        /** The logarithm of the stock price included in the index, or {@link Double#NaN} if none is included */
+        private double logPrice;
+
+        /**
+         * The time at which the stock price must be taken into account again, or {@link Long#MIN_VALUE} if the price
+         * window is empty
+         */
+        private long expiryNanos;
+
+        /** Whether the stock has been removed from the index */
+        private boolean removed;
+
+        /**
+         * Constructor.
+         *
+         * @param index the index
+         * @param stock the stock
+         */
+        Member(final GeometricMeanIndex index, final AbstractStock stock) {
+            this.index = index;
+            this.stock = stock;
+            this.logPrice = Double.NaN;
+            this.expiryNanos = Long.MIN_VALUE;
+        }
+
+        /**
+         * Called by the stock after transactions have been added to it. Only queues the stock the first time its price
+         * changes between two calculations of the index.
+         */
+        void priceChanged() {
+            if (this.changedFlag == 0 && CHANGED.compareAndSet(this, 0, 1)) {
+                this.index.changed.offer(this);
+            }
+        }
+
+        /**
+         * Clears the flag marking the stock as changed.
+         */
+        private void clearChanged() {
+            CHANGED.set(this, 0);
+        }
+    }
+
+    /**
+     * The time at which the price window of a stock loses its oldest transaction.
+     */
+    private static final class Expiry {
+
+        /** The stock's membership */
+        private final Member member;
+
+        /** The time, in nanoseconds since the epoch */
+        private final long expiryNanos;
+
+        /**
+         * Constructor.
+         *
+         * @param member the stock's membership
+         * @param expiryNanos the time, in nanoseconds since the epoch
+         */
+        Expiry(final Member member, final long expiryNanos) {
+            this.member = member;
+            this.expiryNanos = expiryNanos;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * The contribution of a set of stocks to the geometric mean of the stock prices - i.e. the sum of the logarithms of
+ * their valid stock prices and the number of such prices. The contributions of disjoint sets of stocks - e.g. the
+ * shards of a {@link ShardedStockExchangeService} - are merged by adding them up, which gives the same geometric mean
+ * as if all the stocks were held together.
+ *
+ * @author CristinaGroapa
+ */
+public final class GeometricMeanPartial {
+
+    /** The contribution of no stocks */
+    public static final GeometricMeanPartial EMPTY = new GeometricMeanPartial(0.0d, 0);
+
+    /** The sum of the logarithms of the valid stock prices */
+    private final double logPriceSum;
+
+    /** The number of valid stock prices */
+    private final int count;
+
+    /**
+     * Constructor.
+     *
+     * @param logPriceSum the sum of the logarithms of the valid stock prices
+     * @param count the number of valid stock prices
+     */
+    public GeometricMeanPartial(final double logPriceSum, final int count) {
+        this.logPriceSum = logPriceSum;
+        this.count = count;
+    }
+
+    /**
+     * @param other the contribution of another, disjoint, set of stocks
+     * @return the contribution of both sets of stocks
+     */
+    public GeometricMeanPartial merge(final GeometricMeanPartial other) {
+        return new GeometricMeanPartial(this.logPriceSum + other.logPriceSum, this.count + other.count);
+    }
+
+    /**
+     * @return the geometric mean of the valid stock prices, or {@link Double#NaN} if there are none
+     */
+    public double geometricMean() {
+        if (this.count == 0) {
+            return Double.NaN;
+        }
+        return Math.exp(this.logPriceSum / this.count);
+    }
+
+    /**
+     * @return the sum of the logarithms of the valid stock prices
+     */
+    public double getLogPriceSum() {
+        return this.logPriceSum;
+    }
+
+    /**
+     * @return the number of valid stock prices
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    @Override
+    public String toString() {
+        return "GeometricMeanPartial[logPriceSum=" + this.logPriceSum + ", count=" + this.count + "]";
+    }
+}
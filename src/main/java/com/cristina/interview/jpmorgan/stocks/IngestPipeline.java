@@ -0,0 +1,401 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * An optional way of adding transactions to a {@link StockExchangeServiceImpl}, in the style of the LMAX Disruptor.
+ * Producers publish trades into a pre-allocated ring buffer without taking any lock; one or more consumer threads
+ * apply them to the stocks. The stocks are partitioned between the consumers by symbol, so each stock is only ever
+ * written by the same consumer thread, in the order in which its trades were published.
+ * <p>
+ * When the ring buffer is full, {@link #publish} waits for the slowest consumer according to the producer wait
+ * strategy, while {@link #tryPublish} gives up and lets the caller decide - i.e. back pressure is applied to the
+ * producers instead of buffering without limit.
+ * <p>
+ * A pipeline is started and stopped once: trades may be published before it is started, and are applied once it is,
+ * but a stopped pipeline can neither be restarted nor receive trades, since there would be no consumer to apply them.
+ *
+ * @author CristinaGroapa
+ */
+public class IngestPipeline {
+
+    /** The logger for this class */
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestPipeline.class);
+
+    /** The service to which the trades are applied */
+    private final StockExchangeServiceImpl service;
+
+    /** The number of slots in the ring buffer; a power of two */
+    private final int bufferSize;
+
+    /** Used to map a sequence number to a slot */
+    private final int mask;
+
+    /** Used to calculate how many times the ring buffer wrapped around for a sequence number */
+    private final int indexShift;
+
+    /** The symbol of the stock each trade belongs to */
+    private final StockSymbol[] symbols;
+
+    /** The trade timestamps, in nanoseconds since the epoch */
+    private final long[] timestamps;
+
+    /** The number of shares transacted */
+    private final long[] quantities;
+
+    /** The trade sides, as stored in a {@link TradeStore} */
+    private final byte[] sides;
+
+    /** The price per share */
+    private final double[] prices;
+
+    /**
+     * For each slot, the number of times the ring buffer wrapped around for the trade published in it, so consumers
+     * know whether the slot holds the trade they are waiting for
+     */
+    private final AtomicIntegerArray published;
+
+    /** The sequence number of the next trade to be claimed by a producer */
+    private final AtomicLong nextSequence;
+
+    /** The consumers applying the trades */
+    private final Consumer[] consumers;
+
+    /** The strategy used by the producers while the ring buffer is full */
+    private final WaitStrategy producerWaitStrategy;
+
+    /** The number of trades which could not be applied because applying them failed */
+    private final AtomicLong failedCount;
+
+    /** The lowest sequence number not yet processed by all the consumers, as last seen by a producer */
+    private volatile long cachedGatingSequence;
+
+    /** Whether the consumers should keep running */
+    private volatile boolean running;
+
+    /** Whether the pipeline has been stopped, after which it can neither be restarted nor receive trades */
+    private volatile boolean stopped;
+
+    /**
+     * Constructor.
+     *
+     * @param service the service to which the trades are applied
+     * @param bufferSize the number of slots in the ring buffer; must be a power of two
+     * @param consumerCount the number of consumer threads
+     * @param consumerWaitStrategy the strategy used by the consumers while there are no trades to apply
+     * @param producerWaitStrategy the strategy used by the producers while the ring buffer is full
+     */
+    public IngestPipeline(final StockExchangeServiceImpl service, final int bufferSize, final int consumerCount,
+            final WaitStrategy consumerWaitStrategy, final WaitStrategy producerWaitStrategy) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("The buffer size must be a power of two, but was " + bufferSize);
+        }
+        if (consumerCount <= 0) {
+            throw new IllegalArgumentException("The number of consumers must be positive, but was " + consumerCount);
+        }
+        this.service = service;
+        this.bufferSize = bufferSize;
+        this.mask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.symbols = new StockSymbol[bufferSize];
+        this.timestamps = new long[bufferSize];
+        this.quantities = new long[bufferSize];
+        this.sides = new byte[bufferSize];
+        this.prices = new double[bufferSize];
+        this.published = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            this.published.set(i, -1);
+        }
+        this.nextSequence = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.producerWaitStrategy = producerWaitStrategy;
+        this.consumers = new Consumer[consumerCount];
+        for (int i = 0; i < consumerCount; i++) {
+            this.consumers[i] = new Consumer(i, consumerWaitStrategy);
+        }
+    }
+
+    /**
+     * Starts the consumer threads. Does nothing if they are already started.
+     *
+     * @throws IllegalStateException if the pipeline has been stopped
+     */
+    public synchronized void start() {
+        if (this.stopped) {
+            throw new IllegalStateException("The ingest pipeline has been stopped and cannot be restarted");
+        }
+        if (this.running) {
+            return;
+        }
+        this.running = true;
+        for (Consumer consumer : this.consumers) {
+            consumer.start();
+        }
+        LOGGER.info("Started ingest pipeline with bufferSize={}, consumers={}, producerWaitStrategy={}",
+                    this.bufferSize, this.consumers.length, this.producerWaitStrategy);
+    }
+
+    /**
+     * Stops the consumer threads after they applied all the trades published so far. From now on, publishing a trade
+     * fails; a trade published concurrently with this call may not be applied.
+     *
+     * @throws InterruptedException if interrupted while waiting for the consumers to finish
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (this.stopped) {
+            return;
+        }
+        this.stopped = true;
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        for (Consumer consumer : this.consumers) {
+            consumer.join();
+        }
+        LOGGER.info("Stopped ingest pipeline");
+    }
+
+    /**
+     * Publishes a trade, waiting for room in the ring buffer if it is full.
+     *
+     * @param stockSymbol the stock to which the trade belongs
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param transactionType BUY or SELL
+     * @param price the price per share
+     * @throws IllegalStateException if the pipeline has been stopped, including while waiting for room
+     */
+    public void publish(final StockSymbol stockSymbol, final long timestampNanos, final long quantityOfShares,
+            final TransactionType transactionType, final double price) {
+        checkNotStopped();
+        long sequence;
+        int counter = 0;
+        while ((sequence = tryClaim()) < 0) {
+            // the consumers of a stopped pipeline never free a slot
+            checkNotStopped();
+            this.producerWaitStrategy.idle(counter++);
+        }
+        write(sequence, stockSymbol, timestampNanos, quantityOfShares, transactionType, price);
+    }
+
+    /**
+     * Publishes a trade if there is room in the ring buffer.
+     *
+     * @param stockSymbol the stock to which the trade belongs
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param transactionType BUY or SELL
+     * @param price the price per share
+     * @return true if the trade was published, false if the ring buffer is full
+     * @throws IllegalStateException if the pipeline has been stopped
+     */
+    public boolean tryPublish(final StockSymbol stockSymbol, final long timestampNanos, final long quantityOfShares,
+            final TransactionType transactionType, final double price) {
+        checkNotStopped();
+        long sequence = tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        write(sequence, stockSymbol, timestampNanos, quantityOfShares, transactionType, price);
+        return true;
+    }
+
+    /**
+     * Publishes a transaction, waiting for room in the ring buffer if it is full.
+     *
+     * @param stockSymbol the stock to which the transaction belongs
+     * @param transaction the transaction to publish
+     * @throws IllegalStateException if the pipeline has been stopped
+     */
+    public void publish(final StockSymbol stockSymbol, final Transaction transaction) {
+        publish(stockSymbol, transaction.getTimestampNanos(), transaction.getQuantityOfShares(),
+                transaction.getTransactionType(), transaction.getPrice());
+    }
+
+    /**
+     * Waits until the consumers applied all the trades published so far.
+     *
+     * @param waitStrategy the strategy used while waiting
+     */
+    public void awaitApplied(final WaitStrategy waitStrategy) {
+        long target = this.nextSequence.get();
+        int counter = 0;
+        while (getGatingSequence() < target) {
+            waitStrategy.idle(counter++);
+        }
+    }
+
+    /**
+     * @return the number of trades which could not be applied because applying them failed - e.g. because the journal
+     *         could not be written; such trades are logged and skipped
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     * @return the number of slots in the ring buffer
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * @throws IllegalStateException if the pipeline has been stopped
+     */
+    private void checkNotStopped() {
+        if (this.stopped) {
+            throw new IllegalStateException("The ingest pipeline has been stopped");
+        }
+    }
+
+    /**
+     * Claims the next slot of the ring buffer.
+     *
+     * @return the sequence number of the claimed slot, or -1 if the ring buffer is full
+     */
+    private long tryClaim() {
+        while (true) {
+            long current = this.nextSequence.get();
+            long wrapPoint = current - this.bufferSize;
+            if (wrapPoint >= this.cachedGatingSequence) {
+                long gatingSequence = getGatingSequence();
+                this.cachedGatingSequence = gatingSequence;
+                if (wrapPoint >= gatingSequence) {
+                    return -1L;
+                }
+            }
+            if (this.nextSequence.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Writes a trade in a claimed slot and makes it visible to the consumers.
+     *
+     * @param sequence the sequence number of the claimed slot
+     * @param stockSymbol the stock to which the trade belongs
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param transactionType BUY or SELL
+     * @param price the price per share
+     */
+    private void write(final long sequence, final StockSymbol stockSymbol, final long timestampNanos,
+            final long quantityOfShares, final TransactionType transactionType, final double price) {
+        int index = (int) sequence & this.mask;
+        this.symbols[index] = stockSymbol;
+        this.timestamps[index] = timestampNanos;
+        this.quantities[index] = quantityOfShares;
+        this.sides[index] = TradeStore.toSide(transactionType);
+        this.prices[index] = price;
+        this.published.lazySet(index, (int) (sequence >>> this.indexShift));
+    }
+
+    /**
+     * @return the lowest sequence number not yet processed by all the consumers
+     */
+    private long getGatingSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (Consumer consumer : this.consumers) {
+            minimum = Math.min(minimum, consumer.processed.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * A consumer thread. It reads every published trade, but only applies those of the stocks in its partition.
+     */
+    private final class Consumer extends Thread {
+
+        /** The partition of stocks handled by this consumer */
+        private final int partition;
+
+        /** The strategy used while there are no trades to apply */
+        private final WaitStrategy waitStrategy;
+
+        /** The sequence number of the next trade to be processed by this consumer */
+        private final AtomicLong processed;
+
+        /**
+         * Constructor.
+         *
+         * @param partition the partition of stocks handled by this consumer
+         * @param waitStrategy the strategy used while there are no trades to apply
+         */
+        Consumer(final int partition, final WaitStrategy waitStrategy) {
+            super("ingest-consumer-" + partition);
+            setDaemon(true);
+            this.partition = partition;
+            this.waitStrategy = waitStrategy;
+            this.processed = new AtomicLong();
+        }
+
+        @Override
+        public void run() {
+            long next = this.processed.get();
+            int counter = 0;
+            while (true) {
+                long available = next;
+                while (isPublished(available)) {
+                    apply(available++);
+                }
+
+                if (available > next) {
+                    next = available;
+                    this.processed.lazySet(next);
+                    counter = 0;
+                } else if (!IngestPipeline.this.running && next >= IngestPipeline.this.nextSequence.get()) {
+                    return;
+                } else {
+                    this.waitStrategy.idle(counter++);
+                }
+            }
+        }
+
+        /**
+         * @param sequence a sequence number
+         * @return true if the trade with this sequence number has been published, false otherwise
+         */
+        private boolean isPublished(final long sequence) {
+            int index = (int) sequence & IngestPipeline.this.mask;
+            return IngestPipeline.this.published.get(index) == (int) (sequence >>> IngestPipeline.this.indexShift);
+        }
+
+        /**
+         * Applies a trade to its stock, if the stock belongs to this consumer's partition. A trade which fails to be
+         * applied is logged and skipped, so that the consumer keeps making progress and the producers are not blocked.
+         *
+         * @param sequence the sequence number of the trade
+         */
+        private void apply(final long sequence) {
+            int index = (int) sequence & IngestPipeline.this.mask;
+            StockSymbol stockSymbol = IngestPipeline.this.symbols[index];
+            if (stockSymbol.id() % IngestPipeline.this.consumers.length != this.partition) {
+                return;
+            }
+
+            AbstractStock stock = IngestPipeline.this.service.getStock(stockSymbol);
+            if (stock == null) {
+                return;
+            }
+            try {
+                IngestPipeline.this.service.applyTrade(stock, IngestPipeline.this.timestamps[index],
+                                                       IngestPipeline.this.quantities[index],
+                                                       IngestPipeline.this.sides[index],
+                                                       IngestPipeline.this.prices[index]);
+            } catch (RuntimeException e) {
+                IngestPipeline.this.failedCount.incrementAndGet();
+                LOGGER.error("Could not apply trade {} of stock {} at {} ns", sequence, stockSymbol,
+                             IngestPipeline.this.timestamps[index], e);
+            }
+        }
+    }
+}
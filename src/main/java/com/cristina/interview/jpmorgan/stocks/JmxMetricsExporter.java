@@ -0,0 +1,156 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exports the metrics of a {@link StockExchangeServiceImpl} as a {@link StockExchangeMetricsMXBean} registered with the
+ * platform MBean server, so they can be watched with e.g. JConsole or VisualVM. The metrics are read when the MBean is
+ * queried; nothing is done on the paths of the service.
+ *
+ * @author CristinaGroapa
+ */
+public class JmxMetricsExporter implements MetricsExporter {
+
+    /** The domain of the MBean names */
+    private static final String DOMAIN = "com.cristina.interview.jpmorgan.stocks";
+
+    /** The name under which the MBean is registered */
+    private final ObjectName objectName;
+
+    /** The server with which the MBean is registered */
+    private final MBeanServer server;
+
+    /**
+     * Constructor. Registers the MBean with the platform MBean server.
+     *
+     * @param name the name distinguishing the service, e.g. the exchange it serves
+     * @throws IOException if the name is not valid
+     */
+    public JmxMetricsExporter(final String name) throws IOException {
+        this(name, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name the name distinguishing the service, e.g. the exchange it serves
+     * @param server the server with which the MBean is registered
+     * @throws IOException if the name is not valid
+     */
+    public JmxMetricsExporter(final String name, final MBeanServer server) throws IOException {
+        try {
+            this.objectName = new ObjectName(DOMAIN + ":type=StockExchangeService,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IOException("Invalid MBean name " + name, e);
+        }
+        this.server = server;
+    }
+
+    /**
+     * @return the name under which the MBean is registered
+     */
+    public ObjectName getObjectName() {
+        return this.objectName;
+    }
+
+    @Override
+    public void start(final StockExchangeServiceImpl service) throws IOException {
+        try {
+            this.server.registerMBean(new MetricsBean(service), this.objectName);
+        } catch (JMException e) {
+            throw new IOException("Could not register MBean " + this.objectName, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.server.isRegistered(this.objectName)) {
+                this.server.unregisterMBean(this.objectName);
+            }
+        } catch (JMException e) {
+            throw new IOException("Could not unregister MBean " + this.objectName, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JmxMetricsExporter[" + this.objectName + "]";
+    }
+
+    /**
+     * Reads the metrics of the service when queried.
+     */
+    private static final class MetricsBean implements StockExchangeMetricsMXBean {
+
+        /** The service */
+        private final StockExchangeServiceImpl service;
+
+        /**
+         * Constructor.
+         *
+         * @param service the service
+         */
+        MetricsBean(final StockExchangeServiceImpl service) {
+            this.service = service;
+        }
+
+        @Override
+        public Map<String, Long> getAddedTransactions() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (StockSymbol symbol : StockSymbol.values()) {
+                AbstractStock stock = this.service.getStock(symbol);
+                if (stock != null) {
+                    counts.put(symbol.name(), stock.getAddedCount());
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Long> getRejectedTransactions() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (StockSymbol symbol : StockSymbol.values()) {
+                AbstractStock stock = this.service.getStock(symbol);
+                if (stock != null) {
+                    counts.put(symbol.name(), stock.getRejectedCount());
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Integer> getWindowDepths() {
+            Map<String, Integer> depths = new LinkedHashMap<>();
+            for (StockSymbol symbol : StockSymbol.values()) {
+                AbstractStock stock = this.service.getStock(symbol);
+                if (stock != null) {
+                    depths.put(symbol.name(), stock.getWindowDepth());
+                }
+            }
+            return depths;
+        }
+
+        @Override
+        public Map<String, LatencySummary> getLatencies() {
+            ServiceMetrics metrics = this.service.getServiceMetrics();
+            Map<String, LatencySummary> latencies = new LinkedHashMap<>();
+            for (ServiceMetrics.Operation operation : ServiceMetrics.Operation.values()) {
+                latencies.put(operation.name(), LatencySummary.of(metrics.getLatency(operation)));
+            }
+            return latencies;
+        }
+
+        @Override
+        public void resetLatencies() {
+            this.service.getServiceMetrics().reset();
+        }
+    }
+}
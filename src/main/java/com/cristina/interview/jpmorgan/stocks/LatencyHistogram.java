@@ -0,0 +1,219 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records latencies, in nanoseconds, into log-linear buckets, in the manner of HdrHistogram: each power of two is split
+ * into {@value #SUB_BUCKET_COUNT} buckets, so a recorded value is known to within about 3% whatever its magnitude, and
+ * values from 1 ns up to {@link Long#MAX_VALUE} fit in a fixed array of counts. Recording is a few bit operations and
+ * a single atomic increment, without locks or allocation, so any number of threads can record at once.
+ * <p>
+ * To keep the recording threads from contending on the same counts, the counts are striped: each thread records into
+ * one of several arrays of counts, picked from its id and allocated the first time a thread uses it, and the stripes
+ * are summed when the histogram is read. The count, mean and maximum are derived from the buckets too, so the mean and
+ * maximum are known to within the precision of a bucket. Reading walks the counts without stopping the recorders, so
+ * the result may miss the values recorded meanwhile.
+ *
+ * @author CristinaGroapa
+ */
+public final class LatencyHistogram {
+
+    /** The number of bits of a value kept exactly, below its highest one bit */
+    private static final int PRECISION_BITS = 5;
+
+    /** The number of buckets each power of two is split into */
+    private static final int SUB_BUCKET_COUNT = 1 << PRECISION_BITS;
+
+    /** The number of buckets: exact ones below {@link #SUB_BUCKET_COUNT}, then one row per power of two */
+    private static final int BUCKET_COUNT = (Long.SIZE - PRECISION_BITS) * SUB_BUCKET_COUNT;
+
+    /** The maximum number of stripes */
+    private static final int MAX_STRIPES = 64;
+
+    /** The number of values recorded in each bucket, one array per stripe; a stripe is null until it is first used */
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+
+    /** The number of stripes minus one, to pick the stripe of a thread */
+    private final int stripeMask;
+
+    /**
+     * Constructor.
+     */
+    public LatencyHistogram() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int stripeCount = Math.min(Integer.highestOneBit(Math.max(processors * 2 - 1, 1)), MAX_STRIPES);
+        this.stripes = new AtomicReferenceArray<>(stripeCount);
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency, in nanoseconds; negative values - e.g. from a clock adjustment - are recorded as 0
+     */
+    public void record(final long nanos) {
+        stripe().incrementAndGet(bucketIndex(Math.max(nanos, 0L)));
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getTotalCount() {
+        long total = 0L;
+        for (long count : snapshot()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return the highest value recorded - i.e. the highest value of the highest bucket holding a value - in
+     *         nanoseconds, or 0 if none was recorded
+     */
+    public long getMaxNanos() {
+        long[] counts = snapshot();
+        for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return highestValue(i);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @return the mean of the values recorded - each value being taken as the middle of its bucket - in nanoseconds,
+     *         or {@link Double#NaN} if none was recorded
+     */
+    public double getMeanNanos() {
+        long[] counts = snapshot();
+        long total = 0L;
+        double sum = 0.0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) {
+                total += counts[i];
+                sum += counts[i] * ((double) lowestValue(i) + highestValue(i)) / 2.0;
+            }
+        }
+        return total == 0 ? Double.NaN : sum / total;
+    }
+
+    /**
+     * Returns the value below which a given percentage of the recorded values fall. The value returned is the highest
+     * value of its bucket, so it is never lower than the exact percentile.
+     *
+     * @param percentile the percentage, between 0 and 100
+     * @return the value, in nanoseconds, or 0 if no value was recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long[] counts = snapshot();
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        int highest = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) {
+                seen += counts[i];
+                highest = i;
+                if (seen >= rank) {
+                    return highestValue(i);
+                }
+            }
+        }
+        // values recorded while the counts were summed
+        return highestValue(highest);
+    }
+
+    /**
+     * Forgets all the values recorded. Values recorded meanwhile may be partly forgotten.
+     */
+    public void reset() {
+        for (int stripe = 0; stripe < this.stripes.length(); stripe++) {
+            AtomicLongArray counts = this.stripes.get(stripe);
+            if (counts != null) {
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    counts.set(i, 0L);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the counts of the calling thread's stripe, allocated if it is the first thread to use it
+     */
+    private AtomicLongArray stripe() {
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        int stripe = (int) (id >>> 32) & this.stripeMask;
+        AtomicLongArray counts = this.stripes.get(stripe);
+        if (counts == null) {
+            this.stripes.compareAndSet(stripe, null, new AtomicLongArray(BUCKET_COUNT));
+            counts = this.stripes.get(stripe);
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of values recorded in each bucket, summed over the stripes
+     */
+    private long[] snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int stripe = 0; stripe < this.stripes.length(); stripe++) {
+            AtomicLongArray stripeCounts = this.stripes.get(stripe);
+            if (stripeCounts != null) {
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    counts[i] += stripeCounts.get(i);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return the index of the bucket holding the value
+     */
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - PRECISION_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - PRECISION_BITS + 1) * SUB_BUCKET_COUNT + mantissa;
+    }
+
+    /**
+     * @param index the index of a bucket
+     * @return the lowest value held by the bucket
+     */
+    static long lowestValue(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int row = index >>> PRECISION_BITS;
+        return (long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1))) << (row - 1);
+    }
+
+    /**
+     * @param index the index of a bucket
+     * @return the highest value held by the bucket
+     */
+    static long highestValue(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int row = index >>> PRECISION_BITS;
+        return lowestValue(index) + (1L << (row - 1)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram[count=" + getTotalCount() + ", p50=" + getValueAtPercentile(50.0) + ", p99="
+                + getValueAtPercentile(99.0) + ", max=" + getMaxNanos() + "]";
+    }
+}
@@ -0,0 +1,108 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable summary of a {@link LatencyHistogram}, as exported through JMX. All the latencies are in nanoseconds.
+ *
+ * @author CristinaGroapa
+ */
+public final class LatencySummary {
+
+    /** The number of values recorded */
+    private final long count;
+
+    /** The mean of the values recorded */
+    private final double mean;
+
+    /** The median */
+    private final long p50;
+
+    /** The 99th percentile */
+    private final long p99;
+
+    /** The 99.9th percentile */
+    private final long p999;
+
+    /** The highest value recorded */
+    private final long max;
+
+    /**
+     * Constructor.
+     *
+     * @param count the number of values recorded
+     * @param mean the mean of the values recorded
+     * @param p50 the median
+     * @param p99 the 99th percentile
+     * @param p999 the 99.9th percentile
+     * @param max the highest value recorded
+     */
+    @ConstructorProperties({ "count", "mean", "p50", "p99", "p999", "max" })
+    public LatencySummary(final long count, final double mean, final long p50, final long p99, final long p999,
+            final long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * @param histogram a histogram
+     * @return the summary of the histogram
+     */
+    static LatencySummary of(final LatencyHistogram histogram) {
+        return new LatencySummary(histogram.getTotalCount(), histogram.getMeanNanos(),
+                                  histogram.getValueAtPercentile(50.0), histogram.getValueAtPercentile(99.0),
+                                  histogram.getValueAtPercentile(99.9), histogram.getMaxNanos());
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return the mean of the values recorded
+     */
+    public double getMean() {
+        return this.mean;
+    }
+
+    /**
+     * @return the median
+     */
+    public long getP50() {
+        return this.p50;
+    }
+
+    /**
+     * @return the 99th percentile
+     */
+    public long getP99() {
+        return this.p99;
+    }
+
+    /**
+     * @return the 99.9th percentile
+     */
+    public long getP999() {
+        return this.p999;
+    }
+
+    /**
+     * @return the highest value recorded
+     */
+    public long getMax() {
+        return this.max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySummary[count=" + this.count + ", mean=" + this.mean + ", p50=" + this.p50 + ", p99=" + this.p99
+                + ", p999=" + this.p999 + ", max=" + this.max + "]";
+    }
+}
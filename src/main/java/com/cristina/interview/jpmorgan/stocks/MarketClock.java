@@ -0,0 +1,195 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The source of the current time for the calculations - i.e. the end of the price window and the time at which the
+ * all-share index is calculated. The live clock follows the system time; the event-time clock is driven by the trades
+ * themselves, so historical trades can be replayed as fast as they can be processed and the windows close at the same
+ * point every time.
+ *
+ * @author CristinaGroapa
+ */
+public abstract class MarketClock {
+
+    /** The live clock shared by default by the services and stocks */
+    private static final MarketClock SYSTEM = new SystemClock();
+
+    /**
+     * @return the current time, in nanoseconds since the epoch
+     */
+    public abstract long nowNanos();
+
+    /**
+     * Called each time a trade is added to a stock. Does nothing by default.
+     *
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     */
+    void onTrade(final long timestampNanos) {
+        // the live clock does not depend on the trades
+    }
+
+    /**
+     * @return the live clock, which follows the system time
+     */
+    public static MarketClock system() {
+        return SYSTEM;
+    }
+
+    /**
+     * @return a new event-time clock, starting at the epoch
+     */
+    public static EventTime eventTime() {
+        return new EventTime();
+    }
+
+    /**
+     * A live clock which measures the elapsed time with {@link System#nanoTime()} from an anchor taken from the system
+     * time, so it has a resolution finer than a millisecond. Since the two clocks drift apart - e.g. while NTP
+     * disciplines the system time - the anchor is taken again from the system time every
+     * {@value #REANCHOR_INTERVAL_MILLIS} ms. The clock never goes backwards: when the system time is ahead, the clock
+     * steps forward to it; when it is behind, the clock is slewed - i.e. runs at half speed until it has caught up -
+     * so the price windows never reopen.
+     */
+    static class SystemClock extends MarketClock {
+
+        /** How often the anchor is taken again from the system time, in milliseconds */
+        static final long REANCHOR_INTERVAL_MILLIS = 1000L;
+
+        /** How often the anchor is taken again from the system time, in nanoseconds */
+        private static final long REANCHOR_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(REANCHOR_INTERVAL_MILLIS);
+
+        /** The current anchor */
+        private final AtomicReference<Anchor> anchor;
+
+        /**
+         * Default constructor.
+         */
+        SystemClock() {
+            long nanoTime = readNanoTime();
+            this.anchor = new AtomicReference<>(new Anchor(readEpochNanos(), nanoTime, 0L));
+        }
+
+        @Override
+        public long nowNanos() {
+            long nanoTime = readNanoTime();
+            Anchor current = this.anchor.get();
+            if (nanoTime - current.nanoTime >= REANCHOR_INTERVAL_NANOS) {
+                long projectedNanos = current.nowNanos(nanoTime);
+                long epochNanos = readEpochNanos();
+                Anchor next = epochNanos >= projectedNanos ? new Anchor(epochNanos, nanoTime, 0L)
+                        : new Anchor(projectedNanos, nanoTime, projectedNanos - epochNanos);
+                // another thread may have taken the anchor again meanwhile; its anchor is as good
+                current = this.anchor.compareAndSet(current, next) ? next : this.anchor.get();
+            }
+            return current.nowNanos(nanoTime);
+        }
+
+        /**
+         * @return the system time, in nanoseconds since the epoch
+         */
+        long readEpochNanos() {
+            return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        }
+
+        /**
+         * @return the value of {@link System#nanoTime()}
+         */
+        long readNanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public String toString() {
+            return "SystemClock";
+        }
+
+        /**
+         * The system time at a value of {@link System#nanoTime()}, and how much the clock still has to slow down to
+         * catch up with the system time.
+         */
+        private static final class Anchor {
+
+            /** The time at the anchor, in nanoseconds since the epoch */
+            final long epochNanos;
+
+            /** The value of {@link System#nanoTime()} at the anchor */
+            final long nanoTime;
+
+            /** How far the clock is ahead of the system time at the anchor, in nanoseconds */
+            final long slewNanos;
+
+            /**
+             * Constructor.
+             *
+             * @param epochNanos the time at the anchor, in nanoseconds since the epoch
+             * @param nanoTime the value of {@link System#nanoTime()} at the anchor
+             * @param slewNanos how far the clock is ahead of the system time at the anchor, in nanoseconds
+             */
+            Anchor(final long epochNanos, final long nanoTime, final long slewNanos) {
+                this.epochNanos = epochNanos;
+                this.nanoTime = nanoTime;
+                this.slewNanos = slewNanos;
+            }
+
+            /**
+             * @param now a value of {@link System#nanoTime()}
+             * @return the time at that value, in nanoseconds since the epoch
+             */
+            long nowNanos(final long now) {
+                long elapsed = Math.max(now - this.nanoTime, 0L);
+                return this.epochNanos + elapsed - Math.min(elapsed / 2, this.slewNanos);
+            }
+        }
+    }
+
+    /**
+     * A clock whose current time is the watermark: the time up to which all the trades are assumed to have been seen.
+     * The watermark follows the most recent trade added to any stock using the clock, and can be moved forward
+     * explicitly - e.g. at the end of a replayed trading session - so the windows close even when no more trades
+     * arrive. The watermark never goes backwards.
+     */
+    public static final class EventTime extends MarketClock {
+
+        /** The watermark, in nanoseconds since the epoch */
+        private final AtomicLong watermarkNanos;
+
+        /**
+         * Default constructor.
+         */
+        EventTime() {
+            this.watermarkNanos = new AtomicLong();
+        }
+
+        @Override
+        public long nowNanos() {
+            return this.watermarkNanos.get();
+        }
+
+        /**
+         * Moves the watermark forward. Does nothing if the watermark is already later.
+         *
+         * @param timestampNanos the new watermark, in nanoseconds since the epoch
+         */
+        public void advanceWatermark(final long timestampNanos) {
+            long current;
+            while (timestampNanos > (current = this.watermarkNanos.get())) {
+                if (this.watermarkNanos.compareAndSet(current, timestampNanos)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        void onTrade(final long timestampNanos) {
+            advanceWatermark(timestampNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "EventTimeClock[watermarkNanos=" + this.watermarkNanos.get() + "]";
+        }
+    }
+}
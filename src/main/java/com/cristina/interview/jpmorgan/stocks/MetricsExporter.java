@@ -0,0 +1,22 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Makes the metrics of a {@link StockExchangeServiceImpl} - its {@link ServiceMetrics} and the counters of its stocks -
+ * visible outside the process, e.g. through JMX. Started with
+ * {@link StockExchangeServiceImpl#attachExporter(MetricsExporter)}; closing the exporter stops it.
+ *
+ * @author CristinaGroapa
+ */
+public interface MetricsExporter extends Closeable {
+
+    /**
+     * Starts exporting the metrics of a service.
+     *
+     * @param service the service
+     * @throws IOException if the metrics cannot be exported
+     */
+    void start(StockExchangeServiceImpl service) throws IOException;
+}
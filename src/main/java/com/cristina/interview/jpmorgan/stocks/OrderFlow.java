@@ -0,0 +1,111 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * An immutable view of the order flow of a stock over one of its lookback windows: the volume and volume weighted
+ * price of the buy and of the sell transactions, the order-flow imbalance and the signed notional.
+ *
+ * @author CristinaGroapa
+ */
+public final class OrderFlow {
+
+    /** The stock's symbol */
+    private final StockSymbol symbol;
+
+    /** The number of shares bought inside the window */
+    private final long buyVolume;
+
+    /** The number of shares sold inside the window */
+    private final long sellVolume;
+
+    /** The volume weighted price of the buy transactions, or {@link Double#NaN} if there are none */
+    private final double buyVwap;
+
+    /** The volume weighted price of the sell transactions, or {@link Double#NaN} if there are none */
+    private final double sellVwap;
+
+    /** The order-flow imbalance, or {@link Double#NaN} if there are no transactions */
+    private final double imbalance;
+
+    /** The value bought minus the value sold */
+    private final double signedNotional;
+
+    /**
+     * Constructor.
+     *
+     * @param symbol the stock's symbol
+     * @param buyVolume the number of shares bought inside the window
+     * @param sellVolume the number of shares sold inside the window
+     * @param buyVwap the volume weighted price of the buy transactions
+     * @param sellVwap the volume weighted price of the sell transactions
+     * @param imbalance the order-flow imbalance
+     * @param signedNotional the value bought minus the value sold
+     */
+    OrderFlow(final StockSymbol symbol, final long buyVolume, final long sellVolume, final double buyVwap,
+            final double sellVwap, final double imbalance, final double signedNotional) {
+        this.symbol = symbol;
+        this.buyVolume = buyVolume;
+        this.sellVolume = sellVolume;
+        this.buyVwap = buyVwap;
+        this.sellVwap = sellVwap;
+        this.imbalance = imbalance;
+        this.signedNotional = signedNotional;
+    }
+
+    /**
+     * @return the stock's symbol
+     */
+    public StockSymbol getSymbol() {
+        return this.symbol;
+    }
+
+    /**
+     * @return the number of shares bought inside the window
+     */
+    public long getBuyVolume() {
+        return this.buyVolume;
+    }
+
+    /**
+     * @return the number of shares sold inside the window
+     */
+    public long getSellVolume() {
+        return this.sellVolume;
+    }
+
+    /**
+     * @return the volume weighted price of the buy transactions, or {@link Double#NaN} if there are none
+     */
+    public double getBuyVwap() {
+        return this.buyVwap;
+    }
+
+    /**
+     * @return the volume weighted price of the sell transactions, or {@link Double#NaN} if there are none
+     */
+    public double getSellVwap() {
+        return this.sellVwap;
+    }
+
+    /**
+     * @return the order-flow imbalance - i.e. (buy volume - sell volume) / (buy volume + sell volume), from -1 when
+     *         there are only sells to 1 when there are only buys - or {@link Double#NaN} if there are no transactions
+     */
+    public double getImbalance() {
+        return this.imbalance;
+    }
+
+    /**
+     * @return the signed notional - i.e. the sum of price * quantity of the buy transactions minus that of the sell
+     *         transactions
+     */
+    public double getSignedNotional() {
+        return this.signedNotional;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderFlow[symbol=" + this.symbol + ", buyVolume=" + this.buyVolume + ", sellVolume=" + this.sellVolume
+                + ", buyVwap=" + this.buyVwap + ", sellVwap=" + this.sellVwap + ", imbalance=" + this.imbalance
+                + ", signedNotional=" + this.signedNotional + "]";
+    }
+}
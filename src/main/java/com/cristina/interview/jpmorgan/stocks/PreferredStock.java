@@ -24,11 +24,23 @@ public class PreferredStock extends AbstractStock {
         this.fixedDividend = fixedDividend;
     }
 
+    /**
+     * Constructor with arguments.
+     *
+     * @param symbol this stock's symbol
+     * @param parValue this stock's par value
+     * @param lastDividend this stock's last dividend
+     * @param fixedDividend this stock's fixed dividend
+     * @param settings this stock's retention policy, clock and price windows
+     */
+    public PreferredStock(final StockSymbol symbol, final double parValue, final double lastDividend,
+            final double fixedDividend, final StockSettings settings) {
+        super(symbol, parValue, lastDividend, settings);
+        this.fixedDividend = fixedDividend;
+    }
+
     @Override
-    public Double calculateDividendYield() {
-        if (hasTransactions()) {
-            return (this.fixedDividend * getParValue()) / getTickerPrice();
-        }
-        return Double.NaN;
+    protected double calculateDividendYield(final double tickerPrice, final double dividend) {
+        return (this.fixedDividend * getParValue()) / tickerPrice;
     }
 }
@@ -0,0 +1,111 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes the lookback windows over which each stock keeps its volume weighted (VWAP) and time weighted (TWAP)
+ * prices, and which of them gives the stock price. All the windows of a stock share its transaction history and are
+ * kept up to date incrementally, so each window costs a constant amount of work per transaction.
+ * <p>
+ * A window only sees the transactions kept by the retention policy of the stock, so the retention policy should keep
+ * transactions at least as long as the {@link #getLongestLookbackNanos() longest lookback}.
+ *
+ * @author CristinaGroapa
+ */
+public final class PriceWindows {
+
+    /** The default lookback of the stock price, in minutes */
+    private static final long DEFAULT_STOCK_PRICE_LOOKBACK = 15;
+
+    /** The default lookbacks, in minutes */
+    private static final long[] DEFAULT_LOOKBACKS = {1, 5, DEFAULT_STOCK_PRICE_LOOKBACK, 60};
+
+    /** The lookback of the stock price, in nanoseconds */
+    private final long stockPriceLookbackNanos;
+
+    /** All the lookbacks, in nanoseconds, in ascending order and without duplicates */
+    private final long[] lookbacksNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param stockPriceLookbackNanos the lookback of the stock price, in nanoseconds
+     * @param lookbacksNanos all the lookbacks, in nanoseconds, in ascending order and without duplicates
+     */
+    private PriceWindows(final long stockPriceLookbackNanos, final long[] lookbacksNanos) {
+        this.stockPriceLookbackNanos = stockPriceLookbackNanos;
+        this.lookbacksNanos = lookbacksNanos;
+    }
+
+    /**
+     * @return the default windows: the stock price over 15 minutes, and VWAP and TWAP over 1, 5, 15 and 60 minutes
+     */
+    public static PriceWindows defaultWindows() {
+        return of(TimeUnit.MINUTES, DEFAULT_STOCK_PRICE_LOOKBACK, DEFAULT_LOOKBACKS);
+    }
+
+    /**
+     * Creates the windows for a stock price lookback and any number of further lookbacks.
+     *
+     * @param unit the time unit of the lookbacks
+     * @param stockPriceLookback the lookback of the stock price
+     * @param lookbacks further lookbacks
+     * @return the price windows
+     */
+    public static PriceWindows of(final TimeUnit unit, final long stockPriceLookback, final long... lookbacks) {
+        long[] nanos = new long[lookbacks.length + 1];
+        nanos[0] = unit.toNanos(stockPriceLookback);
+        for (int i = 0; i < lookbacks.length; i++) {
+            nanos[i + 1] = unit.toNanos(lookbacks[i]);
+        }
+        Arrays.sort(nanos);
+        if (nanos[0] <= 0) {
+            throw new IllegalArgumentException("The lookbacks must be positive, but got " + nanos[0] + " ns");
+        }
+
+        int distinct = 1;
+        for (int i = 1; i < nanos.length; i++) {
+            if (nanos[i] != nanos[distinct - 1]) {
+                nanos[distinct++] = nanos[i];
+            }
+        }
+        return new PriceWindows(unit.toNanos(stockPriceLookback), Arrays.copyOf(nanos, distinct));
+    }
+
+    /**
+     * @return the lookback of the stock price, in nanoseconds
+     */
+    public long getStockPriceLookbackNanos() {
+        return this.stockPriceLookbackNanos;
+    }
+
+    /**
+     * @return all the lookbacks, in nanoseconds, in ascending order
+     */
+    public long[] getLookbacksNanos() {
+        return this.lookbacksNanos.clone();
+    }
+
+    /**
+     * @return the longest lookback, in nanoseconds
+     */
+    public long getLongestLookbackNanos() {
+        return this.lookbacksNanos[this.lookbacksNanos.length - 1];
+    }
+
+    /**
+     * @param lookbackNanos a lookback, in nanoseconds
+     * @return the position of the lookback among {@link #getLookbacksNanos()}, or -1 if there is no such window
+     */
+    int indexOf(final long lookbackNanos) {
+        int index = Arrays.binarySearch(this.lookbacksNanos, lookbackNanos);
+        return index >= 0 ? index : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceWindows[stockPriceLookbackNanos=" + this.stockPriceLookbackNanos + ", lookbacksNanos="
+                + Arrays.toString(this.lookbacksNanos) + "]";
+    }
+}
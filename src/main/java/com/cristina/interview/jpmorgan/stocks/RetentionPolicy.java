@@ -0,0 +1,167 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how long the transactions of a stock are kept in its transaction history - i.e. up to a maximum age, up to
+ * a maximum number of transactions, or both. The most recent transaction is always kept, so that the ticker price is
+ * still available after a quiet period.
+ * <p>
+ * The policy also bounds how late a transaction may arrive - i.e. by how much it may be older than the most recent
+ * transaction of the stock - and still be inserted in the transaction history. By default the lateness tolerance is
+ * the maximum age, since an older transaction would be evicted straight away.
+ *
+ * @author CristinaGroapa
+ */
+public final class RetentionPolicy {
+
+    /** The age limit used when no limit is required */
+    private static final long UNLIMITED_AGE = Long.MAX_VALUE;
+
+    /** The count limit used when no limit is required */
+    private static final int UNLIMITED_COUNT = Integer.MAX_VALUE;
+
+    /** The maximum age of a retained transaction, in milliseconds, relative to the most recent transaction */
+    private final long maxAgeMillis;
+
+    /** The maximum age of a retained transaction, in nanoseconds, relative to the most recent transaction */
+    private final long maxAgeNanos;
+
+    /** The maximum number of retained transactions */
+    private final int maxCount;
+
+    /** By how much a transaction may be older than the most recent one and still be accepted, in nanoseconds */
+    private final long latenessToleranceNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param maxAgeMillis the maximum age of a retained transaction, in milliseconds
+     * @param maxCount the maximum number of retained transactions
+     */
+    private RetentionPolicy(final long maxAgeMillis, final int maxCount) {
+        this(maxAgeMillis, maxCount, TimeUnit.MILLISECONDS.toNanos(maxAgeMillis));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxAgeMillis the maximum age of a retained transaction, in milliseconds
+     * @param maxCount the maximum number of retained transactions
+     * @param latenessToleranceNanos by how much a transaction may be older than the most recent one, in nanoseconds
+     */
+    private RetentionPolicy(final long maxAgeMillis, final int maxCount, final long latenessToleranceNanos) {
+        if (maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("The maximum age must be positive, but was " + maxAgeMillis);
+        }
+        if (maxCount <= 0) {
+            throw new IllegalArgumentException("The maximum count must be positive, but was " + maxCount);
+        }
+        if (latenessToleranceNanos < 0) {
+            throw new IllegalArgumentException("The lateness tolerance must not be negative, but was "
+                    + latenessToleranceNanos);
+        }
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.maxCount = maxCount;
+        this.latenessToleranceNanos = latenessToleranceNanos;
+    }
+
+    /**
+     * Creates a policy which keeps transactions up to a maximum age.
+     *
+     * @param maxAge the maximum age of a retained transaction
+     * @param unit the time unit of the maximum age
+     * @return the retention policy
+     */
+    public static RetentionPolicy byAge(final long maxAge, final TimeUnit unit) {
+        return new RetentionPolicy(unit.toMillis(maxAge), UNLIMITED_COUNT);
+    }
+
+    /**
+     * Creates a policy which keeps up to a maximum number of transactions.
+     *
+     * @param maxCount the maximum number of retained transactions
+     * @return the retention policy
+     */
+    public static RetentionPolicy byCount(final int maxCount) {
+        return new RetentionPolicy(UNLIMITED_AGE, maxCount);
+    }
+
+    /**
+     * Creates a policy which keeps transactions up to a maximum age, but no more than a maximum number of them.
+     *
+     * @param maxAge the maximum age of a retained transaction
+     * @param unit the time unit of the maximum age
+     * @param maxCount the maximum number of retained transactions
+     * @return the retention policy
+     */
+    public static RetentionPolicy byAgeAndCount(final long maxAge, final TimeUnit unit, final int maxCount) {
+        return new RetentionPolicy(unit.toMillis(maxAge), maxCount);
+    }
+
+    /**
+     * Creates a copy of this policy with a different lateness tolerance.
+     *
+     * @param latenessTolerance by how much a transaction may be older than the most recent one and still be accepted;
+     *            0 rejects all the transactions arriving out of order
+     * @param unit the time unit of the lateness tolerance
+     * @return the retention policy
+     */
+    public RetentionPolicy withLatenessTolerance(final long latenessTolerance, final TimeUnit unit) {
+        return new RetentionPolicy(this.maxAgeMillis, this.maxCount, unit.toNanos(latenessTolerance));
+    }
+
+    /**
+     * @return the maximum age of a retained transaction, in milliseconds
+     */
+    public long getMaxAgeMillis() {
+        return this.maxAgeMillis;
+    }
+
+    /**
+     * @return the maximum number of retained transactions
+     */
+    public int getMaxCount() {
+        return this.maxCount;
+    }
+
+    /**
+     * @return by how much a transaction may be older than the most recent one and still be accepted, in nanoseconds
+     */
+    public long getLatenessToleranceNanos() {
+        return this.latenessToleranceNanos;
+    }
+
+    /**
+     * Checks whether a transaction arrived too late to be accepted.
+     *
+     * @param timestampNanos the timestamp of the transaction, in nanoseconds
+     * @param newestNanos the timestamp of the most recent transaction, in nanoseconds
+     * @return true if the transaction should be rejected, false otherwise
+     */
+    boolean isTooLate(final long timestampNanos, final long newestNanos) {
+        return newestNanos - timestampNanos > this.latenessToleranceNanos;
+    }
+
+    /**
+     * Checks whether the oldest retained transaction should be evicted.
+     *
+     * @param retainedCount the number of retained transactions
+     * @param oldestNanos the timestamp of the oldest retained transaction, in nanoseconds
+     * @param newestNanos the timestamp of the most recent transaction, in nanoseconds
+     * @return true if the oldest transaction should be evicted, false otherwise
+     */
+    boolean shouldEvict(final int retainedCount, final long oldestNanos, final long newestNanos) {
+        if (retainedCount <= 1) {
+            return false;
+        }
+        return retainedCount > this.maxCount || newestNanos - oldestNanos >= this.maxAgeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "RetentionPolicy[maxAgeMillis=" + this.maxAgeMillis + ", maxCount=" + this.maxCount
+                + ", latenessToleranceNanos=" + this.latenessToleranceNanos + "]";
+    }
+}
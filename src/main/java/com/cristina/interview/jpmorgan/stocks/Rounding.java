@@ -0,0 +1,43 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * The rounding applied by the services to the values they return. In the current implementation the number of
+ * decimals is hardcoded, but it can easily be made configurable.
+ *
+ * @author CristinaGroapa
+ */
+final class Rounding {
+
+    /**
+     * Not instantiable.
+     */
+    private Rounding() {
+    }
+
+    /**
+     * Rounds a value down to 2 decimals.
+     *
+     * @param value the value to round
+     * @return the value rounded down to 2 decimals, or {@link Double#NaN} if the value is NaN
+     */
+    static double roundDown(final double value) {
+        if (Double.isNaN(value)) {
+            return value;
+        }
+        return Math.floor(value * 100) / 100d;
+    }
+
+    /**
+     * Rounds a value to the nearest 2 decimals, symmetrically around zero - i.e. halves are rounded away from zero -
+     * so that signed values are rounded the same way whatever their sign.
+     *
+     * @param value the value to round
+     * @return the value rounded to 2 decimals, or {@link Double#NaN} if the value is NaN
+     */
+    static double roundNearest(final double value) {
+        if (Double.isNaN(value)) {
+            return value;
+        }
+        return Math.signum(value) * Math.round(Math.abs(value) * 100) / 100d;
+    }
+}
@@ -0,0 +1,86 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.Arrays;
+
+/**
+ * The stocks selected by a {@link StockScreener}, in rank order, with their metrics as of the screen. The metrics are
+ * kept in primitive columns, so the i-th stock of the result has the i-th value of each column.
+ *
+ * @author CristinaGroapa
+ */
+public final class ScreenResult {
+
+    /** The selected stocks */
+    private final StockSymbol[] symbols;
+
+    /** The stock price of each selected stock */
+    private final double[] stockPrices;
+
+    /** The dividend yield of each selected stock */
+    private final double[] dividendYields;
+
+    /** The P/E Ratio of each selected stock */
+    private final double[] peRatios;
+
+    /**
+     * Constructor.
+     *
+     * @param symbols the selected stocks
+     * @param stockPrices the stock price of each selected stock
+     * @param dividendYields the dividend yield of each selected stock
+     * @param peRatios the P/E Ratio of each selected stock
+     */
+    ScreenResult(final StockSymbol[] symbols, final double[] stockPrices, final double[] dividendYields,
+            final double[] peRatios) {
+        this.symbols = symbols;
+        this.stockPrices = stockPrices;
+        this.dividendYields = dividendYields;
+        this.peRatios = peRatios;
+    }
+
+    /**
+     * @return the number of selected stocks
+     */
+    public int size() {
+        return this.symbols.length;
+    }
+
+    /**
+     * @param rank the rank of a selected stock, 0 being the first
+     * @return the stock
+     */
+    public StockSymbol getSymbol(final int rank) {
+        return this.symbols[rank];
+    }
+
+    /**
+     * @param rank the rank of a selected stock, 0 being the first
+     * @return the stock price of the stock, or {@link Double#NaN} if it had no transactions in the price window
+     */
+    public double getStockPrice(final int rank) {
+        return this.stockPrices[rank];
+    }
+
+    /**
+     * @param rank the rank of a selected stock, 0 being the first
+     * @return the dividend yield of the stock
+     */
+    public double getDividendYield(final int rank) {
+        return this.dividendYields[rank];
+    }
+
+    /**
+     * @param rank the rank of a selected stock, 0 being the first
+     * @return the P/E Ratio of the stock
+     */
+    public double getPERatio(final int rank) {
+        return this.peRatios[rank];
+    }
+
+    @Override
+    public String toString() {
+        return "ScreenResult[symbols=" + Arrays.toString(this.symbols) + ", stockPrices="
+                + Arrays.toString(this.stockPrices) + ", dividendYields=" + Arrays.toString(this.dividendYields)
+                + ", peRatios=" + Arrays.toString(this.peRatios) + "]";
+    }
+}
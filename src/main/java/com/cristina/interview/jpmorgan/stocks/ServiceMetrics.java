@@ -0,0 +1,80 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * The latencies of the operations of a {@link StockExchangeServiceImpl}, one {@link LatencyHistogram} per kind of
+ * operation. The per-stock counters - transactions added and rejected, price window depth - are kept by the stocks
+ * themselves; both are read by a {@link MetricsExporter}.
+ *
+ * @author CristinaGroapa
+ */
+public final class ServiceMetrics {
+
+    /**
+     * The kinds of operations timed.
+     */
+    public enum Operation {
+        /** Adding a single transaction */
+        ADD_TRANSACTION,
+        /** Adding a batch of transactions */
+        ADD_TRANSACTIONS,
+        /** Calculating the stock price */
+        STOCK_PRICE,
+        /** Calculating the dividend yield */
+        DIVIDEND_YIELD,
+        /** Calculating the P/E Ratio */
+        PE_RATIO,
+        /** Calculating the volume weighted price over a lookback window */
+        VWAP,
+        /** Calculating the time weighted price over a lookback window */
+        TWAP,
+        /** Calculating the order flow over a lookback window */
+        ORDER_FLOW,
+        /** Calculating the geometric mean of all the stock prices */
+        GEOMETRIC_MEAN,
+        /** Calculating the contribution of the stocks to a geometric mean spanning several services */
+        GEOMETRIC_MEAN_PARTIAL,
+        /** Calculating the metrics of many stocks at once */
+        FILL_METRICS
+    }
+
+    /** The latencies of each kind of operation, indexed by {@link Operation#ordinal()} */
+    private final LatencyHistogram[] latencies;
+
+    /**
+     * Constructor.
+     */
+    public ServiceMetrics() {
+        Operation[] operations = Operation.values();
+        this.latencies = new LatencyHistogram[operations.length];
+        for (int i = 0; i < operations.length; i++) {
+            this.latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @param operation a kind of operation
+     * @return the latencies of the operation
+     */
+    public LatencyHistogram getLatency(final Operation operation) {
+        return this.latencies[operation.ordinal()];
+    }
+
+    /**
+     * Records the latency of an operation which started at a given time.
+     *
+     * @param operation the kind of operation
+     * @param startNanos the value of {@link System#nanoTime()} when the operation started
+     */
+    void recordSince(final Operation operation, final long startNanos) {
+        this.latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Forgets all the latencies recorded.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : this.latencies) {
+            histogram.reset();
+        }
+    }
+}
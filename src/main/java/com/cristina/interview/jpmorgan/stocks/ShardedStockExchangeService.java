@@ -0,0 +1,313 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link StockExchangeService} which spreads the stocks over several services - the shards - so that the stocks are
+ * held, and the transactions added, by more than one heap or core. Each symbol belongs to exactly one shard, picked by
+ * hashing its ticker, so every instance routing to the same shards agrees on the owner whatever the order in which the
+ * symbols were registered. The operations on a stock are routed to its shard.
+ * <p>
+ * The geometric mean is calculated by scatter-gather: each shard calculates the contribution of its own stocks - the
+ * sum of the logarithms of their prices and their count - in parallel on the given executor, and the contributions are
+ * merged. The cost of the index is therefore split between the shards.
+ * <p>
+ * The shards are usually {@link StockExchangeServiceImpl}s in the same process, but any implementation of the service
+ * can be a shard - e.g. a client forwarding the calls to a service in another process.
+ *
+ * @author CristinaGroapa
+ */
+public class ShardedStockExchangeService implements StockExchangeService {
+
+    /** The logger for this class */
+    private final Logger logger;
+
+    /** The shards */
+    private final StockExchangeService[] shards;
+
+    /** Runs the calculations of the shards during a scatter-gather, or null to run them one after the other */
+    private final Executor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param shards the shards; each symbol always goes to the same shard as long as the list is in the same order
+     * @param executor runs the calculations of the shards in parallel during a scatter-gather, or null to run them in
+     *            the calling thread
+     */
+    public ShardedStockExchangeService(final List<? extends StockExchangeService> shards, final Executor executor) {
+        this(LoggerFactory.getLogger(ShardedStockExchangeService.class), shards, executor);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param logger the logger to be used by this instance
+     * @param shards the shards; each symbol always goes to the same shard as long as the list is in the same order
+     * @param executor runs the calculations of the shards in parallel during a scatter-gather, or null to run them in
+     *            the calling thread
+     */
+    protected ShardedStockExchangeService(final Logger logger, final List<? extends StockExchangeService> shards,
+            final Executor executor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        this.logger = logger;
+        this.shards = shards.toArray(new StockExchangeService[shards.size()]);
+        this.executor = executor;
+
+        logger.info("Initialised sharded service with {} shards", this.shards.length);
+    }
+
+    /**
+     * @param stockSymbol a stock symbol
+     * @return the index of the shard owning the symbol
+     */
+    public int shardOf(final StockSymbol stockSymbol) {
+        return (stockSymbol.name().hashCode() & Integer.MAX_VALUE) % this.shards.length;
+    }
+
+    /**
+     * @param stockSymbol a stock symbol
+     * @return the shard owning the symbol
+     */
+    private StockExchangeService shard(final StockSymbol stockSymbol) {
+        return this.shards[shardOf(stockSymbol)];
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    @Override
+    public void createCommonStock(final StockSymbol stockSymbol, final double parValue, final double lastDividend) {
+        shard(stockSymbol).createCommonStock(stockSymbol, parValue, lastDividend);
+    }
+
+    @Override
+    public void createPreferredStock(final StockSymbol stockSymbol, final double parValue, final double lastDividend,
+            final double fixedDividend) {
+        shard(stockSymbol).createPreferredStock(stockSymbol, parValue, lastDividend, fixedDividend);
+    }
+
+    @Override
+    public Double calculateGeometricMean() {
+        return calculateGeometricMeanAsDouble();
+    }
+
+    @Override
+    public double calculateGeometricMeanAsDouble() {
+        double geometricMean = calculateGeometricMeanPartial().geometricMean();
+        if (!Double.isNaN(geometricMean)) {
+            return Rounding.roundDown(geometricMean);
+        }
+
+        this.logger.info("Asked to calculate geometric mean of stocks, but no valid stock price available.");
+        return Double.NaN;
+    }
+
+    @Override
+    public GeometricMeanPartial calculateGeometricMeanPartial() {
+        if (this.executor == null) {
+            GeometricMeanPartial merged = GeometricMeanPartial.EMPTY;
+            for (StockExchangeService shard : this.shards) {
+                merged = merged.merge(shard.calculateGeometricMeanPartial());
+            }
+            return merged;
+        }
+
+        @SuppressWarnings("unchecked")
+        FutureTask<GeometricMeanPartial>[] tasks = new FutureTask[this.shards.length];
+        for (int i = 0; i < this.shards.length; i++) {
+            final StockExchangeService shard = this.shards[i];
+            tasks[i] = new FutureTask<>(new Callable<GeometricMeanPartial>() {
+
+                @Override
+                public GeometricMeanPartial call() {
+                    return shard.calculateGeometricMeanPartial();
+                }
+            });
+            this.executor.execute(tasks[i]);
+        }
+
+        GeometricMeanPartial merged = GeometricMeanPartial.EMPTY;
+        try {
+            for (FutureTask<GeometricMeanPartial> task : tasks) {
+                merged = merged.merge(task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while gathering the geometric mean", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not calculate the geometric mean of a shard", e.getCause());
+        }
+        return merged;
+    }
+
+    @Override
+    public void addTransaction(final StockSymbol stockSymbol, final Transaction transaction) {
+        shard(stockSymbol).addTransaction(stockSymbol, transaction);
+    }
+
+    /**
+     * Adds a batch of transactions, each shard getting the transactions of its own stocks, in the order in which they
+     * appear in the batch.
+     *
+     * @param batch the transactions to add
+     */
+    @Override
+    public void addTransactions(final TradeBatch batch) {
+        if (this.shards.length == 1) {
+            this.shards[0].addTransactions(batch);
+            return;
+        }
+        TradeBatch[] shardBatches = new TradeBatch[this.shards.length];
+        for (int index = 0; index < batch.size(); index++) {
+            StockSymbol stockSymbol = batch.symbol(index);
+            int shard = shardOf(stockSymbol);
+            if (shardBatches[shard] == null) {
+                shardBatches[shard] = new TradeBatch(batch.size());
+            }
+            shardBatches[shard].add(stockSymbol, batch.timestamp(index), batch.quantity(index), batch.side(index),
+                                    batch.price(index));
+        }
+        for (int shard = 0; shard < this.shards.length; shard++) {
+            if (shardBatches[shard] != null) {
+                this.shards[shard].addTransactions(shardBatches[shard]);
+            }
+        }
+    }
+
+    @Override
+    public Double calculateDividendYield(final StockSymbol stockSymbol) {
+        return shard(stockSymbol).calculateDividendYield(stockSymbol);
+    }
+
+    @Override
+    public double calculateDividendYieldAsDouble(final StockSymbol stockSymbol) {
+        return shard(stockSymbol).calculateDividendYieldAsDouble(stockSymbol);
+    }
+
+    @Override
+    public Double calculatePERatio(final StockSymbol stockSymbol) {
+        return shard(stockSymbol).calculatePERatio(stockSymbol);
+    }
+
+    @Override
+    public double calculatePERatioAsDouble(final StockSymbol stockSymbol) {
+        return shard(stockSymbol).calculatePERatioAsDouble(stockSymbol);
+    }
+
+    @Override
+    public Double calculateStockPrice(final StockSymbol stockSymbol) {
+        return shard(stockSymbol).calculateStockPrice(stockSymbol);
+    }
+
+    @Override
+    public double calculateStockPriceAsDouble(final StockSymbol stockSymbol) {
+        return shard(stockSymbol).calculateStockPriceAsDouble(stockSymbol);
+    }
+
+    @Override
+    public Double calculateVwap(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        return shard(stockSymbol).calculateVwap(stockSymbol, lookback, unit);
+    }
+
+    @Override
+    public double calculateVwapAsDouble(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        return shard(stockSymbol).calculateVwapAsDouble(stockSymbol, lookback, unit);
+    }
+
+    @Override
+    public OrderFlow calculateOrderFlow(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        return shard(stockSymbol).calculateOrderFlow(stockSymbol, lookback, unit);
+    }
+
+    @Override
+    public Double calculateTwap(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        return shard(stockSymbol).calculateTwap(stockSymbol, lookback, unit);
+    }
+
+    @Override
+    public double calculateTwapAsDouble(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        return shard(stockSymbol).calculateTwapAsDouble(stockSymbol, lookback, unit);
+    }
+
+    @Override
+    public List<Bar> getBars(final StockSymbol stockSymbol, final BarInterval interval, final int count) {
+        return shard(stockSymbol).getBars(stockSymbol, interval, count);
+    }
+
+    @Override
+    public StockMetrics getMetrics(final StockSymbol stockSymbol) {
+        return shard(stockSymbol).getMetrics(stockSymbol);
+    }
+
+    /**
+     * Calculates the metrics of many stocks at once, each shard filling in those of its own stocks. Unlike
+     * {@link StockExchangeServiceImpl#fillMetrics}, this allocates the per-shard arrays on each call.
+     */
+    @Override
+    public int fillMetrics(final StockSymbol[] stockSymbols, final double[] stockPrices,
+            final double[] dividendYields, final double[] peRatios) {
+        if (this.shards.length == 1) {
+            return this.shards[0].fillMetrics(stockSymbols, stockPrices, dividendYields, peRatios);
+        }
+        int[] owners = new int[stockSymbols.length];
+        int[] counts = new int[this.shards.length];
+        for (int i = 0; i < stockSymbols.length; i++) {
+            owners[i] = shardOf(stockSymbols[i]);
+            counts[owners[i]]++;
+        }
+
+        int found = 0;
+        for (int shard = 0; shard < this.shards.length; shard++) {
+            if (counts[shard] == 0) {
+                continue;
+            }
+            StockSymbol[] shardSymbols = new StockSymbol[counts[shard]];
+            int position = 0;
+            for (int i = 0; i < stockSymbols.length; i++) {
+                if (owners[i] == shard) {
+                    shardSymbols[position++] = stockSymbols[i];
+                }
+            }
+            double[] shardPrices = new double[counts[shard]];
+            double[] shardYields = new double[counts[shard]];
+            double[] shardRatios = new double[counts[shard]];
+            found += this.shards[shard].fillMetrics(shardSymbols, shardPrices, shardYields, shardRatios);
+            position = 0;
+            for (int i = 0; i < stockSymbols.length; i++) {
+                if (owners[i] == shard) {
+                    stockPrices[i] = shardPrices[position];
+                    dividendYields[i] = shardYields[position];
+                    peRatios[i] = shardRatios[position];
+                    position++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void subscribe(final StockSymbol stockSymbol, final StockMetricsSubscriber subscriber) {
+        shard(stockSymbol).subscribe(stockSymbol, subscriber);
+    }
+
+    @Override
+    public void subscribe(final StockSymbol stockSymbol, final StockMetricsSubscriber subscriber,
+            final Executor subscriberExecutor) {
+        shard(stockSymbol).subscribe(stockSymbol, subscriber, subscriberExecutor);
+    }
+}
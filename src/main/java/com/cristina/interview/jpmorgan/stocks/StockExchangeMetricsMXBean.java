@@ -0,0 +1,37 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.Map;
+
+/**
+ * The management interface exposing the metrics of a {@link StockExchangeServiceImpl} through JMX. The maps are keyed
+ * by ticker or by {@link ServiceMetrics.Operation} name.
+ *
+ * @author CristinaGroapa
+ */
+public interface StockExchangeMetricsMXBean {
+
+    /**
+     * @return the number of transactions added to each stock
+     */
+    Map<String, Long> getAddedTransactions();
+
+    /**
+     * @return the number of transactions rejected by each stock for arriving later than tolerated
+     */
+    Map<String, Long> getRejectedTransactions();
+
+    /**
+     * @return the number of transactions inside the price window of each stock, as of its last change
+     */
+    Map<String, Integer> getWindowDepths();
+
+    /**
+     * @return the latencies of each kind of operation
+     */
+    Map<String, LatencySummary> getLatencies();
+
+    /**
+     * Forgets all the latencies recorded.
+     */
+    void resetLatencies();
+}
@@ -1,5 +1,9 @@
 package com.cristina.interview.jpmorgan.stocks;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Contract for stock exchange operations service.
  *
@@ -34,6 +38,22 @@ interface StockExchangeService {
      */
     Double calculateGeometricMean();
 
+    /**
+     * Calculates the geometric mean like {@link #calculateGeometricMean()}, without boxing the result.
+     *
+     * @return the geometric mean of the existing stocks or {@link Double#NaN} if not enough data is available to
+     *         calculate
+     */
+    double calculateGeometricMeanAsDouble();
+
+    /**
+     * Calculates the contribution of the registered stocks to a geometric mean spanning several services - e.g. the
+     * shards of a {@link ShardedStockExchangeService}.
+     *
+     * @return the sum of the logarithms of the valid stock prices and their count
+     */
+    GeometricMeanPartial calculateGeometricMeanPartial();
+
     /**
      * Adds a new transaction to a registered stock. If the stock does not exist, it does nothing.
      * 
@@ -42,6 +62,14 @@ interface StockExchangeService {
      */
     void addTransaction(StockSymbol stockSymbol, Transaction transaction);
 
+    /**
+     * Adds a batch of transactions, possibly for several stocks. The transactions of each stock are added in the order
+     * in which they appear in the batch. Transactions for stocks which do not exist are ignored.
+     *
+     * @param batch the transactions to add
+     */
+    void addTransactions(TradeBatch batch);
+
     /**
      * Calculates the dividend yield for a given stock.
      * 
@@ -50,6 +78,14 @@ interface StockExchangeService {
      */
     Double calculateDividendYield(StockSymbol stockSymbol);
 
+    /**
+     * Calculates the dividend yield like {@link #calculateDividendYield(StockSymbol)}, without boxing the result.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @return the dividend yield, or {@link Double#NaN} if not enough data is available for the stock
+     */
+    double calculateDividendYieldAsDouble(StockSymbol stockSymbol);
+
     /**
      * Calculates the P/E Ratio for a given stock.
      * 
@@ -58,6 +94,14 @@ interface StockExchangeService {
      */
     Double calculatePERatio(StockSymbol stockSymbol);
 
+    /**
+     * Calculates the P/E Ratio like {@link #calculatePERatio(StockSymbol)}, without boxing the result.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @return the P/E Ratio, or {@link Double#NaN} if not enough data is available for the stock
+     */
+    double calculatePERatioAsDouble(StockSymbol stockSymbol);
+
     /**
      * Calculates the stock price for a given stock.
      * 
@@ -65,4 +109,118 @@ interface StockExchangeService {
      * @return the stock price, or {@link Double#NaN} if not enough data is available for the stock
      */
     Double calculateStockPrice(StockSymbol stockSymbol);
+
+    /**
+     * Calculates the stock price like {@link #calculateStockPrice(StockSymbol)}, without boxing the result.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @return the stock price, or {@link Double#NaN} if not enough data is available for the stock
+     */
+    double calculateStockPriceAsDouble(StockSymbol stockSymbol);
+
+    /**
+     * Calculates the volume weighted price of a given stock over one of its lookback windows.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @param lookback the lookback of the window; must be one of the configured {@link PriceWindows}
+     * @param unit the time unit of the lookback
+     * @return the volume weighted price, or {@link Double#NaN} if not enough data is available for the stock
+     */
+    Double calculateVwap(StockSymbol stockSymbol, long lookback, TimeUnit unit);
+
+    /**
+     * Calculates the volume weighted price like {@link #calculateVwap(StockSymbol, long, TimeUnit)}, without boxing the
+     * result.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @param lookback the lookback of the window; must be one of the configured {@link PriceWindows}
+     * @param unit the time unit of the lookback
+     * @return the volume weighted price, or {@link Double#NaN} if not enough data is available for the stock
+     */
+    double calculateVwapAsDouble(StockSymbol stockSymbol, long lookback, TimeUnit unit);
+
+    /**
+     * Calculates the order flow of a given stock over one of its lookback windows - i.e. the volume and volume
+     * weighted price of each side, the order-flow imbalance and the signed notional.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @param lookback the lookback of the window; must be one of the configured {@link PriceWindows}
+     * @param unit the time unit of the lookback
+     * @return the order flow, or null if the stock does not exist
+     */
+    OrderFlow calculateOrderFlow(StockSymbol stockSymbol, long lookback, TimeUnit unit);
+
+    /**
+     * Calculates the time weighted price of a given stock over one of its lookback windows.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @param lookback the lookback of the window; must be one of the configured {@link PriceWindows}
+     * @param unit the time unit of the lookback
+     * @return the time weighted price, or {@link Double#NaN} if not enough data is available for the stock
+     */
+    Double calculateTwap(StockSymbol stockSymbol, long lookback, TimeUnit unit);
+
+    /**
+     * Calculates the time weighted price like {@link #calculateTwap(StockSymbol, long, TimeUnit)}, without boxing the
+     * result.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @param lookback the lookback of the window; must be one of the configured {@link PriceWindows}
+     * @param unit the time unit of the lookback
+     * @return the time weighted price, or {@link Double#NaN} if not enough data is available for the stock
+     */
+    double calculateTwapAsDouble(StockSymbol stockSymbol, long lookback, TimeUnit unit);
+
+    /**
+     * Returns the most recent OHLCV bars of a given stock at a given resolution.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @param interval the resolution of the bars
+     * @param count the maximum number of bars to return
+     * @return the bars, oldest first; empty if the stock does not exist or had no transactions
+     */
+    List<Bar> getBars(StockSymbol stockSymbol, BarInterval interval, int count);
+
+    /**
+     * Calculates the stock price, dividend yield and P/E Ratio of a given stock in one go.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @return the metrics of the stock, or null if the stock does not exist
+     */
+    StockMetrics getMetrics(StockSymbol stockSymbol);
+
+    /**
+     * Calculates the stock price, dividend yield and P/E Ratio of many stocks at once into arrays supplied by the
+     * caller, so that scanning the whole market allocates nothing. The metrics of {@code stockSymbols[i]} are stored at
+     * index {@code i} of each array; they are {@link Double#NaN} if the stock does not exist or not enough data is
+     * available.
+     *
+     * @param stockSymbols the identifiers of the stocks
+     * @param stockPrices receives the stock prices; at least as long as {@code stockSymbols}
+     * @param dividendYields receives the dividend yields; at least as long as {@code stockSymbols}
+     * @param peRatios receives the P/E Ratios; at least as long as {@code stockSymbols}
+     * @return the number of stocks which exist
+     */
+    int fillMetrics(StockSymbol[] stockSymbols, double[] stockPrices, double[] dividendYields, double[] peRatios);
+
+    /**
+     * Subscribes to the metrics of a given stock - i.e. stock price, dividend yield and P/E Ratio - instead of polling
+     * them. Updates are pushed when the metrics change, as long as the subscriber has requested them; a subscriber
+     * which does not keep up gets only the latest metrics. The subscriber is called on a shared pool of daemon threads.
+     * The stock does not need to exist yet: updates start once it is created.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @param subscriber the subscriber
+     */
+    void subscribe(StockSymbol stockSymbol, StockMetricsSubscriber subscriber);
+
+    /**
+     * Subscribes to the metrics of a given stock, like {@link #subscribe(StockSymbol, StockMetricsSubscriber)}, calling
+     * the subscriber on a given executor.
+     *
+     * @param stockSymbol the identifier of the stock
+     * @param subscriber the subscriber
+     * @param executor the executor on which the subscriber is called
+     */
+    void subscribe(StockSymbol stockSymbol, StockMetricsSubscriber subscriber, Executor executor);
 }
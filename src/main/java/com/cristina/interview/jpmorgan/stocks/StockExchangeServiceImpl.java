@@ -1,13 +1,23 @@
 package com.cristina.interview.jpmorgan.stocks;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.cristina.interview.jpmorgan.stocks.ServiceMetrics.Operation;
+
 /**
- * A general {@link StockExchangeService} implementation.
+ * A general {@link StockExchangeService} implementation. It is safe to use from multiple threads: transactions for
+ * different stocks are added in parallel, since each stock guards its own state, and the calculations read the state
+ * published by the stocks without blocking the threads adding transactions.
  *
  * @author CristinaGroapa
  */
@@ -16,8 +26,32 @@ public class StockExchangeServiceImpl implements StockExchangeService {
     /** The logger for this class */
     private final Logger logger;
 
-    /** A map of registered stocks */
-    private final Map<StockSymbol, AbstractStock> stocks;
+    /** The initial capacity of the register of stocks */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The register of stocks, indexed by {@link StockSymbol#id()}. Replaced by a larger copy when a stock is created
+     * for a symbol whose id does not fit.
+     */
+    private volatile AtomicReferenceArray<AbstractStock> stocks;
+
+    /** The geometric mean of the stock prices of the registered stocks */
+    private final GeometricMeanIndex allShareIndex;
+
+    /**
+     * The retention policy, clock and price windows given to the stocks created by this service; the clock also gives
+     * the current time to the all-share index
+     */
+    private final StockSettings stockSettings;
+
+    /** Pushes the metrics of each symbol to its subscribers; created on the first subscription or registration */
+    private final ConcurrentMap<StockSymbol, StockMetricsPublisher> metricsPublishers;
+
+    /** The latencies of the operations of this service */
+    private final ServiceMetrics serviceMetrics;
+
+    /** The journal to which the added trades are appended, or null if the trades are only kept in memory */
+    private volatile TradeJournal journal;
 
     /**
      * Default constructor
@@ -32,47 +66,105 @@ public class StockExchangeServiceImpl implements StockExchangeService {
      * @param logger the logger to be used by this instance
      */
     protected StockExchangeServiceImpl(final Logger logger) {
+        this(logger, StockSettings.defaults());
+    }
+
+    /**
+     * Constructor that receives the settings of the created stocks - e.g. with an
+     * {@link MarketClock#eventTime() event-time clock} to replay historical trades.
+     *
+     * @param stockSettings the retention policy, clock and price windows given to the stocks created by this service;
+     *            the clock is also used by the all-share index
+     */
+    public StockExchangeServiceImpl(final StockSettings stockSettings) {
+        this(LoggerFactory.getLogger(StockExchangeServiceImpl.class), stockSettings);
+    }
+
+    /**
+     * Constructor that receives a logger and the settings of the created stocks.
+     *
+     * @param logger the logger to be used by this instance
+     * @param stockSettings the retention policy, clock and price windows given to the stocks created by this service;
+     *            the clock is also used by the all-share index
+     */
+    protected StockExchangeServiceImpl(final Logger logger, final StockSettings stockSettings) {
         this.logger = logger;
-        this.stocks = new HashMap<>();
+        this.stocks = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        this.allShareIndex = new GeometricMeanIndex(stockSettings.getClock());
+        this.metricsPublishers = new ConcurrentHashMap<>();
+        this.serviceMetrics = new ServiceMetrics();
+        this.stockSettings = stockSettings;
 
-        logger.info("Initialised service");
+        logger.info("Initialised service with {}", stockSettings);
     }
 
     @Override
     public Double calculateGeometricMean() {
-        double product = 1.0;
-        int count = 0;
-        for (AbstractStock stock : this.stocks.values()) {
-            Double price = stock.calculateStockPrice();
-            if (!price.isNaN()) {
-                product *= price;
-                count++;
-            }
-        }
-        if (count > 0) {
-            return roundDouble(Math.pow(product, (double) 1 / count));
+        return calculateGeometricMeanAsDouble();
+    }
+
+    @Override
+    public double calculateGeometricMeanAsDouble() {
+        long startNanos = System.nanoTime();
+        double geometricMean = this.allShareIndex.calculate();
+        this.serviceMetrics.recordSince(Operation.GEOMETRIC_MEAN, startNanos);
+        if (!Double.isNaN(geometricMean)) {
+            return roundDouble(geometricMean);
         }
 
         this.logger.info("Asked to calculate geometric mean of stocks, but no valid stock price available.");
         return Double.NaN;
     }
 
+    @Override
+    public GeometricMeanPartial calculateGeometricMeanPartial() {
+        long startNanos = System.nanoTime();
+        GeometricMeanPartial partial = this.allShareIndex.calculatePartial();
+        this.serviceMetrics.recordSince(Operation.GEOMETRIC_MEAN_PARTIAL, startNanos);
+        return partial;
+    }
+
     @Override
     public void addTransaction(final StockSymbol stockSymbol, final Transaction transaction) {
-        AbstractStock stock = this.stocks.get(stockSymbol);
+        long startNanos = System.nanoTime();
+        AbstractStock stock = getStock(stockSymbol);
         if (stock != null) {
-            stock.addTransaction(transaction);
-            this.logger.debug("Adding transaction for stock {}", stockSymbol);
+            if (stock.addTransaction(transaction)) {
+                journal(stockSymbol, transaction.getTimestampNanos(), transaction.getQuantityOfShares(),
+                        TradeStore.toSide(transaction.getTransactionType()), transaction.getPrice());
+                this.serviceMetrics.recordSince(Operation.ADD_TRANSACTION, startNanos);
+                if (this.logger.isDebugEnabled()) {
+                    this.logger.debug("Adding transaction for stock {}", stockSymbol);
+                }
+            } else {
+                this.logger.info("Rejected transaction for stock {} arriving later than tolerated.", stockSymbol);
+            }
         } else {
             this.logger.info("Asked to add transaction for non-existing stock {}. Nothing to do.", stockSymbol);
         }
     }
 
+    @Override
+    public void addTransactions(final TradeBatch batch) {
+        long startNanos = System.nanoTime();
+        batch.groupBySymbol();
+        addGroupedTransactions(batch, 0, 1);
+        this.serviceMetrics.recordSince(Operation.ADD_TRANSACTIONS, startNanos);
+    }
+
     @Override
     public Double calculateDividendYield(final StockSymbol stockSymbol) {
-        AbstractStock stock = this.stocks.get(stockSymbol);
+        return calculateDividendYieldAsDouble(stockSymbol);
+    }
+
+    @Override
+    public double calculateDividendYieldAsDouble(final StockSymbol stockSymbol) {
+        long startNanos = System.nanoTime();
+        AbstractStock stock = getStock(stockSymbol);
         if (stock != null) {
-            return roundDouble(stock.calculateDividendYield());
+            double dividendYield = roundDouble(stock.calculateDividendYield());
+            this.serviceMetrics.recordSince(Operation.DIVIDEND_YIELD, startNanos);
+            return dividendYield;
         }
         this.logger.info("Asked to calculate dividend yield for non-existing stock {}. Returning NaN.", stockSymbol);
         return Double.NaN;
@@ -80,9 +172,17 @@ public class StockExchangeServiceImpl implements StockExchangeService {
 
     @Override
     public Double calculatePERatio(final StockSymbol stockSymbol) {
-        AbstractStock stock = this.stocks.get(stockSymbol);
+        return calculatePERatioAsDouble(stockSymbol);
+    }
+
+    @Override
+    public double calculatePERatioAsDouble(final StockSymbol stockSymbol) {
+        long startNanos = System.nanoTime();
+        AbstractStock stock = getStock(stockSymbol);
         if (stock != null) {
-            return roundDouble(stock.calculatePERatio());
+            double peRatio = roundDouble(stock.calculatePERatio());
+            this.serviceMetrics.recordSince(Operation.PE_RATIO, startNanos);
+            return peRatio;
         }
         this.logger.info("Asked to calculate P/E Ratio for non-existing stock {}. Returning NaN.", stockSymbol);
         return Double.NaN;
@@ -90,19 +190,120 @@ public class StockExchangeServiceImpl implements StockExchangeService {
 
     @Override
     public Double calculateStockPrice(final StockSymbol stockSymbol) {
-        AbstractStock stock = this.stocks.get(stockSymbol);
+        return calculateStockPriceAsDouble(stockSymbol);
+    }
+
+    @Override
+    public double calculateStockPriceAsDouble(final StockSymbol stockSymbol) {
+        long startNanos = System.nanoTime();
+        AbstractStock stock = getStock(stockSymbol);
         if (stock != null) {
-            return roundDouble(stock.calculateStockPrice());
+            double stockPrice = roundDouble(stock.calculateStockPrice());
+            this.serviceMetrics.recordSince(Operation.STOCK_PRICE, startNanos);
+            return stockPrice;
         }
         this.logger.info("Asked to calculate stock price for non-existing stock {}. Returning NaN.", stockSymbol);
         return Double.NaN;
     }
 
+    @Override
+    public Double calculateVwap(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        return calculateVwapAsDouble(stockSymbol, lookback, unit);
+    }
+
+    @Override
+    public double calculateVwapAsDouble(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        long startNanos = System.nanoTime();
+        AbstractStock stock = getStock(stockSymbol);
+        if (stock != null) {
+            double vwap = roundDouble(stock.calculateVwap(lookback, unit));
+            this.serviceMetrics.recordSince(Operation.VWAP, startNanos);
+            return vwap;
+        }
+        this.logger.info("Asked to calculate VWAP for non-existing stock {}. Returning NaN.", stockSymbol);
+        return Double.NaN;
+    }
+
+    @Override
+    public OrderFlow calculateOrderFlow(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        long startNanos = System.nanoTime();
+        AbstractStock stock = getStock(stockSymbol);
+        if (stock != null) {
+            OrderFlow flow = stock.calculateOrderFlow(lookback, unit);
+            // the imbalance is a ratio, left as is; the signed notional is rounded the same way whatever its sign
+            OrderFlow rounded = new OrderFlow(stockSymbol, flow.getBuyVolume(), flow.getSellVolume(),
+                                              roundDouble(flow.getBuyVwap()), roundDouble(flow.getSellVwap()),
+                                              flow.getImbalance(), Rounding.roundNearest(flow.getSignedNotional()));
+            this.serviceMetrics.recordSince(Operation.ORDER_FLOW, startNanos);
+            return rounded;
+        }
+        this.logger.info("Asked to calculate order flow for non-existing stock {}. Returning null.", stockSymbol);
+        return null;
+    }
+
+    @Override
+    public Double calculateTwap(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        return calculateTwapAsDouble(stockSymbol, lookback, unit);
+    }
+
+    @Override
+    public double calculateTwapAsDouble(final StockSymbol stockSymbol, final long lookback, final TimeUnit unit) {
+        long startNanos = System.nanoTime();
+        AbstractStock stock = getStock(stockSymbol);
+        if (stock != null) {
+            double twap = roundDouble(stock.calculateTwap(lookback, unit));
+            this.serviceMetrics.recordSince(Operation.TWAP, startNanos);
+            return twap;
+        }
+        this.logger.info("Asked to calculate TWAP for non-existing stock {}. Returning NaN.", stockSymbol);
+        return Double.NaN;
+    }
+
+    @Override
+    public int fillMetrics(final StockSymbol[] stockSymbols, final double[] stockPrices,
+            final double[] dividendYields, final double[] peRatios) {
+        long startNanos = System.nanoTime();
+        int found = 0;
+        MarketClock clock = null;
+        long nowNanos = 0L;
+        for (int i = 0; i < stockSymbols.length; i++) {
+            AbstractStock stock = getStock(stockSymbols[i]);
+            if (stock == null) {
+                stockPrices[i] = Double.NaN;
+                dividendYields[i] = Double.NaN;
+                peRatios[i] = Double.NaN;
+            } else {
+                // the clock is read once for all the stocks sharing it, and the metrics of a stock are consistent
+                if (stock.getClock() != clock) {
+                    clock = stock.getClock();
+                    nowNanos = clock.nowNanos();
+                }
+                stock.readMetrics(nowNanos, i, stockPrices, dividendYields, peRatios);
+                stockPrices[i] = roundDouble(stockPrices[i]);
+                dividendYields[i] = roundDouble(dividendYields[i]);
+                peRatios[i] = roundDouble(peRatios[i]);
+                found++;
+            }
+        }
+        this.serviceMetrics.recordSince(Operation.FILL_METRICS, startNanos);
+        return found;
+    }
+
+    @Override
+    public List<Bar> getBars(final StockSymbol stockSymbol, final BarInterval interval, final int count) {
+        AbstractStock stock = getStock(stockSymbol);
+        if (stock != null) {
+            return stock.getBars(interval, count);
+        }
+        this.logger.info("Asked for bars of non-existing stock {}. Returning no bars.", stockSymbol);
+        return Collections.emptyList();
+    }
+
     @Override
     public void createCommonStock(final StockSymbol stockSymbol, final double parValue, final double lastDividend) {
         this.logger.info("Creating common stock {} with parValue={}, lastDividend={}.", stockSymbol, parValue,
                          lastDividend);
-        this.stocks.put(stockSymbol, new CommonStock(stockSymbol, parValue, lastDividend));
+        register(new CommonStock(stockSymbol, parValue, lastDividend, this.stockSettings));
     }
 
     @Override
@@ -110,7 +311,227 @@ public class StockExchangeServiceImpl implements StockExchangeService {
             final double fixedDividend) {
         this.logger.info("Creating preferred stock {} with parValue={}, lastDividend={}, fixedDividend={}.",
                          stockSymbol, parValue, lastDividend, fixedDividend);
-        this.stocks.put(stockSymbol, new PreferredStock(stockSymbol, parValue, lastDividend, fixedDividend));
+        register(new PreferredStock(stockSymbol, parValue, lastDividend, fixedDividend, this.stockSettings));
+    }
+
+    /**
+     * Adds the trades of a batch already {@link TradeBatch#groupBySymbol() grouped by symbol}, but only for the stocks
+     * in one partition - i.e. those whose symbol id modulo the number of partitions equals the partition. Several
+     * threads can therefore add the trades of the same batch in parallel, each one handling a different partition.
+     *
+     * @param batch the batch, grouped by symbol
+     * @param partition the partition handled by the caller
+     * @param partitions the number of partitions
+     */
+    void addGroupedTransactions(final TradeBatch batch, final int partition, final int partitions) {
+        int size = batch.size();
+        int from = 0;
+        while (from < size) {
+            StockSymbol stockSymbol = batch.symbol(batch.orderedIndex(from));
+            int to = from + 1;
+            while (to < size && batch.symbol(batch.orderedIndex(to)) == stockSymbol) {
+                to++;
+            }
+            if (stockSymbol.id() % partitions != partition) {
+                from = to;
+                continue;
+            }
+
+            AbstractStock stock = getStock(stockSymbol);
+            if (stock != null) {
+                int added = stock.addTrades(batch, from, to);
+                for (int position = from; position < to; position++) {
+                    int index = batch.orderedIndex(position);
+                    if (!batch.isRejected(index)) {
+                        journal(stockSymbol, batch.timestamp(index), batch.quantity(index), batch.side(index),
+                                batch.price(index));
+                    }
+                }
+                if (this.logger.isDebugEnabled()) {
+                    this.logger.debug("Adding {} transactions for stock {}", added, stockSymbol);
+                }
+                if (added < to - from) {
+                    this.logger.info("Rejected {} transactions for stock {} arriving later than tolerated.",
+                                     to - from - added, stockSymbol);
+                }
+            } else {
+                this.logger.info("Asked to add {} transactions for non-existing stock {}. Nothing to do.", to - from,
+                                 stockSymbol);
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Attaches a journal to the service: the stocks get back the trades journaled during the last price interval -
+     * e.g. before a restart - and all the trades added from now on, and accepted by their stock, are appended to the
+     * journal. The journal only keeps the segments holding trades within the longest lookback or retention age. The
+     * stocks must be created before the journal is attached.
+     *
+     * @param tradeJournal the journal to attach
+     * @return the number of trades recovered from the journal
+     */
+    public synchronized long attachJournal(final TradeJournal tradeJournal) {
+        long nowNanos = this.stockSettings.getClock().nowNanos();
+        long horizonNanos = Math.max(this.stockSettings.getPriceWindows().getLongestLookbackNanos(),
+                                     TimeUnit.MILLISECONDS.toNanos(this.stockSettings.getRetentionPolicy()
+                                             .getMaxAgeMillis()));
+        long recovered = tradeJournal.replay(this, nowNanos - horizonNanos);
+        tradeJournal.retainFor(horizonNanos);
+        tradeJournal.retireBefore(nowNanos - horizonNanos);
+        this.journal = tradeJournal;
+
+        this.logger.info("Attached trade journal, recovered {} trades.", recovered);
+        return recovered;
+    }
+
+    /**
+     * Adds a trade to a registered stock, appending it to the journal if there is one and the stock accepted it. Used
+     * by the ingest pipeline, so the trades it applies are journaled too.
+     *
+     * @param stock the stock to which the trade belongs
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param side the trade side, as stored in a {@link TradeStore}
+     * @param price the price per share
+     */
+    void applyTrade(final AbstractStock stock, final long timestampNanos, final long quantityOfShares,
+            final byte side, final double price) {
+        if (stock.addTrade(timestampNanos, quantityOfShares, TradeStore.toTransactionType(side), price)) {
+            journal(stock.getSymbol(), timestampNanos, quantityOfShares, side, price);
+        }
+    }
+
+    @Override
+    public StockMetrics getMetrics(final StockSymbol stockSymbol) {
+        AbstractStock stock = getStock(stockSymbol);
+        if (stock == null) {
+            return null;
+        }
+        // read from one published state, so the three metrics are consistent with each other
+        double[] stockPrice = new double[1];
+        double[] dividendYield = new double[1];
+        double[] peRatio = new double[1];
+        stock.readMetrics(stock.getClock().nowNanos(), 0, stockPrice, dividendYield, peRatio);
+        return new StockMetrics(stockSymbol, roundDouble(stockPrice[0]), roundDouble(dividendYield[0]),
+                                roundDouble(peRatio[0]));
+    }
+
+    @Override
+    public void subscribe(final StockSymbol stockSymbol, final StockMetricsSubscriber subscriber) {
+        subscribe(stockSymbol, subscriber, StockMetricsPublisher.defaultExecutor());
+    }
+
+    @Override
+    public void subscribe(final StockSymbol stockSymbol, final StockMetricsSubscriber subscriber,
+            final Executor executor) {
+        this.logger.debug("Subscribing to metrics of stock {}", stockSymbol);
+        metricsPublisher(stockSymbol).subscribe(subscriber, executor);
+    }
+
+    /**
+     * @param stockSymbol the stock symbol
+     * @return the publisher of the metrics of the symbol, created if needed
+     */
+    private StockMetricsPublisher metricsPublisher(final StockSymbol stockSymbol) {
+        StockMetricsPublisher publisher = this.metricsPublishers.get(stockSymbol);
+        if (publisher == null) {
+            StockMetricsPublisher created = new StockMetricsPublisher(stockSymbol, this);
+            publisher = this.metricsPublishers.putIfAbsent(stockSymbol, created);
+            if (publisher == null) {
+                publisher = created;
+            }
+        }
+        return publisher;
+    }
+
+    /**
+     * Appends a trade to the journal, if there is one.
+     *
+     * @param stockSymbol the stock to which the trade belongs
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param side the trade side, as stored in a {@link TradeStore}
+     * @param price the price per share
+     */
+    private void journal(final StockSymbol stockSymbol, final long timestampNanos, final long quantityOfShares,
+            final byte side, final double price) {
+        TradeJournal tradeJournal = this.journal;
+        if (tradeJournal == null) {
+            return;
+        }
+        try {
+            tradeJournal.append(stockSymbol, timestampNanos, quantityOfShares, side, price);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not journal trade for stock " + stockSymbol, e);
+        }
+    }
+
+    /**
+     * @return the latencies of the operations of this service
+     */
+    public ServiceMetrics getServiceMetrics() {
+        return this.serviceMetrics;
+    }
+
+    /**
+     * Starts exporting the metrics of this service - its latencies and the counters of its stocks.
+     *
+     * @param exporter the exporter; closing it stops the export
+     * @throws IOException if the metrics cannot be exported
+     */
+    public void attachExporter(final MetricsExporter exporter) throws IOException {
+        exporter.start(this);
+        this.logger.info("Attached metrics exporter {}.", exporter);
+    }
+
+    /**
+     * @return the clock giving the current time to the calculations
+     */
+    public MarketClock getClock() {
+        return this.stockSettings.getClock();
+    }
+
+    /**
+     * Adds a stock to the internal register and to the all-share index, replacing any stock with the same symbol, and
+     * lets the subscribers to the symbol know.
+     *
+     * @param stock the stock to register
+     */
+    private synchronized void register(final AbstractStock stock) {
+        int id = stock.getSymbol().id();
+        AtomicReferenceArray<AbstractStock> register = this.stocks;
+        if (id >= register.length()) {
+            int capacity = register.length();
+            while (id >= capacity) {
+                capacity *= 2;
+            }
+            AtomicReferenceArray<AbstractStock> larger = new AtomicReferenceArray<>(capacity);
+            for (int i = 0; i < register.length(); i++) {
+                larger.lazySet(i, register.get(i));
+            }
+            register = larger;
+            this.stocks = larger;
+        }
+
+        StockMetricsPublisher publisher = metricsPublisher(stock.getSymbol());
+        stock.setMetricsPublisher(publisher);
+        this.allShareIndex.add(stock);
+        AbstractStock previous = register.getAndSet(id, stock);
+        if (previous != null) {
+            this.allShareIndex.remove(previous);
+        }
+        publisher.metricsChanged();
+    }
+
+    /**
+     * @param stockSymbol the stock symbol
+     * @return the registered stock with the given symbol, or null if there is none
+     */
+    AbstractStock getStock(final StockSymbol stockSymbol) {
+        AtomicReferenceArray<AbstractStock> register = this.stocks;
+        int id = stockSymbol.id();
+        return id < register.length() ? register.get(id) : null;
     }
 
     /**
@@ -121,9 +542,16 @@ public class StockExchangeServiceImpl implements StockExchangeService {
      * @return the double value rounded to 2 decimals
      */
     protected Double roundDouble(final Double value) {
-        if (value.isNaN()) {
-            return value;
-        }
-        return Math.floor(value * 100) / 100d;
+        return roundDouble(value.doubleValue());
+    }
+
+    /**
+     * Rounds a given double value to 2 decimals, like {@link #roundDouble(Double)}, without boxing it.
+     *
+     * @param value the value to round
+     * @return the double value rounded to 2 decimals, or {@link Double#NaN} if the value is NaN
+     */
+    protected double roundDouble(final double value) {
+        return Rounding.roundDown(value);
     }
 }
@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
  * <li>GIN</li>
  * <li>JOE</li>
  * </ul>
+ * Further stocks can be listed at runtime, for symbols obtained through {@link StockSymbol#valueOf(String)}.
  *
  * @author CristinaGroapa
  */
@@ -21,7 +22,18 @@ public class StockExchangeServiceImplGBCE extends StockExchangeServiceImpl {
     private static final Logger LOGGER = LoggerFactory.getLogger(StockExchangeServiceImplGBCE.class);
 
     public StockExchangeServiceImplGBCE() {
-        super(LOGGER);
+        this(StockSettings.defaults());
+    }
+
+    /**
+     * Constructor that receives the settings of the stocks - e.g. with an event-time clock to replay historical
+     * trades.
+     *
+     * @param stockSettings the retention policy, clock and price windows given to the stocks; the clock is also used
+     *            by the all-share index
+     */
+    public StockExchangeServiceImplGBCE(final StockSettings stockSettings) {
+        super(LOGGER, stockSettings);
         createCommonStock(StockSymbol.TEA, 100.0, 0.0);
         createCommonStock(StockSymbol.POP, 100.0, 8.0);
         createCommonStock(StockSymbol.ALE, 60.0, 23.0);
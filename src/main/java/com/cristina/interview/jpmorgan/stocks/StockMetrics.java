@@ -0,0 +1,81 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * An immutable view of the derived metrics of a stock - i.e. stock price, dividend yield and P/E Ratio - rounded the
+ * same way as the calculations of the {@link StockExchangeService}.
+ *
+ * @author CristinaGroapa
+ */
+public final class StockMetrics {
+
+    /** The stock's symbol */
+    private final StockSymbol symbol;
+
+    /** The stock price, or {@link Double#NaN} if not enough data is available */
+    private final double stockPrice;
+
+    /** The dividend yield, or {@link Double#NaN} if not enough data is available */
+    private final double dividendYield;
+
+    /** The P/E Ratio, or {@link Double#NaN} if not enough data is available */
+    private final double peRatio;
+
+    /**
+     * Constructor.
+     *
+     * @param symbol the stock's symbol
+     * @param stockPrice the stock price
+     * @param dividendYield the dividend yield
+     * @param peRatio the P/E Ratio
+     */
+    StockMetrics(final StockSymbol symbol, final double stockPrice, final double dividendYield, final double peRatio) {
+        this.symbol = symbol;
+        this.stockPrice = stockPrice;
+        this.dividendYield = dividendYield;
+        this.peRatio = peRatio;
+    }
+
+    /**
+     * @return the stock's symbol
+     */
+    public StockSymbol getSymbol() {
+        return this.symbol;
+    }
+
+    /**
+     * @return the stock price, or {@link Double#NaN} if not enough data is available
+     */
+    public double getStockPrice() {
+        return this.stockPrice;
+    }
+
+    /**
+     * @return the dividend yield, or {@link Double#NaN} if not enough data is available
+     */
+    public double getDividendYield() {
+        return this.dividendYield;
+    }
+
+    /**
+     * @return the P/E Ratio, or {@link Double#NaN} if not enough data is available
+     */
+    public double getPERatio() {
+        return this.peRatio;
+    }
+
+    /**
+     * @param other other metrics, possibly null
+     * @return true if the other metrics have the same values as these, false otherwise
+     */
+    boolean hasSameValues(final StockMetrics other) {
+        return other != null && Double.compare(this.stockPrice, other.stockPrice) == 0
+                && Double.compare(this.dividendYield, other.dividendYield) == 0
+                && Double.compare(this.peRatio, other.peRatio) == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "StockMetrics[symbol=" + this.symbol + ", stockPrice=" + this.stockPrice + ", dividendYield="
+                + this.dividendYield + ", peRatio=" + this.peRatio + "]";
+    }
+}
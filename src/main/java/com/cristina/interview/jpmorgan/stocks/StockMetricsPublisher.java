@@ -0,0 +1,282 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Pushes the {@link StockMetrics} of one stock symbol to its subscribers when they change. The thread changing the
+ * stock only marks each subscription as changed and, the first time since the last delivery, hands it to the
+ * subscription's executor; the metrics are calculated and delivered there, when the subscriber has outstanding demand.
+ * Changes made while an update is pending are therefore conflated into one, and a slow subscriber never holds back the
+ * threads adding transactions, nor makes updates pile up.
+ * <p>
+ * The metrics are pushed when transactions are added or the dividend is set; the aging of the price window alone does
+ * not trigger an update.
+ *
+ * @author CristinaGroapa
+ */
+final class StockMetricsPublisher {
+
+    /** The subscriptions of a symbol without subscribers */
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    /** The symbol */
+    private final StockSymbol symbol;
+
+    /** Calculates the current metrics of the symbol */
+    private final StockExchangeService service;
+
+    /** The current subscriptions; replaced by a copy on each change */
+    private volatile Subscription[] subscriptions;
+
+    /**
+     * Constructor.
+     *
+     * @param symbol the symbol
+     * @param service the service calculating the metrics of the symbol
+     */
+    StockMetricsPublisher(final StockSymbol symbol, final StockExchangeService service) {
+        this.symbol = symbol;
+        this.service = service;
+        this.subscriptions = NO_SUBSCRIPTIONS;
+    }
+
+    /**
+     * Subscribes to the metrics of the symbol. The subscriber's {@link StockMetricsSubscriber#onSubscribe} is called on
+     * the executor, and the first update requested carries the current metrics.
+     *
+     * @param subscriber the subscriber
+     * @param executor the executor on which the subscriber is called
+     */
+    void subscribe(final StockMetricsSubscriber subscriber, final Executor executor) {
+        Subscription subscription = new Subscription(this, subscriber, executor);
+        synchronized (this) {
+            Subscription[] current = this.subscriptions;
+            Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            this.subscriptions = updated;
+        }
+        subscription.metricsChanged();
+    }
+
+    /**
+     * Called by the stock after it changed. Does not calculate anything.
+     */
+    void metricsChanged() {
+        for (Subscription subscription : this.subscriptions) {
+            subscription.metricsChanged();
+        }
+    }
+
+    /**
+     * @return the number of current subscriptions
+     */
+    int getSubscriberCount() {
+        return this.subscriptions.length;
+    }
+
+    /**
+     * Removes a subscription.
+     *
+     * @param subscription the subscription to remove
+     */
+    private synchronized void remove(final Subscription subscription) {
+        Subscription[] current = this.subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] updated = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                this.subscriptions = current.length == 1 ? NO_SUBSCRIPTIONS : updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the executor used when the subscriber does not give one
+     */
+    static Executor defaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Holds the default executor, so that its threads are only created when needed.
+     */
+    private static final class DefaultExecutorHolder {
+
+        /** Delivers the updates on daemon threads, so that subscriptions never keep the JVM alive */
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            /** Numbers the threads */
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "stock-metrics-" + this.count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * A subscription to the metrics of the symbol. All the calls to the subscriber are made by {@link #run()}, which
+     * runs on the executor and never concurrently with itself: a work counter makes sure a single run drains all the
+     * signals received in the meantime.
+     */
+    private static final class Subscription implements StockMetricsSubscription, Runnable {
+
+        /** Updater for {@link #demand} */
+        private static final AtomicLongFieldUpdater<Subscription> DEMAND =
+                AtomicLongFieldUpdater.newUpdater(Subscription.class, "demand");
+
+        /** Updater for {@link #changedFlag} */
+        private static final AtomicIntegerFieldUpdater<Subscription> CHANGED =
+                AtomicIntegerFieldUpdater.newUpdater(Subscription.class, "changedFlag");
+
+        /** Updater for {@link #work} */
+        private static final AtomicIntegerFieldUpdater<Subscription> WORK =
+                AtomicIntegerFieldUpdater.newUpdater(Subscription.class, "work");
+
+        /** The publisher */
+        private final StockMetricsPublisher publisher;
+
+        /** The subscriber */
+        private final StockMetricsSubscriber subscriber;
+
+        /** The executor on which the subscriber is called */
+        private final Executor executor;
+
+        /** The number of updates requested and not yet delivered; {@link Long#MAX_VALUE} means unbounded */
+        private volatile long demand;
+
+        /** 1 if the metrics may have changed since the last update was calculated, 0 otherwise */
+        private volatile int changedFlag;
+
+        /** The number of signals not yet handled by {@link #run()} */
+        private volatile int work;
+
+        /** The error ending the subscription, set when a non-positive count is requested */
+        private volatile Throwable error;
+
+        /** Whether the subscription was cancelled or ended */
+        private volatile boolean cancelled;
+
+        /** Whether {@link StockMetricsSubscriber#onSubscribe} was called; only used by {@link #run()} */
+        private boolean subscribed;
+
+        /** The last metrics delivered; only used by {@link #run()} */
+        private StockMetrics lastDelivered;
+
+        /**
+         * Constructor.
+         *
+         * @param publisher the publisher
+         * @param subscriber the subscriber
+         * @param executor the executor on which the subscriber is called
+         */
+        Subscription(final StockMetricsPublisher publisher, final StockMetricsSubscriber subscriber,
+                final Executor executor) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(final long count) {
+            if (count <= 0) {
+                this.error = new IllegalArgumentException("The number of updates requested must be positive, but was "
+                        + count);
+            } else {
+                long current;
+                long updated;
+                do {
+                    current = this.demand;
+                    updated = current + count < 0 ? Long.MAX_VALUE : current + count;
+                } while (!DEMAND.compareAndSet(this, current, updated));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            this.publisher.remove(this);
+        }
+
+        /**
+         * Marks the metrics as changed and schedules their delivery, unless it is already pending.
+         */
+        void metricsChanged() {
+            if (this.changedFlag == 0 && CHANGED.compareAndSet(this, 0, 1)) {
+                schedule();
+            }
+        }
+
+        /**
+         * Makes sure {@link #run()} handles the latest signal.
+         */
+        private void schedule() {
+            if (WORK.getAndIncrement(this) == 0) {
+                this.executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                drain();
+            } catch (RuntimeException e) {
+                // a subscriber must not throw; it gets no further calls
+                cancel();
+                throw e;
+            }
+        }
+
+        /**
+         * Handles the signal which scheduled {@link #run()}, and those arriving while doing so.
+         */
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!this.subscribed) {
+                    this.subscribed = true;
+                    this.subscriber.onSubscribe(this);
+                }
+                if (!this.cancelled) {
+                    Throwable failure = this.error;
+                    if (failure != null) {
+                        cancel();
+                        this.subscriber.onError(failure);
+                    } else if (this.demand > 0 && this.changedFlag == 1) {
+                        // clear the flag before calculating, so a change made meanwhile schedules another update
+                        CHANGED.set(this, 0);
+                        deliver();
+                    }
+                }
+                missed = WORK.addAndGet(this, -missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Calculates the current metrics and delivers them, unless they did not change since the last delivery.
+         */
+        private void deliver() {
+            StockMetrics metrics = this.publisher.service.getMetrics(this.publisher.symbol);
+            if (metrics == null || metrics.hasSameValues(this.lastDelivered)) {
+                return;
+            }
+            this.lastDelivered = metrics;
+            if (this.demand != Long.MAX_VALUE) {
+                DEMAND.decrementAndGet(this);
+            }
+            this.subscriber.onNext(metrics);
+        }
+    }
+}
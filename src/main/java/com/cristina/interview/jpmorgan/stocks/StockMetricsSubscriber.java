@@ -0,0 +1,38 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * Receives the {@link StockMetrics} of a stock each time they change, after subscribing through
+ * {@link StockExchangeService#subscribe(StockSymbol, StockMetricsSubscriber)}. The contract follows the reactive
+ * streams one: {@link #onSubscribe(StockMetricsSubscription)} is called first, then {@link #onNext(StockMetrics)} at
+ * most as many times as requested through the subscription, then possibly {@link #onError(Throwable)}. The metrics of
+ * a stock never end, so unlike a reactive streams subscription, a subscription never completes: it only ends when it
+ * is cancelled or fails. The calls are never concurrent, but they may be made by different threads.
+ * <p>
+ * Updates are conflated: a subscriber which does not keep up - i.e. has no outstanding demand when the metrics change
+ * - misses the intermediate values and gets only the latest ones once it requests more.
+ *
+ * @author CristinaGroapa
+ */
+public interface StockMetricsSubscriber {
+
+    /**
+     * Called once, before any other method, with the subscription through which updates are requested.
+     *
+     * @param subscription the subscription
+     */
+    void onSubscribe(StockMetricsSubscription subscription);
+
+    /**
+     * Called with the latest metrics of the stock, when they differ from the previous ones delivered.
+     *
+     * @param metrics the metrics
+     */
+    void onNext(StockMetrics metrics);
+
+    /**
+     * Called when the subscription ends because of an error - e.g. a non-positive request. No further calls are made.
+     *
+     * @param throwable the error
+     */
+    void onError(Throwable throwable);
+}
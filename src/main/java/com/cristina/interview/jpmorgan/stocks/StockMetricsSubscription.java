@@ -0,0 +1,24 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * Links a {@link StockMetricsSubscriber} to the stock it subscribed to, letting it ask for updates - i.e. exert
+ * backpressure - and stop them.
+ *
+ * @author CristinaGroapa
+ */
+public interface StockMetricsSubscription {
+
+    /**
+     * Adds to the number of updates the subscriber is ready to receive. Requesting {@link Long#MAX_VALUE} updates
+     * removes the bound altogether.
+     *
+     * @param count the number of updates; a non-positive count ends the subscription with
+     *            {@link StockMetricsSubscriber#onError(Throwable)}
+     */
+    void request(long count);
+
+    /**
+     * Stops the updates. Updates already being delivered may still arrive.
+     */
+    void cancel();
+}
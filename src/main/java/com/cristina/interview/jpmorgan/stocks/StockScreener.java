@@ -0,0 +1,410 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Screens all the stocks of a {@link StockExchangeServiceImpl} in one pass: evaluates the stock price, dividend yield
+ * and P/E Ratio of every registered stock, keeps the stocks accepted by a filter and ranks them by one of the metrics,
+ * keeping the best K.
+ * <p>
+ * The metrics of a stock are read without locking from one consistent state published by the stock, as of a time
+ * read once per range of stocks sharing a clock, without any lookup by symbol, boxing or logging. They are gathered
+ * into primitive columns indexed by symbol id, reused from one screen to the next. The symbol ids are split into
+ * ranges evaluated in parallel by a fork-join pool; each range selects its own best K stocks with a bounded heap, and
+ * the selections are merged as the tasks join, so only K stocks per range take part in the final ranking.
+ * <p>
+ * The screener owns its pool: {@link #close() close} it when it is no longer needed, to stop the threads.
+ *
+ * @author CristinaGroapa
+ */
+public class StockScreener implements Closeable {
+
+    /** The number of stocks evaluated sequentially by a task */
+    private static final int LEAF_SIZE = 512;
+
+    /** The metrics by which the stocks can be ranked */
+    public enum Metric {
+        /** The stock price */
+        STOCK_PRICE,
+        /** The dividend yield */
+        DIVIDEND_YIELD,
+        /** The P/E Ratio */
+        PE_RATIO
+    }
+
+    /**
+     * Decides which stocks are kept by a screen. Called from the threads of the pool, possibly at the same time, so
+     * implementations must be thread safe - ideally stateless.
+     */
+    public interface Filter {
+
+        /**
+         * @param stockSymbol the stock
+         * @param stockPrice the stock price, or {@link Double#NaN} if the stock had no transactions in the price
+         *            window
+         * @param dividendYield the dividend yield
+         * @param peRatio the P/E Ratio
+         * @return true if the stock is kept, false otherwise
+         */
+        boolean accept(StockSymbol stockSymbol, double stockPrice, double dividendYield, double peRatio);
+    }
+
+    /** A filter which keeps all the stocks */
+    public static final Filter ALL = new Filter() {
+
+        @Override
+        public boolean accept(final StockSymbol stockSymbol, final double stockPrice, final double dividendYield,
+                final double peRatio) {
+            return true;
+        }
+    };
+
+    /** The service holding the stocks */
+    private final StockExchangeServiceImpl service;
+
+    /** The pool evaluating the stocks */
+    private final ForkJoinPool pool;
+
+    /** The registered symbols as of the last screen, by id */
+    private StockSymbol[] symbols;
+
+    /** The stock price of each stock, by symbol id */
+    private double[] stockPrices;
+
+    /** The dividend yield of each stock, by symbol id */
+    private double[] dividendYields;
+
+    /** The P/E Ratio of each stock, by symbol id */
+    private double[] peRatios;
+
+    /**
+     * Constructor that uses one thread per available processor.
+     *
+     * @param service the service holding the stocks
+     */
+    public StockScreener(final StockExchangeServiceImpl service) {
+        this(service, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param service the service holding the stocks
+     * @param parallelism the number of threads evaluating the stocks
+     */
+    public StockScreener(final StockExchangeServiceImpl service, final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive, but was " + parallelism);
+        }
+        this.service = service;
+        this.pool = new ForkJoinPool(parallelism);
+        this.symbols = new StockSymbol[0];
+        this.stockPrices = new double[0];
+        this.dividendYields = new double[0];
+        this.peRatios = new double[0];
+    }
+
+    /**
+     * Shuts the pool down. Screens in progress complete, but no screen can be started afterwards.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Screens the stocks, keeping those accepted by a filter in the order of their symbol ids.
+     *
+     * @param filter decides which stocks are kept
+     * @return the stocks kept
+     */
+    public ScreenResult screen(final Filter filter) {
+        return screen(filter, null, false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Screens the stocks, keeping the K best of those accepted by a filter. Stocks for which the metric is NaN, e.g.
+     * without transactions in the price window, are not ranked. Stocks with the same value of the metric are ranked
+     * in the order of their symbol ids.
+     *
+     * @param filter decides which stocks are kept
+     * @param rankBy the metric by which the stocks are ranked, or null to keep them in the order of their symbol ids
+     * @param descending true to rank the highest values first, false to rank the lowest first
+     * @param limit the maximum number of stocks kept (K)
+     * @return the stocks kept, best first
+     */
+    public synchronized ScreenResult screen(final Filter filter, final Metric rankBy, final boolean descending,
+            final int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("The limit must not be negative, but was " + limit);
+        }
+        this.symbols = StockSymbol.values();
+        int symbolCount = this.symbols.length;
+        if (this.stockPrices.length < symbolCount) {
+            this.stockPrices = new double[symbolCount];
+            this.dividendYields = new double[symbolCount];
+            this.peRatios = new double[symbolCount];
+        }
+
+        double[] keys = rankBy == null ? null : column(rankBy);
+        Selection selection = this.pool.invoke(new ScreenTask(filter, keys, descending, limit, 0, symbolCount));
+        int size = selection.size;
+        StockSymbol[] selectedSymbols = new StockSymbol[size];
+        double[] selectedPrices = new double[size];
+        double[] selectedYields = new double[size];
+        double[] selectedRatios = new double[size];
+        for (int rank = size - 1; rank >= 0; rank--) {
+            int id = selection.poll();
+            selectedSymbols[rank] = this.symbols[id];
+            selectedPrices[rank] = this.stockPrices[id];
+            selectedYields[rank] = this.dividendYields[id];
+            selectedRatios[rank] = this.peRatios[id];
+        }
+        return new ScreenResult(selectedSymbols, selectedPrices, selectedYields, selectedRatios);
+    }
+
+    /**
+     * @param metric a metric
+     * @return the column holding the metric
+     */
+    private double[] column(final Metric metric) {
+        switch (metric) {
+            case STOCK_PRICE:
+                return this.stockPrices;
+            case DIVIDEND_YIELD:
+                return this.dividendYields;
+            case PE_RATIO:
+                return this.peRatios;
+            default:
+                throw new IllegalArgumentException("Unknown metric " + metric);
+        }
+    }
+
+    /**
+     * Evaluates a range of symbol ids and selects the best stocks of the range, splitting it between subtasks if it
+     * is larger than {@link #LEAF_SIZE}.
+     */
+    private final class ScreenTask extends RecursiveTask<Selection> {
+
+        /** Serial version UID */
+        private static final long serialVersionUID = 1L;
+
+        /** Decides which stocks are kept */
+        private final Filter filter;
+
+        /** The column by which the stocks are ranked, or null to rank them by symbol id */
+        private final double[] keys;
+
+        /** True to rank the highest values first, false to rank the lowest first */
+        private final boolean descending;
+
+        /** The maximum number of stocks kept */
+        private final int limit;
+
+        /** The first symbol id of the range (inclusive) */
+        private final int from;
+
+        /** The last symbol id of the range (exclusive) */
+        private final int to;
+
+        /**
+         * Constructor.
+         *
+         * @param filter decides which stocks are kept
+         * @param keys the column by which the stocks are ranked, or null to rank them by symbol id
+         * @param descending true to rank the highest values first, false to rank the lowest first
+         * @param limit the maximum number of stocks kept
+         * @param from the first symbol id of the range (inclusive)
+         * @param to the last symbol id of the range (exclusive)
+         */
+        ScreenTask(final Filter filter, final double[] keys, final boolean descending, final int limit,
+                final int from, final int to) {
+            this.filter = filter;
+            this.keys = keys;
+            this.descending = descending;
+            this.limit = limit;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Selection compute() {
+            if (this.to - this.from <= LEAF_SIZE) {
+                return evaluate();
+            }
+            int middle = (this.from + this.to) >>> 1;
+            ScreenTask left = new ScreenTask(this.filter, this.keys, this.descending, this.limit, this.from, middle);
+            left.fork();
+            Selection selection = new ScreenTask(this.filter, this.keys, this.descending, this.limit, middle,
+                                                 this.to).compute();
+            return selection.merge(left.join());
+        }
+
+        /**
+         * Evaluates the stocks of the range sequentially.
+         *
+         * @return the best stocks of the range
+         */
+        private Selection evaluate() {
+            StockExchangeServiceImpl stockService = StockScreener.this.service;
+            StockSymbol[] symbolsById = StockScreener.this.symbols;
+            double[] prices = StockScreener.this.stockPrices;
+            double[] yields = StockScreener.this.dividendYields;
+            double[] ratios = StockScreener.this.peRatios;
+            Selection selection = new Selection(this.keys, this.descending, this.limit, this.to - this.from);
+            MarketClock clock = null;
+            long nowNanos = 0L;
+            for (int id = this.from; id < this.to; id++) {
+                AbstractStock stock = stockService.getStock(symbolsById[id]);
+                if (stock == null) {
+                    continue;
+                }
+                if (stock.getClock() != clock) {
+                    clock = stock.getClock();
+                    nowNanos = clock.nowNanos();
+                }
+                stock.readMetrics(nowNanos, id, prices, yields, ratios);
+                prices[id] = stockService.roundDouble(prices[id]);
+                yields[id] = stockService.roundDouble(yields[id]);
+                ratios[id] = stockService.roundDouble(ratios[id]);
+                if (this.filter.accept(symbolsById[id], prices[id], yields[id], ratios[id])
+                        && (this.keys == null || !Double.isNaN(this.keys[id]))) {
+                    selection.offer(id);
+                }
+            }
+            return selection;
+        }
+    }
+
+    /**
+     * The best stocks of a range of symbol ids, up to a limit, kept as a binary heap of symbol ids with the worst
+     * stock at the root, so a better stock replaces it in O(log K).
+     */
+    private static final class Selection {
+
+        /** The column by which the stocks are ranked, or null to rank them by symbol id */
+        private final double[] keys;
+
+        /** True to rank the highest values first, false to rank the lowest first */
+        private final boolean descending;
+
+        /** The maximum number of stocks kept */
+        private final int limit;
+
+        /** The heap of symbol ids */
+        private int[] heap;
+
+        /** The number of stocks kept */
+        private int size;
+
+        /**
+         * Constructor.
+         *
+         * @param keys the column by which the stocks are ranked, or null to rank them by symbol id
+         * @param descending true to rank the highest values first, false to rank the lowest first
+         * @param limit the maximum number of stocks kept
+         * @param candidates the number of stocks which may be offered
+         */
+        Selection(final double[] keys, final boolean descending, final int limit, final int candidates) {
+            this.keys = keys;
+            this.descending = descending;
+            this.limit = limit;
+            this.heap = new int[Math.min(limit, candidates)];
+        }
+
+        /**
+         * Offers a stock, which is kept if there is room or it is better than the worst stock kept.
+         *
+         * @param id the symbol id of the stock
+         */
+        void offer(final int id) {
+            if (this.size < this.limit) {
+                if (this.size == this.heap.length) {
+                    this.heap = Arrays.copyOf(this.heap, Math.min(this.limit, this.size * 2 + 1));
+                }
+                int child = this.size++;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (!isBetter(this.heap[parent], id)) {
+                        break;
+                    }
+                    this.heap[child] = this.heap[parent];
+                    child = parent;
+                }
+                this.heap[child] = id;
+            } else if (this.size > 0 && isBetter(id, this.heap[0])) {
+                siftDown(id);
+            }
+        }
+
+        /**
+         * Removes the worst stock kept.
+         *
+         * @return the symbol id of the stock
+         */
+        int poll() {
+            int worst = this.heap[0];
+            int last = this.heap[--this.size];
+            if (this.size > 0) {
+                siftDown(last);
+            }
+            return worst;
+        }
+
+        /**
+         * Offers the stocks of another selection of the same screen.
+         *
+         * @param other the other selection
+         * @return this selection, or the other one if it is larger
+         */
+        Selection merge(final Selection other) {
+            Selection larger = this.size >= other.size ? this : other;
+            Selection smaller = larger == this ? other : this;
+            for (int i = 0; i < smaller.size; i++) {
+                larger.offer(smaller.heap[i]);
+            }
+            return larger;
+        }
+
+        /**
+         * Places a stock at the root and moves it down to its place.
+         *
+         * @param id the symbol id of the stock
+         */
+        private void siftDown(final int id) {
+            int parent = 0;
+            int half = this.size >>> 1;
+            while (parent < half) {
+                int child = 2 * parent + 1;
+                if (child + 1 < this.size && isBetter(this.heap[child], this.heap[child + 1])) {
+                    child++;
+                }
+                if (!isBetter(id, this.heap[child])) {
+                    break;
+                }
+                this.heap[parent] = this.heap[child];
+                parent = child;
+            }
+            this.heap[parent] = id;
+        }
+
+        /**
+         * @param id a symbol id
+         * @param other another symbol id
+         * @return true if the first stock ranks before the other one, false otherwise
+         */
+        private boolean isBetter(final int id, final int other) {
+            if (this.keys != null) {
+                double key = this.keys[id];
+                double otherKey = this.keys[other];
+                if (key != otherKey) {
+                    return this.descending ? key > otherKey : key < otherKey;
+                }
+            }
+            return id < other;
+        }
+    }
+}
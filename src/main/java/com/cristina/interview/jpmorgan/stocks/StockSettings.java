@@ -0,0 +1,156 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The settings of a stock - i.e. the policy for keeping its transactions, the clock giving the end of its price
+ * windows and the lookbacks of the windows - given to the stock when it is created, or to a
+ * {@link StockExchangeServiceImpl} for all the stocks it creates. Settings are immutable and built with a
+ * {@link Builder}, starting from the defaults, e.g.:
+ *
+ * <pre>
+ * StockSettings settings = StockSettings.builder().clock(MarketClock.eventTime()).build();
+ * </pre>
+ *
+ * @author CristinaGroapa
+ */
+public final class StockSettings {
+
+    /** The default settings */
+    private static final StockSettings DEFAULTS = builder().build();
+
+    /** Decides which transactions are evicted from the transaction history */
+    private final RetentionPolicy retentionPolicy;
+
+    /** Gives the current time - i.e. the end of the price windows */
+    private final MarketClock clock;
+
+    /** The lookback windows over which the prices are kept */
+    private final PriceWindows priceWindows;
+
+    /**
+     * Constructor. Only used by the {@link Builder}.
+     *
+     * @param retentionPolicy the policy deciding which transactions are evicted from the transaction history
+     * @param clock the clock giving the current time
+     * @param priceWindows the lookback windows over which the prices are kept
+     */
+    private StockSettings(final RetentionPolicy retentionPolicy, final MarketClock clock,
+            final PriceWindows priceWindows) {
+        this.retentionPolicy = retentionPolicy;
+        this.clock = clock;
+        this.priceWindows = priceWindows;
+    }
+
+    /**
+     * @return the default settings: the {@link AbstractStock#defaultRetentionPolicy() default retention policy}, the
+     *         {@link MarketClock#system() system clock} and the {@link PriceWindows#defaultWindows() default windows}
+     */
+    public static StockSettings defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @return a builder starting from the default settings
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the policy deciding which transactions are evicted from the transaction history
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        return this.retentionPolicy;
+    }
+
+    /**
+     * @return the clock giving the current time; the trades added to the stocks are reported to it
+     */
+    public MarketClock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * @return the lookback windows over which the prices are kept
+     */
+    public PriceWindows getPriceWindows() {
+        return this.priceWindows;
+    }
+
+    @Override
+    public String toString() {
+        return "StockSettings[" + this.retentionPolicy + ", " + this.clock + ", " + this.priceWindows + "]";
+    }
+
+    /**
+     * Builds {@link StockSettings}. A setting which is not set keeps its default value. <b>NB This class is not thread
+     * safe.</b>
+     */
+    public static final class Builder {
+
+        /** The retention policy, or null to keep the transactions of the longest lookback */
+        private RetentionPolicy retentionPolicy;
+
+        /** The clock */
+        private MarketClock clock;
+
+        /** The price windows */
+        private PriceWindows priceWindows;
+
+        /**
+         * Constructor starting from the default settings.
+         */
+        private Builder() {
+            this.clock = MarketClock.system();
+            this.priceWindows = PriceWindows.defaultWindows();
+        }
+
+        /**
+         * Sets the retention policy. By default, the transactions are kept as long as the longest lookback of the
+         * price windows.
+         *
+         * @param policy the policy deciding which transactions are evicted from the transaction history; it should
+         *            keep the transactions at least as long as the longest lookback
+         * @return this builder
+         */
+        public Builder retentionPolicy(final RetentionPolicy policy) {
+            this.retentionPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Sets the clock - e.g. an {@link MarketClock#eventTime() event-time clock} to replay historical trades. By
+         * default, the {@link MarketClock#system() system clock}.
+         *
+         * @param marketClock the clock giving the current time
+         * @return this builder
+         */
+        public Builder clock(final MarketClock marketClock) {
+            this.clock = marketClock;
+            return this;
+        }
+
+        /**
+         * Sets the lookback windows. By default, the {@link PriceWindows#defaultWindows() default windows}.
+         *
+         * @param windows the lookback windows over which the prices are kept
+         * @return this builder
+         */
+        public Builder priceWindows(final PriceWindows windows) {
+            this.priceWindows = windows;
+            return this;
+        }
+
+        /**
+         * @return the settings
+         */
+        public StockSettings build() {
+            RetentionPolicy policy = this.retentionPolicy;
+            if (policy == null) {
+                policy = RetentionPolicy.byAge(this.priceWindows.getLongestLookbackNanos(), TimeUnit.NANOSECONDS);
+            }
+            return new StockSettings(policy, this.clock, this.priceWindows);
+        }
+    }
+}
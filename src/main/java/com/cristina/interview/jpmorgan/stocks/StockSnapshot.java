@@ -0,0 +1,96 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * An immutable, consistent view of the state of a stock, as published after its last change.
+ *
+ * @author CristinaGroapa
+ */
+public final class StockSnapshot {
+
+    /** The price of the most recent transaction, or {@link Double#NaN} if there are no transactions */
+    private final double tickerPrice;
+
+    /** The sum of price * quantity for all the transactions inside the price window */
+    private final double priceQuantitySum;
+
+    /** The sum of quantities for all the transactions inside the price window */
+    private final long quantitySum;
+
+    /**
+     * The timestamp of the oldest transaction inside the price window, in nanoseconds since the epoch, or
+     * {@link Long#MAX_VALUE} if the window is empty
+     */
+    private final long windowStartNanos;
+
+    /** The stock's last dividend */
+    private final double lastDividend;
+
+    /**
+     * Constructor.
+     *
+     * @param tickerPrice the price of the most recent transaction
+     * @param priceQuantitySum the sum of price * quantity inside the price window
+     * @param quantitySum the sum of quantities inside the price window
+     * @param windowStartNanos the timestamp of the oldest transaction inside the price window
+     * @param lastDividend the stock's last dividend
+     */
+    StockSnapshot(final double tickerPrice, final double priceQuantitySum, final long quantitySum,
+            final long windowStartNanos, final double lastDividend) {
+        this.tickerPrice = tickerPrice;
+        this.priceQuantitySum = priceQuantitySum;
+        this.quantitySum = quantitySum;
+        this.windowStartNanos = windowStartNanos;
+        this.lastDividend = lastDividend;
+    }
+
+    /**
+     * @return true if the stock had at least one transaction, false otherwise
+     */
+    public boolean hasTransactions() {
+        return !Double.isNaN(this.tickerPrice);
+    }
+
+    /**
+     * @return the price of the most recent transaction, or {@link Double#NaN} if there are no transactions
+     */
+    public double getTickerPrice() {
+        return this.tickerPrice;
+    }
+
+    /**
+     * @return the sum of price * quantity for all the transactions inside the price window
+     */
+    public double getPriceQuantitySum() {
+        return this.priceQuantitySum;
+    }
+
+    /**
+     * @return the sum of quantities for all the transactions inside the price window
+     */
+    public long getQuantitySum() {
+        return this.quantitySum;
+    }
+
+    /**
+     * @return the volume weighted price of the transactions inside the price window, or {@link Double#NaN} if the
+     *         window is empty
+     */
+    public double getStockPrice() {
+        return this.priceQuantitySum / this.quantitySum;
+    }
+
+    /**
+     * @return the stock's last dividend
+     */
+    public double getLastDividend() {
+        return this.lastDividend;
+    }
+
+    /**
+     * @return the timestamp of the oldest transaction inside the price window, in nanoseconds since the epoch, or
+     *         {@link Long#MAX_VALUE} if the window is empty
+     */
+    public long getWindowStartNanos() {
+        return this.windowStartNanos;
+    }
+}
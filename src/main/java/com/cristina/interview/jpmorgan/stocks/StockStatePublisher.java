@@ -0,0 +1,235 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Publishes the state of a stock needed by the calculations - i.e. ticker price, price window sums and last dividend
+ * - together with the metrics derived from it - i.e. stock price, dividend yield and P/E Ratio - to any number of
+ * readers, using a sequence lock. The derived metrics are therefore calculated once per change, and reading one of
+ * them is a single load. The single writer (the thread holding the stock's lock) makes the
+ * sequence odd, stores the values and makes the sequence even again; all these are ordered stores, which are much
+ * cheaper than full volatile writes and do not allocate. Readers never lock: they remember the sequence, read the
+ * values and retry if the sequence changed in the meantime, so they never see a torn state.
+ * <p>
+ * A typical read looks like this:
+ *
+ * <pre>
+ * long sequence;
+ * double tickerPrice;
+ * double lastDividend;
+ * do {
+ *     sequence = state.beginRead();
+ *     tickerPrice = state.getTickerPrice();
+ *     lastDividend = state.getLastDividend();
+ * } while (!state.validate(sequence));
+ * </pre>
+ *
+ * A single value is always consistent, so it is read without checking the sequence.
+ *
+ * @author CristinaGroapa
+ */
+final class StockStatePublisher {
+
+    /** Updater for {@link #sequence} */
+    private static final AtomicLongFieldUpdater<StockStatePublisher> SEQUENCE =
+            AtomicLongFieldUpdater.newUpdater(StockStatePublisher.class, "sequence");
+
+    /** Updater for {@link #tickerPriceBits} */
+    private static final AtomicLongFieldUpdater<StockStatePublisher> TICKER_PRICE =
+            AtomicLongFieldUpdater.newUpdater(StockStatePublisher.class, "tickerPriceBits");
+
+    /** Updater for {@link #priceQuantitySumBits} */
+    private static final AtomicLongFieldUpdater<StockStatePublisher> PRICE_QUANTITY_SUM =
+            AtomicLongFieldUpdater.newUpdater(StockStatePublisher.class, "priceQuantitySumBits");
+
+    /** Updater for {@link #quantitySum} */
+    private static final AtomicLongFieldUpdater<StockStatePublisher> QUANTITY_SUM =
+            AtomicLongFieldUpdater.newUpdater(StockStatePublisher.class, "quantitySum");
+
+    /** Updater for {@link #windowStartNanos} */
+    private static final AtomicLongFieldUpdater<StockStatePublisher> WINDOW_START =
+            AtomicLongFieldUpdater.newUpdater(StockStatePublisher.class, "windowStartNanos");
+
+    /** Updater for {@link #lastDividendBits} */
+    private static final AtomicLongFieldUpdater<StockStatePublisher> LAST_DIVIDEND =
+            AtomicLongFieldUpdater.newUpdater(StockStatePublisher.class, "lastDividendBits");
+
+    /** Updater for {@link #stockPriceBits} */
+    private static final AtomicLongFieldUpdater<StockStatePublisher> STOCK_PRICE =
+            AtomicLongFieldUpdater.newUpdater(StockStatePublisher.class, "stockPriceBits");
+
+    /** Updater for {@link #dividendYieldBits} */
+    private static final AtomicLongFieldUpdater<StockStatePublisher> DIVIDEND_YIELD =
+            AtomicLongFieldUpdater.newUpdater(StockStatePublisher.class, "dividendYieldBits");
+
+    /** Updater for {@link #peRatioBits} */
+    private static final AtomicLongFieldUpdater<StockStatePublisher> PE_RATIO =
+            AtomicLongFieldUpdater.newUpdater(StockStatePublisher.class, "peRatioBits");
+
+    /** The sequence lock; odd while the writer is publishing */
+    private volatile long sequence;
+
+    /** The bits of the price of the most recent transaction, or of {@link Double#NaN} if there are no transactions */
+    private volatile long tickerPriceBits;
+
+    /** The bits of the sum of price * quantity for all the transactions inside the price window */
+    private volatile long priceQuantitySumBits;
+
+    /** The sum of quantities for all the transactions inside the price window */
+    private volatile long quantitySum;
+
+    /**
+     * The timestamp of the oldest transaction inside the price window, in nanoseconds since the epoch, or
+     * {@link Long#MAX_VALUE} if the window is empty
+     */
+    private volatile long windowStartNanos;
+
+    /** The bits of the stock's last dividend */
+    private volatile long lastDividendBits;
+
+    /** The bits of the volume weighted price inside the price window, or of {@link Double#NaN} if it is empty */
+    private volatile long stockPriceBits;
+
+    /** The bits of the dividend yield, or of {@link Double#NaN} if there are no transactions */
+    private volatile long dividendYieldBits;
+
+    /** The bits of the P/E Ratio, or of {@link Double#NaN} if not enough data is available */
+    private volatile long peRatioBits;
+
+    /**
+     * Constructor. Publishes the state of a stock without transactions.
+     *
+     * @param lastDividend the stock's last dividend
+     */
+    StockStatePublisher(final double lastDividend) {
+        this.tickerPriceBits = Double.doubleToRawLongBits(Double.NaN);
+        this.priceQuantitySumBits = Double.doubleToRawLongBits(0.0d);
+        this.windowStartNanos = Long.MAX_VALUE;
+        this.lastDividendBits = Double.doubleToRawLongBits(lastDividend);
+        this.stockPriceBits = Double.doubleToRawLongBits(Double.NaN);
+        this.dividendYieldBits = Double.doubleToRawLongBits(Double.NaN);
+        this.peRatioBits = Double.doubleToRawLongBits(Double.NaN);
+    }
+
+    /**
+     * Publishes a new state. Must only be called by one thread at a time.
+     *
+     * @param tickerPrice the price of the most recent transaction
+     * @param priceQuantitySum the sum of price * quantity inside the price window
+     * @param quantitySum the sum of quantities inside the price window
+     * @param windowStartNanos the timestamp of the oldest transaction inside the price window
+     * @param lastDividend the stock's last dividend
+     * @param dividendYield the dividend yield
+     * @param peRatio the P/E Ratio
+     */
+    void publish(final double tickerPrice, final double priceQuantitySum, final long quantitySum,
+            final long windowStartNanos, final double lastDividend, final double dividendYield, final double peRatio) {
+        long current = this.sequence;
+        SEQUENCE.lazySet(this, current + 1);
+        TICKER_PRICE.lazySet(this, Double.doubleToRawLongBits(tickerPrice));
+        PRICE_QUANTITY_SUM.lazySet(this, Double.doubleToRawLongBits(priceQuantitySum));
+        QUANTITY_SUM.lazySet(this, quantitySum);
+        WINDOW_START.lazySet(this, windowStartNanos);
+        LAST_DIVIDEND.lazySet(this, Double.doubleToRawLongBits(lastDividend));
+        STOCK_PRICE.lazySet(this, Double.doubleToRawLongBits(priceQuantitySum / quantitySum));
+        DIVIDEND_YIELD.lazySet(this, Double.doubleToRawLongBits(dividendYield));
+        PE_RATIO.lazySet(this, Double.doubleToRawLongBits(peRatio));
+        SEQUENCE.lazySet(this, current + 2);
+    }
+
+    /**
+     * Starts reading the state, waiting for a publication in progress to finish.
+     *
+     * @return the sequence to validate the read values against
+     */
+    long beginRead() {
+        long current = this.sequence;
+        while ((current & 1L) != 0) {
+            current = this.sequence;
+        }
+        return current;
+    }
+
+    /**
+     * Checks whether the values read since {@link #beginRead()} are consistent.
+     *
+     * @param readSequence the sequence returned by {@link #beginRead()}
+     * @return true if no state was published in the meantime, false if the values must be read again
+     */
+    boolean validate(final long readSequence) {
+        return this.sequence == readSequence;
+    }
+
+    /**
+     * @return the price of the most recent transaction, or {@link Double#NaN} if there are no transactions
+     */
+    double getTickerPrice() {
+        return Double.longBitsToDouble(this.tickerPriceBits);
+    }
+
+    /**
+     * @return the sum of price * quantity for all the transactions inside the price window
+     */
+    double getPriceQuantitySum() {
+        return Double.longBitsToDouble(this.priceQuantitySumBits);
+    }
+
+    /**
+     * @return the sum of quantities for all the transactions inside the price window
+     */
+    long getQuantitySum() {
+        return this.quantitySum;
+    }
+
+    /**
+     * @return the timestamp of the oldest transaction inside the price window, in nanoseconds since the epoch, or
+     *         {@link Long#MAX_VALUE} if the window is empty
+     */
+    long getWindowStartNanos() {
+        return this.windowStartNanos;
+    }
+
+    /**
+     * @return the stock's last dividend
+     */
+    double getLastDividend() {
+        return Double.longBitsToDouble(this.lastDividendBits);
+    }
+
+    /**
+     * @return the volume weighted price inside the price window, or {@link Double#NaN} if it is empty
+     */
+    double getStockPrice() {
+        return Double.longBitsToDouble(this.stockPriceBits);
+    }
+
+    /**
+     * @return the dividend yield, or {@link Double#NaN} if there are no transactions
+     */
+    double getDividendYield() {
+        return Double.longBitsToDouble(this.dividendYieldBits);
+    }
+
+    /**
+     * @return the P/E Ratio, or {@link Double#NaN} if not enough data is available
+     */
+    double getPERatio() {
+        return Double.longBitsToDouble(this.peRatioBits);
+    }
+
+    /**
+     * Reads a consistent copy of the state.
+     *
+     * @return the snapshot of the state
+     */
+    StockSnapshot readSnapshot() {
+        long readSequence;
+        StockSnapshot snapshot;
+        do {
+            readSequence = beginRead();
+            snapshot = new StockSnapshot(getTickerPrice(), getPriceQuantitySum(), getQuantitySum(),
+                                         getWindowStartNanos(), getLastDividend());
+        } while (!validate(readSequence));
+        return snapshot;
+    }
+}
@@ -1,11 +1,92 @@
 package com.cristina.interview.jpmorgan.stocks;
 
 /**
- * A list of all stock symbols.
+ * The symbol of a stock. Symbols are interned: there is a single instance per ticker, so they can be compared with
+ * ==, and each one has a dense integer id. New symbols are registered at runtime through {@link #valueOf(String)}.
  *
  * @author CristinaGroapa
  */
 @SuppressWarnings("javadoc")
-public enum StockSymbol {
-    TEA, POP, ALE, GIN, JOE
+public final class StockSymbol {
+
+    public static final StockSymbol TEA = valueOf("TEA");
+
+    public static final StockSymbol POP = valueOf("POP");
+
+    public static final StockSymbol ALE = valueOf("ALE");
+
+    public static final StockSymbol GIN = valueOf("GIN");
+
+    public static final StockSymbol JOE = valueOf("JOE");
+
+    /** The ticker */
+    private final String ticker;
+
+    /** The dense id of this symbol */
+    private final int id;
+
+    /**
+     * Constructor. Only used by the {@link SymbolRegistry}.
+     *
+     * @param ticker the ticker
+     * @param id the dense id of this symbol
+     */
+    StockSymbol(final String ticker, final int id) {
+        this.ticker = ticker;
+        this.id = id;
+    }
+
+    /**
+     * Returns the symbol for a ticker, registering it if it is not known yet.
+     *
+     * @param ticker the ticker
+     * @return the symbol
+     */
+    public static StockSymbol valueOf(final String ticker) {
+        return SymbolRegistry.INSTANCE.intern(ticker);
+    }
+
+    /**
+     * Returns the symbol for a ticker without registering it - e.g. for tickers coming from untrusted clients.
+     *
+     * @param ticker the ticker
+     * @return the symbol, or null if the ticker is not registered
+     */
+    public static StockSymbol lookup(final String ticker) {
+        return SymbolRegistry.INSTANCE.find(ticker);
+    }
+
+    /**
+     * @return all the registered symbols, ordered by id
+     */
+    public static StockSymbol[] values() {
+        return SymbolRegistry.INSTANCE.values();
+    }
+
+    /**
+     * @param id a symbol id
+     * @return the symbol with this id, or null if there is none
+     */
+    public static StockSymbol forId(final int id) {
+        return SymbolRegistry.INSTANCE.get(id);
+    }
+
+    /**
+     * @return the ticker
+     */
+    public String name() {
+        return this.ticker;
+    }
+
+    /**
+     * @return the dense id of this symbol - i.e. a number between 0 and the number of registered symbols
+     */
+    public int id() {
+        return this.id;
+    }
+
+    @Override
+    public String toString() {
+        return this.ticker;
+    }
 }
@@ -0,0 +1,117 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns ticker strings into {@link StockSymbol} instances with dense integer ids - i.e. the first symbol gets id 0,
+ * the next id 1 and so on - so that the stocks can be kept in arrays indexed by symbol id. Symbols are registered at
+ * runtime the first time their ticker is seen and are never removed, so an id always identifies the same ticker for
+ * the lifetime of the process.
+ *
+ * @author CristinaGroapa
+ */
+final class SymbolRegistry {
+
+    /** The registry used by {@link StockSymbol} */
+    static final SymbolRegistry INSTANCE = new SymbolRegistry();
+
+    /** The initial capacity of the id lookup table */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The registered symbols, by ticker */
+    private final ConcurrentMap<String, StockSymbol> byTicker;
+
+    /** The registered symbols, by id; only the first {@link #size} entries are used */
+    private volatile StockSymbol[] byId;
+
+    /** The number of registered symbols */
+    private volatile int size;
+
+    /**
+     * Default constructor.
+     */
+    private SymbolRegistry() {
+        this.byTicker = new ConcurrentHashMap<>();
+        this.byId = new StockSymbol[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the symbol for a ticker, registering it if it is not known yet.
+     *
+     * @param ticker the ticker
+     * @return the symbol
+     */
+    StockSymbol intern(final String ticker) {
+        StockSymbol symbol = this.byTicker.get(ticker);
+        if (symbol != null) {
+            return symbol;
+        }
+        if (ticker.isEmpty()) {
+            throw new IllegalArgumentException("A ticker cannot be empty");
+        }
+        return register(ticker);
+    }
+
+    /**
+     * @param ticker a ticker
+     * @return the symbol registered for the ticker, or null if there is none
+     */
+    StockSymbol find(final String ticker) {
+        return this.byTicker.get(ticker);
+    }
+
+    /**
+     * @param id a symbol id
+     * @return the symbol with this id, or null if there is none
+     */
+    StockSymbol get(final int id) {
+        int currentSize = this.size;
+        StockSymbol[] symbols = this.byId;
+        if (id < 0 || id >= currentSize) {
+            return null;
+        }
+        return symbols[id];
+    }
+
+    /**
+     * @return the number of registered symbols, which is also the lowest id not yet in use
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return a copy of all the registered symbols, ordered by id
+     */
+    StockSymbol[] values() {
+        int currentSize = this.size;
+        return Arrays.copyOf(this.byId, currentSize);
+    }
+
+    /**
+     * Registers a ticker which was not found.
+     *
+     * @param ticker the ticker
+     * @return the symbol
+     */
+    private synchronized StockSymbol register(final String ticker) {
+        StockSymbol symbol = this.byTicker.get(ticker);
+        if (symbol != null) {
+            return symbol;
+        }
+
+        int id = this.size;
+        StockSymbol[] symbols = this.byId;
+        if (id == symbols.length) {
+            symbols = Arrays.copyOf(symbols, symbols.length * 2);
+            this.byId = symbols;
+        }
+        symbol = new StockSymbol(ticker, id);
+        symbols[id] = symbol;
+        this.size = id + 1;
+        this.byTicker.put(ticker, symbol);
+        return symbol;
+    }
+}
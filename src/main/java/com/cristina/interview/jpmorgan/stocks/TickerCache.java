@@ -0,0 +1,114 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Finds the symbol of a ticker given as bytes, without creating a string for the tickers seen before. The tickers are
+ * only {@link StockSymbol#lookup(String) looked up}, never registered, so reading a file full of unknown tickers does
+ * not grow the symbol registry; the tickers not registered when first seen are remembered as unknown, so a cache
+ * should not outlive the file or journal it reads. <b>NB This class is not thread safe.</b>
+ *
+ * @author CristinaGroapa
+ */
+final class TickerCache {
+
+    /** The tickers, in an open addressing hash table */
+    private byte[][] tickers;
+
+    /** The symbols of the tickers, null for the unknown tickers */
+    private StockSymbol[] symbols;
+
+    /** The number of tickers in the table */
+    private int size;
+
+    /**
+     * Default constructor.
+     */
+    TickerCache() {
+        this.tickers = new byte[64][];
+        this.symbols = new StockSymbol[64];
+    }
+
+    /**
+     * Finds the symbol of a ticker.
+     *
+     * @param buffer the buffer holding the ticker
+     * @param from the start of the ticker in the buffer (inclusive)
+     * @param to the end of the ticker in the buffer (exclusive)
+     * @return the symbol, or null if the ticker is not registered
+     */
+    StockSymbol lookup(final ByteBuffer buffer, final int from, final int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        int mask = this.tickers.length - 1;
+        int slot = hash & mask;
+        byte[] ticker;
+        while ((ticker = this.tickers[slot]) != null) {
+            if (matches(ticker, buffer, from, to)) {
+                return this.symbols[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        ticker = new byte[to - from];
+        for (int i = 0; i < ticker.length; i++) {
+            ticker[i] = buffer.get(from + i);
+        }
+        StockSymbol stockSymbol = StockSymbol.lookup(new String(ticker, StandardCharsets.US_ASCII));
+        this.tickers[slot] = ticker;
+        this.symbols[slot] = stockSymbol;
+        if (++this.size * 2 > this.tickers.length) {
+            grow();
+        }
+        return stockSymbol;
+    }
+
+    /**
+     * @param ticker a cached ticker
+     * @param buffer the buffer holding the looked up ticker
+     * @param from the start of the looked up ticker in the buffer (inclusive)
+     * @param to the end of the looked up ticker in the buffer (exclusive)
+     * @return true if the tickers are equal, false otherwise
+     */
+    private static boolean matches(final byte[] ticker, final ByteBuffer buffer, final int from, final int to) {
+        if (ticker.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < ticker.length; i++) {
+            if (ticker[i] != buffer.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the capacity of the table.
+     */
+    private void grow() {
+        byte[][] oldTickers = this.tickers;
+        StockSymbol[] oldSymbols = this.symbols;
+        this.tickers = new byte[oldTickers.length * 2][];
+        this.symbols = new StockSymbol[oldSymbols.length * 2];
+        int mask = this.tickers.length - 1;
+        for (int i = 0; i < oldTickers.length; i++) {
+            byte[] ticker = oldTickers[i];
+            if (ticker == null) {
+                continue;
+            }
+            int hash = 0;
+            for (byte character : ticker) {
+                hash = 31 * hash + character;
+            }
+            int slot = hash & mask;
+            while (this.tickers[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            this.tickers[slot] = ticker;
+            this.symbols[slot] = oldSymbols[i];
+        }
+    }
+}
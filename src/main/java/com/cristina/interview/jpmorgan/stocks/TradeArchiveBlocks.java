@@ -0,0 +1,174 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The block index of one stock in a trade archive: the time range, number of trades and location of each block, in
+ * chronological order. Since the trades of a stock are archived in chronological order, the blocks overlapping a time
+ * range are found by a binary search.
+ * <b>NB This class is not thread safe.</b>
+ *
+ * @author CristinaGroapa
+ */
+final class TradeArchiveBlocks {
+
+    /** The size of an entry of the index, in bytes */
+    static final int ENTRY_SIZE = 8 + 8 + 4 + 8 + 4;
+
+    /** The timestamp of the first trade of each block */
+    private long[] firstTimestamps;
+
+    /** The timestamp of the last trade of each block */
+    private long[] lastTimestamps;
+
+    /** The number of trades in each block */
+    private int[] counts;
+
+    /** The position of each block in the file */
+    private long[] offsets;
+
+    /** The size of each block, in bytes */
+    private int[] lengths;
+
+    /** The number of blocks */
+    private int size;
+
+    /** The number of trades in all the blocks */
+    private long tradeCount;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the initial number of blocks
+     */
+    TradeArchiveBlocks(final int capacity) {
+        int initial = Math.max(capacity, 1);
+        this.firstTimestamps = new long[initial];
+        this.lastTimestamps = new long[initial];
+        this.counts = new int[initial];
+        this.offsets = new long[initial];
+        this.lengths = new int[initial];
+    }
+
+    /**
+     * Adds a block after the existing ones.
+     *
+     * @param firstTimestamp the timestamp of the first trade of the block
+     * @param lastTimestamp the timestamp of the last trade of the block
+     * @param count the number of trades in the block
+     * @param offset the position of the block in the file
+     * @param length the size of the block, in bytes
+     */
+    void add(final long firstTimestamp, final long lastTimestamp, final int count, final long offset,
+            final int length) {
+        if (this.size == this.counts.length) {
+            int capacity = this.size * 2;
+            this.firstTimestamps = Arrays.copyOf(this.firstTimestamps, capacity);
+            this.lastTimestamps = Arrays.copyOf(this.lastTimestamps, capacity);
+            this.counts = Arrays.copyOf(this.counts, capacity);
+            this.offsets = Arrays.copyOf(this.offsets, capacity);
+            this.lengths = Arrays.copyOf(this.lengths, capacity);
+        }
+        this.firstTimestamps[this.size] = firstTimestamp;
+        this.lastTimestamps[this.size] = lastTimestamp;
+        this.counts[this.size] = count;
+        this.offsets[this.size] = offset;
+        this.lengths[this.size] = length;
+        this.size++;
+        this.tradeCount += count;
+    }
+
+    /**
+     * @param fromNanos the start of a time range, in nanoseconds since the epoch
+     * @return the first block with trades at or after the start, or {@link #size()} if there is none
+     */
+    int findFirst(final long fromNanos) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.lastTimestamps[middle] < fromNanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the number of blocks
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of trades in all the blocks
+     */
+    long getTradeCount() {
+        return this.tradeCount;
+    }
+
+    /**
+     * @return the timestamp of the last trade of the last block, or {@link Long#MIN_VALUE} if there are no blocks
+     */
+    long lastTimestamp() {
+        return this.size == 0 ? Long.MIN_VALUE : this.lastTimestamps[this.size - 1];
+    }
+
+    /**
+     * @param block the index of a block
+     * @return the timestamp of the first trade of the block
+     */
+    long firstTimestamp(final int block) {
+        return this.firstTimestamps[block];
+    }
+
+    /**
+     * @param block the index of a block
+     * @return the number of trades in the block
+     */
+    int count(final int block) {
+        return this.counts[block];
+    }
+
+    /**
+     * @param block the index of a block
+     * @return the position of the block in the file
+     */
+    long offset(final int block) {
+        return this.offsets[block];
+    }
+
+    /**
+     * Writes the entries of the index.
+     *
+     * @param out the buffer receiving the entries; must have {@link #ENTRY_SIZE} bytes left per block
+     */
+    void writeTo(final ByteBuffer out) {
+        for (int i = 0; i < this.size; i++) {
+            out.putLong(this.firstTimestamps[i]);
+            out.putLong(this.lastTimestamps[i]);
+            out.putInt(this.counts[i]);
+            out.putLong(this.offsets[i]);
+            out.putInt(this.lengths[i]);
+        }
+    }
+
+    /**
+     * Reads the entries of an index.
+     *
+     * @param in the buffer holding the entries, at their position
+     * @param size the number of blocks
+     * @return the index
+     */
+    static TradeArchiveBlocks readFrom(final ByteBuffer in, final int size) {
+        TradeArchiveBlocks blocks = new TradeArchiveBlocks(size);
+        for (int i = 0; i < size; i++) {
+            blocks.add(in.getLong(), in.getLong(), in.getInt(), in.getLong(), in.getInt());
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,211 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a trade archive written by a {@link TradeArchiveWriter}. The file is memory-mapped and only its
+ * index is read up front; a scan of a time range of one stock finds the blocks overlapping the range by a binary
+ * search of the index and decodes only those, straight from the mapped bytes. The index is keyed by ticker, so
+ * opening an archive does not register its tickers as symbols.
+ * <b>NB This class is not thread safe.</b>
+ *
+ * @author CristinaGroapa
+ */
+public class TradeArchiveReader implements Closeable {
+
+    /** The logger for this class */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TradeArchiveReader.class);
+
+    /** The archive file */
+    private final RandomAccessFile file;
+
+    /** The mapped file */
+    private final MappedByteBuffer buffer;
+
+    /** The block index of each stock, by ticker */
+    private final Map<String, TradeArchiveBlocks> index;
+
+    /** The timestamps of the block being read */
+    private final long[] timestamps;
+
+    /** The quantities of the block being read */
+    private final long[] quantities;
+
+    /** The sides of the block being read */
+    private final byte[] sides;
+
+    /** The prices of the block being read */
+    private final double[] prices;
+
+    /** The number of blocks decoded since the archive was opened */
+    private long decodedBlocks;
+
+    /**
+     * Opens an archive.
+     *
+     * @param path the archive file
+     * @throws IOException if the file cannot be mapped, is larger than 2 GB or is not a trade archive
+     */
+    public TradeArchiveReader(final File path) throws IOException {
+        this.file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = this.file.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The trade archive " + path + " is larger than 2 GB");
+            }
+            if (size < 8 + TradeArchiveWriter.FOOTER_SIZE) {
+                throw new IOException("The file " + path + " is not a trade archive");
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int footer = (int) size - TradeArchiveWriter.FOOTER_SIZE;
+            if (this.buffer.getLong(0) != TradeArchiveWriter.MAGIC
+                    || this.buffer.getLong(footer + 8) != TradeArchiveWriter.MAGIC) {
+                throw new IOException("The file " + path + " is not a complete trade archive");
+            }
+            this.index = readIndex((int) this.buffer.getLong(footer));
+        } catch (IOException | RuntimeException e) {
+            this.file.close();
+            throw e;
+        }
+        this.timestamps = new long[TradeBlockCodec.BLOCK_SIZE];
+        this.quantities = new long[TradeBlockCodec.BLOCK_SIZE];
+        this.sides = new byte[TradeBlockCodec.BLOCK_SIZE];
+        this.prices = new double[TradeBlockCodec.BLOCK_SIZE];
+
+        LOGGER.info("Opened trade archive {} with {} stocks", path, this.index.size());
+    }
+
+    /**
+     * @return the tickers of the stocks which have trades in the archive
+     */
+    public Set<String> getTickers() {
+        return Collections.unmodifiableSet(this.index.keySet());
+    }
+
+    /**
+     * @param stockSymbol a stock
+     * @return the number of trades of the stock in the archive
+     */
+    public long getTradeCount(final StockSymbol stockSymbol) {
+        TradeArchiveBlocks blocks = this.index.get(stockSymbol.name());
+        return blocks == null ? 0L : blocks.getTradeCount();
+    }
+
+    /**
+     * Adds the trades of a stock within a time range to a batch, in chronological order.
+     *
+     * @param stockSymbol the stock
+     * @param fromNanos the start of the range, in nanoseconds since the epoch (inclusive)
+     * @param toNanos the end of the range, in nanoseconds since the epoch (exclusive)
+     * @param batch the batch receiving the trades
+     * @return the number of trades added
+     */
+    public int scan(final StockSymbol stockSymbol, final long fromNanos, final long toNanos, final TradeBatch batch) {
+        TradeArchiveBlocks blocks = this.index.get(stockSymbol.name());
+        if (blocks == null) {
+            return 0;
+        }
+        int found = 0;
+        for (int block = blocks.findFirst(fromNanos); block < blocks.size()
+                && blocks.firstTimestamp(block) < toNanos; block++) {
+            int count = decode(blocks, block);
+            for (int i = 0; i < count; i++) {
+                if (this.timestamps[i] >= fromNanos && this.timestamps[i] < toNanos) {
+                    batch.add(stockSymbol, this.timestamps[i], this.quantities[i], this.sides[i], this.prices[i]);
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Calculates the volume weighted average price of a stock over a time range, e.g. over a past trading day.
+     *
+     * @param stockSymbol the stock
+     * @param fromNanos the start of the range, in nanoseconds since the epoch (inclusive)
+     * @param toNanos the end of the range, in nanoseconds since the epoch (exclusive)
+     * @return the VWAP, or {@link Double#NaN} if the stock has no trades in the range
+     */
+    public double calculateVwap(final StockSymbol stockSymbol, final long fromNanos, final long toNanos) {
+        TradeArchiveBlocks blocks = this.index.get(stockSymbol.name());
+        if (blocks == null) {
+            return Double.NaN;
+        }
+        double priceQuantitySum = 0.0;
+        long quantitySum = 0L;
+        for (int block = blocks.findFirst(fromNanos); block < blocks.size()
+                && blocks.firstTimestamp(block) < toNanos; block++) {
+            int count = decode(blocks, block);
+            for (int i = 0; i < count; i++) {
+                if (this.timestamps[i] >= fromNanos && this.timestamps[i] < toNanos) {
+                    priceQuantitySum += this.prices[i] * this.quantities[i];
+                    quantitySum += this.quantities[i];
+                }
+            }
+        }
+        return quantitySum == 0 ? Double.NaN : priceQuantitySum / quantitySum;
+    }
+
+    /**
+     * @return the number of blocks decoded since the archive was opened
+     */
+    long getDecodedBlocks() {
+        return this.decodedBlocks;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    /**
+     * Decodes a block into the columns of this reader.
+     *
+     * @param blocks the block index of a stock
+     * @param block the index of the block
+     * @return the number of trades in the block
+     */
+    private int decode(final TradeArchiveBlocks blocks, final int block) {
+        int count = blocks.count(block);
+        TradeBlockCodec.decode(this.buffer, (int) blocks.offset(block), count, this.timestamps, this.quantities,
+                               this.sides, this.prices);
+        this.decodedBlocks++;
+        return count;
+    }
+
+    /**
+     * Reads the index of the archive.
+     *
+     * @param offset the position of the index in the file
+     * @return the block index of each stock, by ticker
+     */
+    private Map<String, TradeArchiveBlocks> readIndex(final int offset) {
+        ByteBuffer in = this.buffer.duplicate();
+        in.position(offset);
+        int symbolCount = in.getInt();
+        Map<String, TradeArchiveBlocks> blocksByTicker = new LinkedHashMap<>();
+        for (int i = 0; i < symbolCount; i++) {
+            byte[] ticker = new byte[in.getShort()];
+            in.get(ticker);
+            String tickerName = new String(ticker, StandardCharsets.UTF_8);
+            blocksByTicker.put(tickerName, TradeArchiveBlocks.readFrom(in, in.getInt()));
+        }
+        return blocksByTicker;
+    }
+}
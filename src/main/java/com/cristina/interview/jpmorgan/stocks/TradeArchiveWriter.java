@@ -0,0 +1,208 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a trade archive: a compact file with the trades of each stock stored in blocks of up to 1024
+ * trades as compressed columns (see {@link TradeBlockCodec}), which a {@link TradeArchiveReader} memory-maps to scan
+ * a time range of one stock without decoding the rest of the file. The file is laid out as:
+ *
+ * <pre>
+ * MAGIC | block | block | ... | index | index offset | MAGIC
+ * </pre>
+ *
+ * where the index holds, for each stock, its ticker and the time range, number of trades, position and size of each
+ * of its blocks. The trades of a stock must be appended in chronological order; the blocks of different stocks may be
+ * interleaved. The index is written when the archive is closed.
+ * <b>NB This class is not thread safe.</b>
+ *
+ * @author CristinaGroapa
+ */
+public class TradeArchiveWriter implements Closeable {
+
+    /** Marks the start and the end of an archive: "TRDARCH1" */
+    static final long MAGIC = 0x5452444152434831L;
+
+    /** The size of the footer: the index offset and the magic number */
+    static final int FOOTER_SIZE = 8 + 8;
+
+    /** The logger for this class */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TradeArchiveWriter.class);
+
+    /** The archive file */
+    private final RandomAccessFile file;
+
+    /** The channel used to write the file */
+    private final FileChannel channel;
+
+    /** Encodes the blocks */
+    private final TradeBlockCodec codec;
+
+    /** The block index of each stock, in the order in which the stocks were first appended */
+    private final Map<StockSymbol, TradeArchiveBlocks> index;
+
+    /** Receives the transactions of a stock when appending the stocks of a service; reused from one to the next */
+    private final TradeBatch stockTrades;
+
+    /** The position at which the next block is written */
+    private long position;
+
+    /**
+     * Creates an archive, replacing the file if it exists.
+     *
+     * @param path the archive file
+     * @throws IOException if the file cannot be created
+     */
+    public TradeArchiveWriter(final File path) throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+        this.codec = new TradeBlockCodec();
+        this.index = new LinkedHashMap<>();
+        this.stockTrades = new TradeBatch();
+
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putLong(MAGIC).flip();
+        write(header);
+    }
+
+    /**
+     * Appends the trades of a batch. Within the batch and across calls, the trades of each stock must be in
+     * chronological order.
+     *
+     * @param batch the trades to append
+     * @return the number of trades appended
+     * @throws IOException if the trades cannot be written
+     * @throws IllegalArgumentException if the trades of a stock are not in chronological order; nothing is appended
+     */
+    public int append(final TradeBatch batch) throws IOException {
+        int size = batch.size();
+        batch.groupBySymbol();
+        // checks every stock before writing anything, so a rejected batch leaves the archive as it was
+        for (int from = 0, to; from < size; from = to) {
+            to = endOfGroup(batch, from);
+        }
+        for (int from = 0, to; from < size; from = to) {
+            to = endOfGroup(batch, from);
+            StockSymbol symbol = batch.symbol(batch.orderedIndex(from));
+            TradeArchiveBlocks blocks = this.index.get(symbol);
+            if (blocks == null) {
+                blocks = new TradeArchiveBlocks(16);
+                this.index.put(symbol, blocks);
+            }
+            for (int blockFrom = from; blockFrom < to; blockFrom += TradeBlockCodec.BLOCK_SIZE) {
+                int blockTo = Math.min(blockFrom + TradeBlockCodec.BLOCK_SIZE, to);
+                ByteBuffer block = this.codec.encode(batch, blockFrom, blockTo);
+                int length = block.remaining();
+                blocks.add(batch.timestamp(batch.orderedIndex(blockFrom)),
+                           batch.timestamp(batch.orderedIndex(blockTo - 1)), blockTo - blockFrom, this.position,
+                           length);
+                write(block);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Appends the transactions of every stock of a service which took place after the last trade already archived for
+     * the stock. The stocks only hold the transactions of their retention age, so archiving a whole trading day takes
+     * calling this periodically, more often than the retention age; trades which arrived late, at or before the last
+     * archived trade of their stock, are not archived.
+     *
+     * @param service the service holding the stocks
+     * @return the number of trades appended
+     * @throws IOException if the trades cannot be written
+     */
+    public long appendStocks(final StockExchangeServiceImpl service) throws IOException {
+        long appended = 0L;
+        for (StockSymbol symbol : StockSymbol.values()) {
+            AbstractStock stock = service.getStock(symbol);
+            if (stock != null) {
+                TradeArchiveBlocks blocks = this.index.get(symbol);
+                this.stockTrades.clear();
+                stock.copyTransactions(this.stockTrades, blocks == null ? Long.MIN_VALUE : blocks.lastTimestamp());
+                appended += append(this.stockTrades);
+            }
+        }
+        this.stockTrades.clear();
+        return appended;
+    }
+
+    /**
+     * Writes the index and closes the archive.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            int indexSize = 4;
+            for (Map.Entry<StockSymbol, TradeArchiveBlocks> entry : this.index.entrySet()) {
+                indexSize += 2 + entry.getKey().name().getBytes(StandardCharsets.UTF_8).length + 4
+                        + entry.getValue().size() * TradeArchiveBlocks.ENTRY_SIZE;
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(indexSize + FOOTER_SIZE);
+            trailer.putInt(this.index.size());
+            for (Map.Entry<StockSymbol, TradeArchiveBlocks> entry : this.index.entrySet()) {
+                byte[] ticker = entry.getKey().name().getBytes(StandardCharsets.UTF_8);
+                trailer.putShort((short) ticker.length).put(ticker);
+                trailer.putInt(entry.getValue().size());
+                entry.getValue().writeTo(trailer);
+            }
+            trailer.putLong(this.position).putLong(MAGIC).flip();
+            write(trailer);
+            this.channel.force(false);
+            LOGGER.info("Wrote trade archive of {} stocks in {} bytes", this.index.size(), this.position);
+        } finally {
+            this.channel.close();
+            this.file.close();
+        }
+    }
+
+    /**
+     * Checks that the trades of the stock at a position of a grouped batch are in chronological order.
+     *
+     * @param batch the batch, grouped by symbol
+     * @param from the position of the first trade of the stock
+     * @return the position after the last trade of the stock
+     */
+    private int endOfGroup(final TradeBatch batch, final int from) {
+        StockSymbol symbol = batch.symbol(batch.orderedIndex(from));
+        TradeArchiveBlocks blocks = this.index.get(symbol);
+        long previous = blocks == null ? Long.MIN_VALUE : blocks.lastTimestamp();
+        int to = from;
+        while (to < batch.size() && batch.symbol(batch.orderedIndex(to)) == symbol) {
+            long timestamp = batch.timestamp(batch.orderedIndex(to));
+            if (timestamp < previous) {
+                throw new IllegalArgumentException("The trades of " + symbol + " are not in chronological order: "
+                        + timestamp + " ns after " + previous + " ns");
+            }
+            previous = timestamp;
+            to++;
+        }
+        return to;
+    }
+
+    /**
+     * Writes a buffer at the end of the file.
+     *
+     * @param buffer the bytes to write
+     * @throws IOException if the bytes cannot be written
+     */
+    private void write(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.position += this.channel.write(buffer, this.position);
+        }
+    }
+}
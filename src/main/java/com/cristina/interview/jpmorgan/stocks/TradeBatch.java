@@ -0,0 +1,244 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.Arrays;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * A batch of trades, possibly for several stocks, to be added to a {@link StockExchangeService} in one go. The trades
+ * are kept in primitive columns, so filling a batch does not create any objects once its capacity has been reached.
+ * A batch can be {@link #clear() cleared} and reused.
+ * <b>NB This class is not thread safe.</b>
+ *
+ * @author CristinaGroapa
+ */
+public final class TradeBatch {
+
+    /** The default capacity of a batch */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /** The symbol of the stock each trade belongs to */
+    private StockSymbol[] symbols;
+
+    /** The trade timestamps, in nanoseconds since the epoch */
+    private long[] timestamps;
+
+    /** The number of shares transacted */
+    private long[] quantities;
+
+    /** The trade sides, as stored in a {@link TradeStore} */
+    private byte[] sides;
+
+    /** The price per share */
+    private double[] prices;
+
+    /** Whether each trade was rejected by its stock when the batch was added to a service */
+    private boolean[] rejected;
+
+    /** The number of trades in the batch */
+    private int size;
+
+    /** The indexes of the trades, grouped by symbol; filled in by {@link #groupBySymbol()} */
+    private int[] order;
+
+    /** Counters used while grouping the trades by symbol */
+    private int[] symbolCounts;
+
+    /**
+     * Default constructor.
+     */
+    public TradeBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor that receives the initial capacity of the batch. The batch grows when needed.
+     *
+     * @param capacity the initial capacity of the batch
+     */
+    public TradeBatch(final int capacity) {
+        int initialCapacity = Math.max(capacity, 1);
+        this.symbols = new StockSymbol[initialCapacity];
+        this.timestamps = new long[initialCapacity];
+        this.quantities = new long[initialCapacity];
+        this.sides = new byte[initialCapacity];
+        this.prices = new double[initialCapacity];
+        this.rejected = new boolean[initialCapacity];
+        this.order = new int[initialCapacity];
+        this.symbolCounts = new int[0];
+    }
+
+    /**
+     * Adds a trade to the batch.
+     *
+     * @param stockSymbol the stock to which the trade belongs
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param transactionType BUY or SELL
+     * @param price the price per share
+     */
+    public void add(final StockSymbol stockSymbol, final long timestampNanos, final long quantityOfShares,
+            final TransactionType transactionType, final double price) {
+        add(stockSymbol, timestampNanos, quantityOfShares, TradeStore.toSide(transactionType), price);
+    }
+
+    /**
+     * Adds a trade to the batch, its side being already encoded.
+     *
+     * @param stockSymbol the stock to which the trade belongs
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param side the trade side, as stored in a {@link TradeStore}
+     * @param price the price per share
+     */
+    void add(final StockSymbol stockSymbol, final long timestampNanos, final long quantityOfShares, final byte side,
+            final double price) {
+        if (this.size == this.symbols.length) {
+            grow();
+        }
+        this.symbols[this.size] = stockSymbol;
+        this.timestamps[this.size] = timestampNanos;
+        this.quantities[this.size] = quantityOfShares;
+        this.sides[this.size] = side;
+        this.prices[this.size] = price;
+        this.rejected[this.size] = false;
+        this.size++;
+    }
+
+    /**
+     * Adds a transaction to the batch.
+     *
+     * @param stockSymbol the stock to which the transaction belongs
+     * @param transaction the transaction to add
+     */
+    public void add(final StockSymbol stockSymbol, final Transaction transaction) {
+        add(stockSymbol, transaction.getTimestampNanos(), transaction.getQuantityOfShares(),
+            transaction.getTransactionType(), transaction.getPrice());
+    }
+
+    /**
+     * @return the number of trades in the batch
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return true if the batch has no trades, false otherwise
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all the trades from the batch, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(this.symbols, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * Groups the trades by symbol, keeping the order in which the trades were added within each group. Afterwards
+     * {@link #orderedIndex(int)} returns the trades of the same stock next to each other.
+     */
+    void groupBySymbol() {
+        int maxId = -1;
+        for (int i = 0; i < this.size; i++) {
+            maxId = Math.max(maxId, this.symbols[i].id());
+        }
+        if (this.symbolCounts.length < maxId + 2) {
+            this.symbolCounts = new int[maxId + 2];
+        }
+        int[] counts = this.symbolCounts;
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < this.size; i++) {
+            counts[this.symbols[i].id() + 1]++;
+        }
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += counts[i - 1];
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.order[counts[this.symbols[i].id()]++] = i;
+        }
+    }
+
+    /**
+     * @param position a position in the grouped order
+     * @return the index of the trade at that position
+     */
+    int orderedIndex(final int position) {
+        return this.order[position];
+    }
+
+    /**
+     * @param index the index of a trade
+     * @return the symbol of the stock to which the trade belongs
+     */
+    StockSymbol symbol(final int index) {
+        return this.symbols[index];
+    }
+
+    /**
+     * @param index the index of a trade
+     * @return the trade timestamp, in nanoseconds since the epoch
+     */
+    long timestamp(final int index) {
+        return this.timestamps[index];
+    }
+
+    /**
+     * @param index the index of a trade
+     * @return the number of shares transacted
+     */
+    long quantity(final int index) {
+        return this.quantities[index];
+    }
+
+    /**
+     * @param index the index of a trade
+     * @return the trade side, as stored in a {@link TradeStore}
+     */
+    byte side(final int index) {
+        return this.sides[index];
+    }
+
+    /**
+     * @param index the index of a trade
+     * @return the price per share
+     */
+    double price(final int index) {
+        return this.prices[index];
+    }
+
+    /**
+     * Marks a trade as rejected by its stock, e.g. because it arrived later than the retention policy tolerates.
+     *
+     * @param index the index of the trade
+     */
+    void reject(final int index) {
+        this.rejected[index] = true;
+    }
+
+    /**
+     * @param index the index of a trade
+     * @return true if the trade was rejected by its stock when the batch was added, false otherwise
+     */
+    boolean isRejected(final int index) {
+        return this.rejected[index];
+    }
+
+    /**
+     * Doubles the capacity of the batch.
+     */
+    private void grow() {
+        int capacity = this.symbols.length * 2;
+        this.symbols = Arrays.copyOf(this.symbols, capacity);
+        this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+        this.quantities = Arrays.copyOf(this.quantities, capacity);
+        this.sides = Arrays.copyOf(this.sides, capacity);
+        this.prices = Arrays.copyOf(this.prices, capacity);
+        this.rejected = Arrays.copyOf(this.rejected, capacity);
+        this.order = new int[capacity];
+    }
+}
@@ -0,0 +1,355 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes blocks of trades of one stock, in chronological order, as compressed columns, and decodes them back. A block
+ * starts with the sizes, in bytes, of its timestamp, quantity and price columns, followed by the columns:
+ * <ul>
+ * <li>timestamps: the first one as is, then the delta-of-delta of each one - i.e. the change of the gap to the previous
+ * timestamp - zigzag encoded in a bit stream, with a short prefix telling its size: '0' for no change, '10' for 16
+ * bits, '110' for 32 bits and '111' for 64 bits. Regularly spaced trades take a single bit each;</li>
+ * <li>quantities: unsigned variable length integers, 7 bits per byte;</li>
+ * <li>sides: one bit per trade;</li>
+ * <li>prices: XORed with the previous price, in the manner of the Gorilla time series database: '0' for the same price,
+ * '10' followed by the meaningful bits if they fit within those of the previous XOR, otherwise '11', the number of
+ * leading zeros (5 bits), the number of meaningful bits (6 bits) and the meaningful bits. Nearby prices share their
+ * sign, exponent and leading mantissa bits, so they take much fewer than 64 bits.</li>
+ * </ul>
+ * <b>NB This class is not thread safe.</b>
+ *
+ * @author CristinaGroapa
+ */
+final class TradeBlockCodec {
+
+    /** The maximum number of trades in a block */
+    static final int BLOCK_SIZE = 1024;
+
+    /** The size of the header of a block, holding the sizes of its columns */
+    private static final int HEADER_SIZE = 3 * 4;
+
+    /** Encodes the columns */
+    private final BitWriter writer;
+
+    /**
+     * Constructor.
+     */
+    TradeBlockCodec() {
+        this.writer = new BitWriter();
+    }
+
+    /**
+     * Encodes a range of trades of one stock from a batch.
+     *
+     * @param batch the batch holding the trades, {@link TradeBatch#groupBySymbol() grouped by symbol}
+     * @param from the first position of the range in the grouped order of the batch (inclusive)
+     * @param to the last position of the range in the grouped order of the batch (exclusive); at most
+     *            {@link #BLOCK_SIZE} trades after the first one
+     * @return the encoded block, valid until the next call
+     */
+    ByteBuffer encode(final TradeBatch batch, final int from, final int to) {
+        BitWriter out = this.writer;
+        out.reset();
+        out.writeBits(0L, 8 * HEADER_SIZE);
+
+        long previous = 0L;
+        long previousDelta = 0L;
+        for (int position = from; position < to; position++) {
+            long timestamp = batch.timestamp(batch.orderedIndex(position));
+            if (position == from) {
+                out.writeBits(timestamp, 64);
+            } else {
+                long delta = timestamp - previous;
+                writeDeltaOfDelta(out, delta - previousDelta);
+                previousDelta = delta;
+            }
+            previous = timestamp;
+        }
+        out.alignToByte();
+        int timestampsEnd = out.size();
+
+        for (int position = from; position < to; position++) {
+            long quantity = batch.quantity(batch.orderedIndex(position));
+            while ((quantity & ~0x7FL) != 0) {
+                out.writeBits((quantity & 0x7F) | 0x80, 8);
+                quantity >>>= 7;
+            }
+            out.writeBits(quantity, 8);
+        }
+        int quantitiesEnd = out.size();
+
+        for (int position = from; position < to; position++) {
+            out.writeBits(batch.side(batch.orderedIndex(position)), 1);
+        }
+        out.alignToByte();
+        int sidesEnd = out.size();
+
+        long previousBits = 0L;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int position = from; position < to; position++) {
+            long bits = Double.doubleToRawLongBits(batch.price(batch.orderedIndex(position)));
+            if (position == from) {
+                out.writeBits(bits, 64);
+            } else {
+                long xor = bits ^ previousBits;
+                if (xor == 0) {
+                    out.writeBits(0L, 1);
+                } else {
+                    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                        out.writeBits(0b10, 2);
+                        out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                    } else {
+                        int meaningful = 64 - leading - trailing;
+                        out.writeBits(0b11, 2);
+                        out.writeBits(leading, 5);
+                        out.writeBits(meaningful - 1, 6);
+                        out.writeBits(xor >>> trailing, meaningful);
+                        previousLeading = leading;
+                        previousTrailing = trailing;
+                    }
+                }
+            }
+            previousBits = bits;
+        }
+        out.alignToByte();
+
+        ByteBuffer block = out.toBuffer();
+        block.putInt(0, timestampsEnd - HEADER_SIZE);
+        block.putInt(4, quantitiesEnd - timestampsEnd);
+        block.putInt(8, out.size() - sidesEnd);
+        return block;
+    }
+
+    /**
+     * Decodes a block.
+     *
+     * @param in the buffer holding the block
+     * @param offset the position of the block in the buffer
+     * @param count the number of trades in the block
+     * @param timestamps receives the timestamps
+     * @param quantities receives the quantities
+     * @param sides receives the sides
+     * @param prices receives the prices
+     */
+    static void decode(final ByteBuffer in, final int offset, final int count, final long[] timestamps,
+            final long[] quantities, final byte[] sides, final double[] prices) {
+        int timestampsStart = offset + HEADER_SIZE;
+        int quantitiesStart = timestampsStart + in.getInt(offset);
+        int sidesStart = quantitiesStart + in.getInt(offset + 4);
+        int pricesStart = sidesStart + (count + 7) / 8;
+
+        BitReader bits = new BitReader(in, timestampsStart);
+        long delta = 0L;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                timestamps[i] = bits.readBits(64);
+            } else {
+                delta += readDeltaOfDelta(bits);
+                timestamps[i] = timestamps[i - 1] + delta;
+            }
+        }
+
+        int position = quantitiesStart;
+        for (int i = 0; i < count; i++) {
+            long quantity = 0L;
+            int shift = 0;
+            byte next;
+            do {
+                next = in.get(position++);
+                quantity |= (long) (next & 0x7F) << shift;
+                shift += 7;
+            } while (next < 0);
+            quantities[i] = quantity;
+        }
+
+        for (int i = 0; i < count; i++) {
+            sides[i] = (byte) ((in.get(sidesStart + (i >>> 3)) >>> (7 - (i & 7))) & 1);
+        }
+
+        bits = new BitReader(in, pricesStart);
+        long previousBits = 0L;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                previousBits = bits.readBits(64);
+            } else if (bits.readBits(1) != 0) {
+                if (bits.readBits(1) != 0) {
+                    leading = (int) bits.readBits(5);
+                    trailing = 64 - leading - ((int) bits.readBits(6) + 1);
+                }
+                previousBits ^= bits.readBits(64 - leading - trailing) << trailing;
+            }
+            prices[i] = Double.longBitsToDouble(previousBits);
+        }
+    }
+
+    /**
+     * Writes a delta-of-delta, zigzag encoded, with the prefix telling its size.
+     *
+     * @param out the bit stream
+     * @param deltaOfDelta the change of the gap between timestamps
+     */
+    private static void writeDeltaOfDelta(final BitWriter out, final long deltaOfDelta) {
+        long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+        if (zigzag == 0) {
+            out.writeBits(0L, 1);
+        } else if ((zigzag >>> 16) == 0) {
+            out.writeBits(0b10, 2);
+            out.writeBits(zigzag, 16);
+        } else if ((zigzag >>> 32) == 0) {
+            out.writeBits(0b110, 3);
+            out.writeBits(zigzag, 32);
+        } else {
+            out.writeBits(0b111, 3);
+            out.writeBits(zigzag, 64);
+        }
+    }
+
+    /**
+     * @param bits the bit stream
+     * @return the next delta-of-delta
+     */
+    private static long readDeltaOfDelta(final BitReader bits) {
+        long zigzag;
+        if (bits.readBits(1) == 0) {
+            return 0L;
+        } else if (bits.readBits(1) == 0) {
+            zigzag = bits.readBits(16);
+        } else if (bits.readBits(1) == 0) {
+            zigzag = bits.readBits(32);
+        } else {
+            zigzag = bits.readBits(64);
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Writes bits, most significant first, into a growable byte array.
+     */
+    private static final class BitWriter {
+
+        /** The bytes written */
+        private byte[] bytes = new byte[256];
+
+        /** The number of complete bytes written */
+        private int size;
+
+        /** The bits of the byte being written */
+        private int current;
+
+        /** The number of bits of the byte being written */
+        private int bitCount;
+
+        /**
+         * Forgets all the bits written.
+         */
+        void reset() {
+            this.size = 0;
+            this.current = 0;
+            this.bitCount = 0;
+        }
+
+        /**
+         * Writes the lowest bits of a value.
+         *
+         * @param value the value
+         * @param count the number of bits, up to 64
+         */
+        void writeBits(final long value, final int count) {
+            int remaining = count;
+            while (remaining > 0) {
+                int free = 8 - this.bitCount;
+                int taken = Math.min(free, remaining);
+                remaining -= taken;
+                int chunk = (int) (value >>> remaining) & ((1 << taken) - 1);
+                this.current |= chunk << (free - taken);
+                this.bitCount += taken;
+                if (this.bitCount == 8) {
+                    if (this.size == this.bytes.length) {
+                        this.bytes = Arrays.copyOf(this.bytes, this.size * 2);
+                    }
+                    this.bytes[this.size++] = (byte) this.current;
+                    this.current = 0;
+                    this.bitCount = 0;
+                }
+            }
+        }
+
+        /**
+         * Pads the byte being written with zeros.
+         */
+        void alignToByte() {
+            if (this.bitCount > 0) {
+                writeBits(0L, 8 - this.bitCount);
+            }
+        }
+
+        /**
+         * @return the number of complete bytes written
+         */
+        int size() {
+            return this.size;
+        }
+
+        /**
+         * @return a buffer over the complete bytes written, valid until the next write
+         */
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(this.bytes, 0, this.size);
+        }
+    }
+
+    /**
+     * Reads bits, most significant first, from a buffer.
+     */
+    private static final class BitReader {
+
+        /** The buffer */
+        private final ByteBuffer in;
+
+        /** The position of the next byte to read */
+        private int position;
+
+        /** The bits left of the byte being read, in the lowest bits */
+        private int current;
+
+        /** The number of bits left of the byte being read */
+        private int bitCount;
+
+        /**
+         * Constructor.
+         *
+         * @param in the buffer
+         * @param position the position of the first byte to read
+         */
+        BitReader(final ByteBuffer in, final int position) {
+            this.in = in;
+            this.position = position;
+        }
+
+        /**
+         * @param count the number of bits, up to 64
+         * @return the bits read, in the lowest bits
+         */
+        long readBits(final int count) {
+            long value = 0L;
+            int remaining = count;
+            while (remaining > 0) {
+                if (this.bitCount == 0) {
+                    this.current = this.in.get(this.position++) & 0xFF;
+                    this.bitCount = 8;
+                }
+                int taken = Math.min(this.bitCount, remaining);
+                this.bitCount -= taken;
+                value = (value << taken) | ((this.current >>> this.bitCount) & ((1 << taken) - 1));
+                remaining -= taken;
+            }
+            return value;
+        }
+    }
+}
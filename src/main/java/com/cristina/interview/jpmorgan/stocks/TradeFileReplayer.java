@@ -0,0 +1,484 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Replays historical trade files into a {@link StockExchangeServiceImpl}, keeping the timestamps found in the files.
+ * A trade file is a text file with one trade per line:
+ *
+ * <pre>
+ * TICKER TIMESTAMP BUY|SELL QUANTITY PRICE
+ * </pre>
+ *
+ * where the timestamp is in nanoseconds since the epoch and the fields are separated by spaces or tabs. Empty lines
+ * and lines starting with <code>#</code> are skipped.
+ * <p>
+ * The file is memory-mapped one segment at a time, so files of several GB can be replayed. Each segment is split at
+ * line boundaries into as many chunks as there are threads in the fork-join pool, and the chunks are parsed in
+ * parallel straight from the mapped bytes - i.e. no line, token or number is copied into a string. The parsed trades
+ * are then added to the service in parallel too, the stocks being partitioned between the threads by symbol, so the
+ * trades of a stock are always added in the order in which they appear in the file.
+ *
+ * @author CristinaGroapa
+ */
+public class TradeFileReplayer implements Closeable {
+
+    /** The default size of a mapped segment, in bytes */
+    private static final int DEFAULT_SEGMENT_BYTES = 256 * 1024 * 1024;
+
+    /** The logger for this class */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TradeFileReplayer.class);
+
+    /** The powers of ten used to scale the parsed prices */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+            1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    /** The service to which the trades are added */
+    private final StockExchangeServiceImpl service;
+
+    /** The pool parsing and adding the trades */
+    private final ForkJoinPool pool;
+
+    /** The size of a mapped segment, in bytes */
+    private final int segmentBytes;
+
+    /** The trades parsed from each chunk of the current segment; reused from one segment to the next */
+    private final TradeBatch[] batches;
+
+    /** The tickers seen by the parser of each chunk; kept from one segment to the next of a file */
+    private final TickerCache[] tickerCaches;
+
+    /** The number of trades of unknown tickers skipped so far in the file being replayed */
+    private long unknownTrades;
+
+    /** The number of trades of unknown tickers skipped in the last replayed file */
+    private volatile long lastUnknownTrades;
+
+    /**
+     * Constructor that uses one thread per available processor.
+     *
+     * @param service the service to which the trades are added
+     */
+    public TradeFileReplayer(final StockExchangeServiceImpl service) {
+        this(service, Runtime.getRuntime().availableProcessors(), DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param service the service to which the trades are added
+     * @param parallelism the number of threads parsing and adding the trades
+     * @param segmentBytes the size of a mapped segment, in bytes; must be larger than the longest line
+     */
+    public TradeFileReplayer(final StockExchangeServiceImpl service, final int parallelism, final int segmentBytes) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive, but was " + parallelism);
+        }
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("The segment size must be positive, but was " + segmentBytes);
+        }
+        this.service = service;
+        this.pool = new ForkJoinPool(parallelism);
+        this.segmentBytes = segmentBytes;
+        this.batches = new TradeBatch[parallelism];
+        this.tickerCaches = new TickerCache[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            this.batches[i] = new TradeBatch();
+        }
+    }
+
+    /**
+     * Replays a trade file. The trades of tickers which are not {@link StockSymbol#lookup(String) registered} are
+     * skipped and counted - see {@link #getLastUnknownTrades()} - so an arbitrary file cannot grow the symbol
+     * registry; the trades of stocks not registered with the service are skipped too.
+     *
+     * @param path the trade file
+     * @return the number of trades of registered tickers found in the file
+     * @throws IOException if the file cannot be read, or has a line longer than a segment
+     * @throws IllegalArgumentException if the file has a malformed line
+     */
+    public synchronized long replay(final File path) throws IOException {
+        for (int i = 0; i < this.tickerCaches.length; i++) {
+            // a ticker unknown when the last file was replayed may have been registered since
+            this.tickerCaches[i] = new TickerCache();
+        }
+        this.unknownTrades = 0;
+        long trades = 0;
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+                FileChannel channel = file.getChannel()) {
+            long fileSize = channel.size();
+            long position = 0;
+            while (position < fileSize) {
+                int length = (int) Math.min(this.segmentBytes, fileSize - position);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                int limit = length;
+                if (position + length < fileSize) {
+                    // the last line may continue in the next segment
+                    while (limit > 0 && segment.get(limit - 1) != '\n') {
+                        limit--;
+                    }
+                    if (limit == 0) {
+                        throw new IOException("Line longer than " + this.segmentBytes + " bytes at offset " + position
+                                + " of " + path);
+                    }
+                }
+
+                trades += replaySegment(segment, position, limit);
+                position += limit;
+            }
+        }
+
+        this.lastUnknownTrades = this.unknownTrades;
+        if (this.unknownTrades > 0) {
+            LOGGER.warn("Skipped {} trades of unknown tickers in {}", this.unknownTrades, path);
+        }
+        LOGGER.info("Replayed {} trades from {}", trades, path);
+        return trades;
+    }
+
+    /**
+     * @return the number of trades of unknown tickers skipped in the last replayed file
+     */
+    public long getLastUnknownTrades() {
+        return this.lastUnknownTrades;
+    }
+
+    /**
+     * Shuts down the threads of the replayer.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Parses the complete lines of a segment in parallel and adds the trades to the service.
+     *
+     * @param segment the mapped segment
+     * @param offset the offset of the segment in the file
+     * @param limit the end of the last complete line in the segment
+     * @return the number of trades found in the segment
+     */
+    private long replaySegment(final MappedByteBuffer segment, final long offset, final int limit) {
+        int chunks = this.batches.length;
+        ChunkParser[] parsers = new ChunkParser[chunks];
+        int from = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int to = chunk == chunks - 1 ? limit : Math.max(from, (int) ((long) limit * (chunk + 1) / chunks));
+            while (to > from && to < limit && segment.get(to - 1) != '\n') {
+                to++;
+            }
+            parsers[chunk] = new ChunkParser(segment, offset, from, to, this.batches[chunk],
+                                             this.tickerCaches[chunk]);
+            from = to;
+        }
+        this.pool.invoke(new AllOf(parsers));
+        for (ChunkParser parser : parsers) {
+            this.unknownTrades += parser.unknownTrades;
+        }
+
+        PartitionAdder[] adders = new PartitionAdder[chunks];
+        for (int partition = 0; partition < chunks; partition++) {
+            adders[partition] = new PartitionAdder(partition);
+        }
+        this.pool.invoke(new AllOf(adders));
+
+        long trades = 0;
+        for (TradeBatch batch : this.batches) {
+            trades += batch.size();
+        }
+        return trades;
+    }
+
+    /**
+     * Runs several tasks in parallel.
+     */
+    private static final class AllOf extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The tasks */
+        private final RecursiveAction[] tasks;
+
+        /**
+         * Constructor.
+         *
+         * @param tasks the tasks
+         */
+        AllOf(final RecursiveAction[] tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(this.tasks);
+        }
+    }
+
+    /**
+     * Adds the parsed trades of the stocks in one partition to the service, chunk after chunk.
+     */
+    private final class PartitionAdder extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The partition of stocks handled by this task */
+        private final int partition;
+
+        /**
+         * Constructor.
+         *
+         * @param partition the partition of stocks handled by this task
+         */
+        PartitionAdder(final int partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        protected void compute() {
+            for (TradeBatch batch : TradeFileReplayer.this.batches) {
+                TradeFileReplayer.this.service.addGroupedTransactions(batch, this.partition,
+                                                                      TradeFileReplayer.this.batches.length);
+            }
+        }
+    }
+
+    /**
+     * Parses the lines of a chunk of a segment into a batch of trades, grouped by symbol.
+     */
+    private static final class ChunkParser extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The mapped segment */
+        private final MappedByteBuffer segment;
+
+        /** The offset of the segment in the file, used to report malformed lines */
+        private final long offset;
+
+        /** The start of the chunk in the segment (inclusive) */
+        private final int from;
+
+        /** The end of the chunk in the segment (exclusive) */
+        private final int to;
+
+        /** The batch receiving the trades */
+        private final TradeBatch batch;
+
+        /** The tickers seen so far */
+        private final TickerCache tickerCache;
+
+        /** The position of the parser in the segment */
+        private int position;
+
+        /** The end of the line being parsed */
+        private int lineEnd;
+
+        /** The number of trades of unknown tickers skipped in the chunk */
+        private long unknownTrades;
+
+        /**
+         * Constructor.
+         *
+         * @param segment the mapped segment
+         * @param offset the offset of the segment in the file
+         * @param from the start of the chunk in the segment (inclusive)
+         * @param to the end of the chunk in the segment (exclusive)
+         * @param batch the batch receiving the trades
+         * @param tickerCache the tickers seen so far
+         */
+        ChunkParser(final MappedByteBuffer segment, final long offset, final int from, final int to,
+                final TradeBatch batch, final TickerCache tickerCache) {
+            this.segment = segment;
+            this.offset = offset;
+            this.from = from;
+            this.to = to;
+            this.batch = batch;
+            this.tickerCache = tickerCache;
+        }
+
+        @Override
+        protected void compute() {
+            this.batch.clear();
+            this.position = this.from;
+            while (this.position < this.to) {
+                this.lineEnd = this.position;
+                while (this.lineEnd < this.to && this.segment.get(this.lineEnd) != '\n') {
+                    this.lineEnd++;
+                }
+                int next = this.lineEnd + 1;
+                if (this.lineEnd > this.position && this.segment.get(this.lineEnd - 1) == '\r') {
+                    this.lineEnd--;
+                }
+
+                skipBlanks();
+                if (this.position < this.lineEnd && this.segment.get(this.position) != '#') {
+                    parseTrade();
+                }
+                this.position = next;
+            }
+            this.batch.groupBySymbol();
+        }
+
+        /**
+         * Parses the trade on the current line and adds it to the batch.
+         */
+        private void parseTrade() {
+            int lineStart = this.position;
+            int tickerStart = this.position;
+            skipToken();
+            StockSymbol stockSymbol = this.tickerCache.lookup(this.segment, tickerStart, this.position);
+            skipBlanks();
+            long timestampNanos = parseLong(lineStart);
+            skipBlanks();
+            TransactionType transactionType = parseSide(lineStart);
+            skipBlanks();
+            long quantityOfShares = parseLong(lineStart);
+            skipBlanks();
+            double price = parsePrice(lineStart);
+            skipBlanks();
+            if (this.position != this.lineEnd) {
+                throw malformed(lineStart);
+            }
+            if (stockSymbol == null) {
+                // the line is still parsed in full, so a malformed line is reported whatever its ticker
+                this.unknownTrades++;
+                return;
+            }
+            this.batch.add(stockSymbol, timestampNanos, quantityOfShares, transactionType, price);
+        }
+
+        /**
+         * Parses a non-negative whole number.
+         *
+         * @param lineStart the start of the line, used to report a malformed line
+         * @return the number
+         */
+        private long parseLong(final int lineStart) {
+            int start = this.position;
+            long value = 0;
+            byte digit;
+            while (this.position < this.lineEnd && (digit = this.segment.get(this.position)) >= '0' && digit <= '9') {
+                value = value * 10 + (digit - '0');
+                this.position++;
+            }
+            // up to 19 digits fit in a long; a value too large for a long wraps around to a negative one
+            if (this.position == start || this.position - start > 19 || value < 0 || !atTokenEnd()) {
+                throw malformed(lineStart);
+            }
+            return value;
+        }
+
+        /**
+         * Parses a non-negative decimal number, with at most 18 significant digits.
+         *
+         * @param lineStart the start of the line, used to report a malformed line
+         * @return the number
+         */
+        private double parsePrice(final int lineStart) {
+            long mantissa = 0;
+            int digits = 0;
+            int decimals = -1;
+            byte character;
+            while (this.position < this.lineEnd && !isBlank(character = this.segment.get(this.position))) {
+                if (character >= '0' && character <= '9') {
+                    mantissa = mantissa * 10 + (character - '0');
+                    digits++;
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else if (character == '.' && decimals < 0) {
+                    decimals = 0;
+                } else {
+                    throw malformed(lineStart);
+                }
+                this.position++;
+            }
+            if (digits == 0 || digits > 18) {
+                throw malformed(lineStart);
+            }
+            return decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        }
+
+        /**
+         * Parses the side of a trade.
+         *
+         * @param lineStart the start of the line, used to report a malformed line
+         * @return BUY or SELL
+         */
+        private TransactionType parseSide(final int lineStart) {
+            int start = this.position;
+            skipToken();
+            int length = this.position - start;
+            if (length == 3 && this.segment.get(start) == 'B' && this.segment.get(start + 1) == 'U'
+                    && this.segment.get(start + 2) == 'Y') {
+                return TransactionType.BUY;
+            }
+            if (length == 4 && this.segment.get(start) == 'S' && this.segment.get(start + 1) == 'E'
+                    && this.segment.get(start + 2) == 'L' && this.segment.get(start + 3) == 'L') {
+                return TransactionType.SELL;
+            }
+            throw malformed(lineStart);
+        }
+
+        /**
+         * Moves the position to the end of the current token.
+         */
+        private void skipToken() {
+            while (this.position < this.lineEnd && !isBlank(this.segment.get(this.position))) {
+                this.position++;
+            }
+        }
+
+        /**
+         * Moves the position to the start of the next token.
+         */
+        private void skipBlanks() {
+            while (this.position < this.lineEnd && isBlank(this.segment.get(this.position))) {
+                this.position++;
+            }
+        }
+
+        /**
+         * @return true if the position is at the end of a token, false otherwise
+         */
+        private boolean atTokenEnd() {
+            return this.position == this.lineEnd || isBlank(this.segment.get(this.position));
+        }
+
+        /**
+         * @param character a character
+         * @return true if the character separates fields, false otherwise
+         */
+        private static boolean isBlank(final byte character) {
+            return character == ' ' || character == '\t';
+        }
+
+        /**
+         * @param lineStart the start of the malformed line in the segment
+         * @return the exception reporting the malformed line
+         */
+        private IllegalArgumentException malformed(final int lineStart) {
+            byte[] line = new byte[this.lineEnd - lineStart];
+            for (int i = 0; i < line.length; i++) {
+                line[i] = this.segment.get(lineStart + i);
+            }
+            return new IllegalArgumentException("Malformed trade at offset " + (this.offset + lineStart) + ": "
+                    + new String(line, StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of trades, kept in memory-mapped files so that appending a trade is only a few memory
+ * writes - i.e. there is no system call per trade; the operating system writes the pages to disk in the background,
+ * and they survive a crash of the process. The journal is split into segments of a fixed number of records, each in
+ * its own file named after the journal path followed by the number of the segment - e.g. <code>trades.journal.0</code>,
+ * <code>trades.journal.1</code> - and a new segment is mapped when the previous one is full.
+ * <p>
+ * Once a {@link #retainFor retention} is set, the segments whose trades all took place before the retention horizon
+ * are retired - i.e. forgotten and deleted - whenever a new segment is started, so neither the files nor the mapped
+ * address space grow without bound. The segment being written and the one before it are never retired.
+ * <p>
+ * The trades are only appended roughly in chronological order: late trades are accepted by the stocks, and trades
+ * added concurrently to different stocks are appended in any order. So the journal keeps, for each segment, the most
+ * recent timestamp of its trades - found by scanning the segment when the journal is opened, then raised by each
+ * append - and both {@link #replay} and {@link #retireBefore} decide from it alone whether a segment can hold a trade
+ * after a given time; {@link #replay} then reads the segments which can, in full.
+ * <p>
+ * Each trade is a fixed-width record of {@link #RECORD_SIZE} bytes:
+ * <ul>
+ * <li>timestamp, in nanoseconds since the epoch (8 bytes)</li>
+ * <li>quantity (8 bytes)</li>
+ * <li>price (8 bytes)</li>
+ * <li>checksum of all the other fields (4 bytes)</li>
+ * <li>side, as stored in a {@link TradeStore} (1 byte)</li>
+ * <li>ticker length (1 byte) followed by the ticker in ASCII (up to {@link #MAX_TICKER_LENGTH} bytes); a ticker is
+ * never empty, so a zero length marks a free record</li>
+ * </ul>
+ * The fields are written with plain stores into the mapped file, which are not ordered with respect to each other, so
+ * a crash while a record is being written can leave it partly written. Such a torn record is detected by its checksum
+ * and skipped.
+ *
+ * @author CristinaGroapa
+ */
+public class TradeJournal implements Closeable {
+
+    /** The size of a record, in bytes */
+    static final int RECORD_SIZE = 64;
+
+    /** The maximum length of a ticker, in bytes */
+    static final int MAX_TICKER_LENGTH = RECORD_SIZE - 30;
+
+    /** The default number of records in a segment */
+    private static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    /** The logger for this class */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TradeJournal.class);
+
+    /** Offset of the timestamp in a record */
+    private static final int TIMESTAMP_OFFSET = 0;
+
+    /** Offset of the quantity in a record */
+    private static final int QUANTITY_OFFSET = 8;
+
+    /** Offset of the price in a record */
+    private static final int PRICE_OFFSET = 16;
+
+    /** Offset of the checksum in a record */
+    private static final int CHECKSUM_OFFSET = 24;
+
+    /** Offset of the side in a record */
+    private static final int SIDE_OFFSET = 28;
+
+    /** Offset of the ticker length in a record */
+    private static final int TICKER_LENGTH_OFFSET = 29;
+
+    /** Offset of the ticker in a record */
+    private static final int TICKER_OFFSET = 30;
+
+    /** The path of the journal, to which the number of a segment is appended to name its file */
+    private final File path;
+
+    /** The number of records in a segment */
+    private final int segmentRecords;
+
+    /** The mapped segments, by segment number; a segment is null until it is needed, and after it is retired */
+    private volatile Segment[] segments;
+
+    /** The number of the oldest segment which is not retired */
+    private volatile int firstSegment;
+
+    /** The index of the next record to be written */
+    private final AtomicLong nextRecord;
+
+    /** How long the trades are kept, in nanoseconds before the most recent trade appended */
+    private volatile long retentionNanos;
+
+    /** The encoded tickers, by symbol id, so appending does not encode the ticker every time */
+    private volatile byte[][] encodedTickers;
+
+    /**
+     * Opens a journal with the default segment size, creating it if needed.
+     *
+     * @param path the path of the journal, to which the number of a segment is appended to name its file
+     * @throws IOException if the segment files cannot be opened or mapped
+     */
+    public TradeJournal(final File path) throws IOException {
+        this(path, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    /**
+     * Opens a journal, creating it if needed. Appending continues after the last record found in the segment files.
+     *
+     * @param path the path of the journal, to which the number of a segment is appended to name its file
+     * @param segmentRecords the number of records in a segment
+     * @throws IOException if the segment files cannot be opened or mapped
+     */
+    public TradeJournal(final File path, final int segmentRecords) throws IOException {
+        if (segmentRecords <= 0) {
+            throw new IllegalArgumentException("The segment size must be positive, but was " + segmentRecords);
+        }
+        this.path = path;
+        this.segmentRecords = segmentRecords;
+        this.segments = new Segment[0];
+        this.retentionNanos = Long.MAX_VALUE;
+        this.encodedTickers = new byte[0][];
+
+        int[] range = existingSegments();
+        this.firstSegment = range[0];
+        for (int segment = range[0]; segment < range[1]; segment++) {
+            mapSegment(segment);
+        }
+        this.nextRecord = new AtomicLong(findEnd((long) range[1] * segmentRecords));
+
+        LOGGER.info("Opened trade journal {} with {} records", path, this.nextRecord.get());
+    }
+
+    /**
+     * Appends a trade to the journal. Safe to call from multiple threads.
+     *
+     * @param stockSymbol the stock to which the trade belongs
+     * @param timestampNanos the date & time when the trade occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param side the trade side, as stored in a {@link TradeStore}
+     * @param price the price per share
+     * @throws IOException if a new segment cannot be mapped
+     */
+    public void append(final StockSymbol stockSymbol, final long timestampNanos, final long quantityOfShares,
+            final byte side, final double price) throws IOException {
+        byte[] ticker = encodedTicker(stockSymbol);
+        long record = this.nextRecord.getAndIncrement();
+        Segment segment = segmentFor(record);
+        if (segment == null) {
+            throw new IOException("The segment of record " + record + " of the trade journal has been retired");
+        }
+        // raised before the record is written, so a segment is never retired while it holds a more recent trade
+        segment.raiseMaxTimestamp(timestampNanos);
+
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = (int) (record % this.segmentRecords) * RECORD_SIZE;
+        long priceBits = Double.doubleToRawLongBits(price);
+        buffer.putLong(offset + TIMESTAMP_OFFSET, timestampNanos);
+        buffer.putLong(offset + QUANTITY_OFFSET, quantityOfShares);
+        buffer.putLong(offset + PRICE_OFFSET, priceBits);
+        buffer.putInt(offset + CHECKSUM_OFFSET, checksum(timestampNanos, quantityOfShares, priceBits, side, ticker,
+                                                         ticker.length));
+        buffer.put(offset + SIDE_OFFSET, side);
+        for (int i = 0; i < ticker.length; i++) {
+            buffer.put(offset + TICKER_OFFSET + i, ticker[i]);
+        }
+        buffer.put(offset + TICKER_LENGTH_OFFSET, (byte) ticker.length);
+
+        long retention = this.retentionNanos;
+        if (record % this.segmentRecords == 0 && retention != Long.MAX_VALUE) {
+            retireBefore(timestampNanos - retention);
+        }
+    }
+
+    /**
+     * Adds to the stocks of a service all the journaled trades which took place after a given time, in the order in
+     * which they were journaled. Only the segments whose most recent trade took place after that time are read. The
+     * trades of tickers which are not registered, or of stocks not registered with the service, and torn records, are
+     * skipped.
+     *
+     * @param service the service to add the trades to
+     * @param fromNanos only the trades after this time, in nanoseconds since the epoch, are replayed
+     * @return the number of trades replayed and accepted by their stocks
+     */
+    public long replay(final StockExchangeServiceImpl service, final long fromNanos) {
+        long end = this.nextRecord.get();
+        long replayed = 0;
+        byte[] tickerBytes = new byte[MAX_TICKER_LENGTH];
+        TickerCache tickerCache = new TickerCache();
+        for (long record = (long) this.firstSegment * this.segmentRecords; record < end; record++) {
+            Segment segment = existingSegmentFor(record);
+            if (segment == null || segment.maxTimestampNanos.get() <= fromNanos) {
+                // skips to the first record of the next segment
+                record += this.segmentRecords - 1 - record % this.segmentRecords;
+                continue;
+            }
+            MappedByteBuffer buffer = segment.buffer;
+            int offset = (int) (record % this.segmentRecords) * RECORD_SIZE;
+            int tickerLength = readValidRecord(buffer, offset, tickerBytes);
+            long timestampNanos = buffer.getLong(offset + TIMESTAMP_OFFSET);
+            if (tickerLength < 0 || timestampNanos <= fromNanos) {
+                continue;
+            }
+
+            StockSymbol stockSymbol = tickerCache.lookup(buffer, offset + TICKER_OFFSET,
+                                                         offset + TICKER_OFFSET + tickerLength);
+            AbstractStock stock = stockSymbol == null ? null : service.getStock(stockSymbol);
+            if (stock != null && stock.addTrade(timestampNanos, buffer.getLong(offset + QUANTITY_OFFSET),
+                                                TradeStore.toTransactionType(buffer.get(offset + SIDE_OFFSET)),
+                                                buffer.getDouble(offset + PRICE_OFFSET))) {
+                replayed++;
+            }
+        }
+
+        LOGGER.info("Replayed {} trades from the trade journal", replayed);
+        return replayed;
+    }
+
+    /**
+     * Sets how long the trades are kept: from now on, whenever a new segment is started, the segments whose trades
+     * all took place more than this long before the trade starting the new segment are retired.
+     *
+     * @param retentionNanos how long the trades are kept, in nanoseconds
+     */
+    public void retainFor(final long retentionNanos) {
+        if (retentionNanos < 0) {
+            throw new IllegalArgumentException("The retention must not be negative, but was " + retentionNanos);
+        }
+        this.retentionNanos = retentionNanos;
+    }
+
+    /**
+     * Retires the oldest segments whose trades all took place at or before a given time - i.e. whose most recent trade
+     * did, whatever the order of their trades: they are forgotten and their files deleted. The segment being written
+     * and the one before it are never retired.
+     *
+     * @param horizonNanos the time, in nanoseconds since the epoch
+     * @return the number of retired segments
+     */
+    public synchronized int retireBefore(final long horizonNanos) {
+        int writingSegment = (int) (this.nextRecord.get() / this.segmentRecords);
+        int retired = 0;
+        while (this.firstSegment + 1 < writingSegment) {
+            int segment = this.firstSegment;
+            Segment[] mapped = this.segments;
+            Segment mappedSegment = segment < mapped.length ? mapped[segment] : null;
+            if (mappedSegment != null && mappedSegment.maxTimestampNanos.get() > horizonNanos) {
+                break;
+            }
+            Segment[] remaining = Arrays.copyOf(mapped, mapped.length);
+            if (segment < remaining.length) {
+                remaining[segment] = null;
+            }
+            this.segments = remaining;
+            this.firstSegment = segment + 1;
+            File file = segmentFile(segment);
+            if (file.exists() && !file.delete()) {
+                LOGGER.warn("Could not delete retired trade journal segment {}", file);
+            }
+            retired++;
+        }
+        if (retired > 0) {
+            LOGGER.info("Retired {} trade journal segments up to {}", retired, segmentFile(this.firstSegment - 1));
+        }
+        return retired;
+    }
+
+    /**
+     * @return the number of records appended to the journal, including those of retired segments
+     */
+    public long size() {
+        return this.nextRecord.get();
+    }
+
+    /**
+     * Forces the journaled trades to be written to disk.
+     */
+    public void flush() {
+        for (Segment segment : this.segments) {
+            if (segment != null) {
+                segment.buffer.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * @return the size of a segment, in bytes
+     */
+    private long segmentBytes() {
+        return (long) this.segmentRecords * RECORD_SIZE;
+    }
+
+    /**
+     * @param segment the number of a segment
+     * @return the file of the segment
+     */
+    private File segmentFile(final int segment) {
+        return new File(this.path.getPath() + "." + segment);
+    }
+
+    /**
+     * Finds the segment files of the journal.
+     *
+     * @return the number of the oldest segment file and the number after the newest one, or twice 0 if there are none
+     */
+    private int[] existingSegments() {
+        File directory = this.path.getAbsoluteFile().getParentFile();
+        String prefix = this.path.getName() + ".";
+        String[] names = directory == null ? null : directory.list();
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix) && name.length() > prefix.length()
+                        && name.substring(prefix.length()).matches("\\d{1,9}")) {
+                    int segment = Integer.parseInt(name.substring(prefix.length()));
+                    first = Math.min(first, segment);
+                    last = Math.max(last, segment);
+                }
+            }
+        }
+        return last < 0 ? new int[] {0, 0} : new int[] {first, last + 1};
+    }
+
+    /**
+     * Returns the segment holding a record, mapping it if needed.
+     *
+     * @param record the index of the record
+     * @return the segment, or null if it has been retired
+     * @throws IOException if the segment cannot be mapped
+     */
+    private Segment segmentFor(final long record) throws IOException {
+        int segment = (int) (record / this.segmentRecords);
+        Segment[] mapped = this.segments;
+        if (segment < mapped.length && mapped[segment] != null) {
+            return mapped[segment];
+        }
+        return mapSegment(segment);
+    }
+
+    /**
+     * Returns the segment holding a written record, mapping it if needed - e.g. if the record has been reserved by an
+     * append which has not mapped its segment yet.
+     *
+     * @param record the index of the record
+     * @return the segment, or null if it has been retired
+     */
+    private Segment existingSegmentFor(final long record) {
+        try {
+            return segmentFor(record);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map the segment of record " + record + " of the trade journal",
+                                            e);
+        }
+    }
+
+    /**
+     * Maps a segment, creating its file if needed, and finds the most recent timestamp of the trades it already holds.
+     *
+     * @param segment the number of the segment
+     * @return the segment, or null if it has been retired
+     * @throws IOException if the segment cannot be mapped
+     */
+    private synchronized Segment mapSegment(final int segment) throws IOException {
+        Segment[] mapped = this.segments;
+        if (segment < mapped.length && mapped[segment] != null) {
+            return mapped[segment];
+        }
+        if (segment < this.firstSegment) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(segment), "rw")) {
+            // the mapping stays valid after the file is closed
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes());
+        }
+        Segment mappedSegment = new Segment(buffer, maxTimestamp(buffer));
+        Segment[] larger = Arrays.copyOf(mapped, Math.max(mapped.length, segment + 1));
+        larger[segment] = mappedSegment;
+        this.segments = larger;
+        return mappedSegment;
+    }
+
+    /**
+     * @param buffer a mapped segment
+     * @return the most recent timestamp of the complete records of the segment, or {@link Long#MIN_VALUE} if there
+     *         are none
+     */
+    private long maxTimestamp(final MappedByteBuffer buffer) {
+        byte[] tickerBytes = new byte[MAX_TICKER_LENGTH];
+        long maxTimestampNanos = Long.MIN_VALUE;
+        for (int record = 0; record < this.segmentRecords; record++) {
+            int offset = record * RECORD_SIZE;
+            if (readValidRecord(buffer, offset, tickerBytes) >= 0) {
+                maxTimestampNanos = Math.max(maxTimestampNanos, buffer.getLong(offset + TIMESTAMP_OFFSET));
+            }
+        }
+        return maxTimestampNanos;
+    }
+
+    /**
+     * Encodes the ticker of a symbol, caching the result.
+     *
+     * @param stockSymbol the symbol
+     * @return the ticker in ASCII
+     */
+    private byte[] encodedTicker(final StockSymbol stockSymbol) {
+        int id = stockSymbol.id();
+        byte[][] cache = this.encodedTickers;
+        if (id < cache.length && cache[id] != null) {
+            return cache[id];
+        }
+
+        byte[] ticker = stockSymbol.name().getBytes(StandardCharsets.US_ASCII);
+        if (ticker.length > MAX_TICKER_LENGTH) {
+            throw new IllegalArgumentException("Ticker " + stockSymbol + " is longer than " + MAX_TICKER_LENGTH
+                    + " characters and cannot be journaled");
+        }
+        synchronized (this) {
+            byte[][] larger = Arrays.copyOf(this.encodedTickers, Math.max(this.encodedTickers.length, id + 1));
+            larger[id] = ticker;
+            this.encodedTickers = larger;
+        }
+        return ticker;
+    }
+
+    /**
+     * Reads the ticker of a record, checking that the record is complete.
+     *
+     * @param segment the segment holding the record
+     * @param offset the position of the record in the segment
+     * @param tickerBytes receives the ticker
+     * @return the length of the ticker, or -1 if the record is free or torn
+     */
+    private static int readValidRecord(final MappedByteBuffer segment, final int offset, final byte[] tickerBytes) {
+        int tickerLength = segment.get(offset + TICKER_LENGTH_OFFSET);
+        if (tickerLength <= 0 || tickerLength > MAX_TICKER_LENGTH) {
+            return -1;
+        }
+        long timestampNanos = segment.getLong(offset + TIMESTAMP_OFFSET);
+        for (int i = 0; i < tickerLength; i++) {
+            tickerBytes[i] = segment.get(offset + TICKER_OFFSET + i);
+        }
+        int checksum = checksum(timestampNanos, segment.getLong(offset + QUANTITY_OFFSET),
+                                segment.getLong(offset + PRICE_OFFSET), segment.get(offset + SIDE_OFFSET),
+                                tickerBytes, tickerLength);
+        return checksum == segment.getInt(offset + CHECKSUM_OFFSET) ? tickerLength : -1;
+    }
+
+    /**
+     * Calculates the checksum of the fields of a record.
+     *
+     * @param timestampNanos the timestamp
+     * @param quantity the quantity
+     * @param priceBits the bits of the price
+     * @param side the side
+     * @param ticker the ticker
+     * @param tickerLength the length of the ticker
+     * @return the checksum
+     */
+    private static int checksum(final long timestampNanos, final long quantity, final long priceBits,
+            final byte side, final byte[] ticker, final int tickerLength) {
+        long hash = mix(0x9E3779B97F4A7C15L, timestampNanos);
+        hash = mix(hash, quantity);
+        hash = mix(hash, priceBits);
+        hash = mix(hash, side);
+        for (int i = 0; i < tickerLength; i++) {
+            hash = mix(hash, ticker[i]);
+        }
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * @param hash the hash so far
+     * @param value the next value
+     * @return the hash including the value
+     */
+    private static long mix(final long hash, final long value) {
+        long mixed = (hash ^ value) * 0xBF58476D1CE4E5B9L;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    /**
+     * Finds the end of the written records, by skipping the free or torn records at the end of the mapped segments.
+     *
+     * @param capacity the number of records up to the end of the mapped segments
+     * @return the index after the last written record
+     */
+    private long findEnd(final long capacity) {
+        long start = (long) this.firstSegment * this.segmentRecords;
+        byte[] tickerBytes = new byte[MAX_TICKER_LENGTH];
+        long end = capacity;
+        while (end > start) {
+            Segment segment = existingSegmentFor(end - 1);
+            int offset = (int) ((end - 1) % this.segmentRecords) * RECORD_SIZE;
+            if (segment != null && readValidRecord(segment.buffer, offset, tickerBytes) >= 0) {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * A mapped segment, with the most recent timestamp of its trades.
+     */
+    private static final class Segment {
+
+        /** The mapped file of the segment */
+        final MappedByteBuffer buffer;
+
+        /** The most recent timestamp of the trades of the segment, or {@link Long#MIN_VALUE} if there are none */
+        final AtomicLong maxTimestampNanos;
+
+        /**
+         * Constructor.
+         *
+         * @param buffer the mapped file of the segment
+         * @param maxTimestampNanos the most recent timestamp of the trades already in the segment
+         */
+        Segment(final MappedByteBuffer buffer, final long maxTimestampNanos) {
+            this.buffer = buffer;
+            this.maxTimestampNanos = new AtomicLong(maxTimestampNanos);
+        }
+
+        /**
+         * Raises the most recent timestamp of the segment to the timestamp of a trade being appended, if it is older.
+         *
+         * @param timestampNanos the timestamp of the trade
+         */
+        void raiseMaxTimestamp(final long timestampNanos) {
+            long current = this.maxTimestampNanos.get();
+            while (timestampNanos > current && !this.maxTimestampNanos.compareAndSet(current, timestampNanos)) {
+                current = this.maxTimestampNanos.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Holds the trades of a stock in primitive columns organised as a ring buffer, so that adding and reading trades
+ * does not create any objects. The trades are kept in chronological order and identified by a sequence number: a trade
+ * arriving in order is appended at the {@link #head()}, while a late trade is {@link #insert inserted} at its place,
+ * moving the newer trades up by one sequence number. The retained trades are the ones between the {@link #tail()}
+ * (inclusive) and the {@link #head()} (exclusive).
+ * The ring buffer only grows when it is full, which stops happening once the retention policy of the stock has been
+ * reached.
+ * <b>NB This class is not thread safe.</b>
+ *
+ * @author CristinaGroapa
+ */
+final class TradeStore {
+
+    /** The value stored in the side column for a buy */
+    static final byte SIDE_BUY = 0;
+
+    /** The value stored in the side column for a sell */
+    static final byte SIDE_SELL = 1;
+
+    /** The initial capacity of the ring buffer; must be a power of two */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The trade timestamps, in nanoseconds since the epoch */
+    private long[] timestamps;
+
+    /** The number of shares transacted */
+    private long[] quantities;
+
+    /** The price per share */
+    private double[] prices;
+
+    /** The trade sides - i.e. {@link #SIDE_BUY} or {@link #SIDE_SELL} */
+    private byte[] sides;
+
+    /** Used to map a sequence number to an index in the columns */
+    private int mask;
+
+    /** The sequence number of the next trade to be added */
+    private long head;
+
+    /** The sequence number of the oldest retained trade */
+    private long tail;
+
+    /**
+     * Default constructor.
+     */
+    TradeStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a trade to the store.
+     *
+     * @param timestampNanos the trade timestamp, in nanoseconds since the epoch
+     * @param quantity the number of shares transacted
+     * @param side {@link #SIDE_BUY} or {@link #SIDE_SELL}
+     * @param price the price per share
+     * @return the sequence number of the added trade
+     */
+    long append(final long timestampNanos, final long quantity, final byte side, final double price) {
+        if (this.head - this.tail == this.timestamps.length) {
+            grow();
+        }
+        int index = (int) this.head & this.mask;
+        this.timestamps[index] = timestampNanos;
+        this.quantities[index] = quantity;
+        this.prices[index] = price;
+        this.sides[index] = side;
+        return this.head++;
+    }
+
+    /**
+     * Inserts a trade which arrived late at its place in chronological order, after the trades with the same timestamp.
+     * The place is found with a binary search, and only the trades newer than the inserted one are moved.
+     *
+     * @param timestampNanos the trade timestamp, in nanoseconds since the epoch
+     * @param quantity the number of shares transacted
+     * @param side {@link #SIDE_BUY} or {@link #SIDE_SELL}
+     * @param price the price per share
+     * @return the sequence number of the inserted trade
+     */
+    long insert(final long timestampNanos, final long quantity, final byte side, final double price) {
+        if (this.head - this.tail == this.timestamps.length) {
+            grow();
+        }
+        long low = this.tail;
+        long high = this.head;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (timestamp(middle) <= timestampNanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (long sequence = this.head; sequence > low; sequence--) {
+            int to = (int) sequence & this.mask;
+            int from = (int) (sequence - 1) & this.mask;
+            this.timestamps[to] = this.timestamps[from];
+            this.quantities[to] = this.quantities[from];
+            this.prices[to] = this.prices[from];
+            this.sides[to] = this.sides[from];
+        }
+        int index = (int) low & this.mask;
+        this.timestamps[index] = timestampNanos;
+        this.quantities[index] = quantity;
+        this.prices[index] = price;
+        this.sides[index] = side;
+        this.head++;
+        return low;
+    }
+
+    /**
+     * Drops all the trades with a sequence number lower than the given one.
+     *
+     * @param sequence the sequence number of the oldest trade to keep
+     */
+    void evictTo(final long sequence) {
+        this.tail = Math.max(this.tail, Math.min(sequence, this.head));
+    }
+
+    /**
+     * @return the sequence number of the next trade to be added
+     */
+    long head() {
+        return this.head;
+    }
+
+    /**
+     * @return the sequence number of the oldest retained trade
+     */
+    long tail() {
+        return this.tail;
+    }
+
+    /**
+     * @return the timestamp of the most recent trade, in nanoseconds since the epoch, or {@link Long#MIN_VALUE} if no
+     *         trade is retained
+     */
+    long newestTimestamp() {
+        return this.head == this.tail ? Long.MIN_VALUE : timestamp(this.head - 1);
+    }
+
+    /**
+     * @return the number of retained trades
+     */
+    int size() {
+        return (int) (this.head - this.tail);
+    }
+
+    /**
+     * @return true if no trade is retained, false otherwise
+     */
+    boolean isEmpty() {
+        return this.head == this.tail;
+    }
+
+    /**
+     * @param sequence the sequence number of a retained trade
+     * @return the trade timestamp, in nanoseconds since the epoch
+     */
+    long timestamp(final long sequence) {
+        return this.timestamps[(int) sequence & this.mask];
+    }
+
+    /**
+     * @param sequence the sequence number of a retained trade
+     * @return the number of shares transacted
+     */
+    long quantity(final long sequence) {
+        return this.quantities[(int) sequence & this.mask];
+    }
+
+    /**
+     * @param sequence the sequence number of a retained trade
+     * @return the price per share
+     */
+    double price(final long sequence) {
+        return this.prices[(int) sequence & this.mask];
+    }
+
+    /**
+     * @param sequence the sequence number of a retained trade
+     * @return {@link #SIDE_BUY} or {@link #SIDE_SELL}
+     */
+    byte side(final long sequence) {
+        return this.sides[(int) sequence & this.mask];
+    }
+
+    /**
+     * Converts a transaction type to the value stored in the side column.
+     *
+     * @param transactionType BUY or SELL
+     * @return {@link #SIDE_BUY} or {@link #SIDE_SELL}
+     */
+    static byte toSide(final TransactionType transactionType) {
+        return transactionType == TransactionType.SELL ? SIDE_SELL : SIDE_BUY;
+    }
+
+    /**
+     * Converts a value stored in the side column to a transaction type.
+     *
+     * @param side {@link #SIDE_BUY} or {@link #SIDE_SELL}
+     * @return BUY or SELL
+     */
+    static TransactionType toTransactionType(final byte side) {
+        return side == SIDE_SELL ? TransactionType.SELL : TransactionType.BUY;
+    }
+
+    /**
+     * Doubles the capacity of the ring buffer, keeping the retained trades.
+     */
+    private void grow() {
+        long[] oldTimestamps = this.timestamps;
+        long[] oldQuantities = this.quantities;
+        double[] oldPrices = this.prices;
+        byte[] oldSides = this.sides;
+        int oldMask = this.mask;
+
+        allocate(oldTimestamps.length * 2);
+        for (long sequence = this.tail; sequence < this.head; sequence++) {
+            int oldIndex = (int) sequence & oldMask;
+            int newIndex = (int) sequence & this.mask;
+            this.timestamps[newIndex] = oldTimestamps[oldIndex];
+            this.quantities[newIndex] = oldQuantities[oldIndex];
+            this.prices[newIndex] = oldPrices[oldIndex];
+            this.sides[newIndex] = oldSides[oldIndex];
+        }
+    }
+
+    /**
+     * Allocates new columns.
+     *
+     * @param capacity the capacity of the columns; must be a power of two
+     */
+    private void allocate(final int capacity) {
+        this.timestamps = new long[capacity];
+        this.quantities = new long[capacity];
+        this.prices = new double[capacity];
+        this.sides = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+}
@@ -1,9 +1,11 @@
 package com.cristina.interview.jpmorgan.stocks;
 
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Represents a stock transaction and holds its details.
+ * Represents a stock transaction and holds its details. Stocks do not keep the transactions added to them; they copy
+ * the details into their primitive trade store, so this class is only used to pass a transaction around.
  *
  * @author CristinaGroapa
  */
@@ -17,8 +19,8 @@ public class Transaction {
         SELL
     };
 
-    /** The transaction timestamp */
-    private final Date timestamp;
+    /** The transaction timestamp, in nanoseconds since the epoch */
+    private final long timestampNanos;
 
     /** The number of shares transacted */
     private final long quantityOfShares;
@@ -39,7 +41,20 @@ public class Transaction {
      */
     public Transaction(final Date timestamp, final long quantityOfShares, final TransactionType transactionType,
             final double price) {
-        this.timestamp = new Date(timestamp.getTime());
+        this(TimeUnit.MILLISECONDS.toNanos(timestamp.getTime()), quantityOfShares, transactionType, price);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param timestampNanos the date & time when this transaction occurred, in nanoseconds since the epoch
+     * @param quantityOfShares the number of shares transacted
+     * @param transactionType BUY or SELL
+     * @param price the price per share
+     */
+    public Transaction(final long timestampNanos, final long quantityOfShares, final TransactionType transactionType,
+            final double price) {
+        this.timestampNanos = timestampNanos;
         this.quantityOfShares = quantityOfShares;
         this.price = price;
         this.transactionType = transactionType;
@@ -53,14 +68,21 @@ public class Transaction {
      * @param price the price per share
      */
     public Transaction(final long quantityOfShares, final TransactionType transactionType, final double price) {
-        this(new Date(), quantityOfShares, transactionType, price);
+        this(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()), quantityOfShares, transactionType, price);
     }
 
     /**
      * @return the timestamp
      */
     public Date getTimestamp() {
-        return new Date(this.timestamp.getTime());
+        return new Date(TimeUnit.NANOSECONDS.toMillis(this.timestampNanos));
+    }
+
+    /**
+     * @return the timestamp, in nanoseconds since the epoch
+     */
+    public long getTimestampNanos() {
+        return this.timestampNanos;
     }
 
     /**
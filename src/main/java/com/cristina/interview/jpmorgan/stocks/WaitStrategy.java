@@ -0,0 +1,85 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides what a thread of the {@link IngestPipeline} does while it has to wait - i.e. a consumer waiting for trades
+ * to be published, or a producer waiting for room in a full ring buffer. The strategies trade CPU usage for latency:
+ * busy spinning reacts the fastest but keeps a core busy, parking frees the core but reacts the slowest.
+ *
+ * @author CristinaGroapa
+ */
+public abstract class WaitStrategy {
+
+    /** The number of times the yielding strategy spins before it starts yielding */
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * Waits once. Called repeatedly for as long as the thread has nothing to do.
+     *
+     * @param counter the number of times this method was called since the thread last had something to do
+     */
+    protected abstract void idle(int counter);
+
+    /**
+     * @return a strategy which keeps spinning; best latency, but keeps a core busy
+     */
+    public static WaitStrategy busySpin() {
+        return new WaitStrategy() {
+
+            @Override
+            protected void idle(final int counter) {
+                // nothing to do, just try again
+            }
+
+            @Override
+            public String toString() {
+                return "BusySpinWaitStrategy";
+            }
+        };
+    }
+
+    /**
+     * @return a strategy which spins for a while and then yields the processor to other threads
+     */
+    public static WaitStrategy yielding() {
+        return new WaitStrategy() {
+
+            @Override
+            protected void idle(final int counter) {
+                if (counter >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "YieldingWaitStrategy";
+            }
+        };
+    }
+
+    /**
+     * Creates a strategy which parks the thread for a given time each time it has nothing to do.
+     *
+     * @param parkTime the time to park the thread for
+     * @param unit the time unit of the park time
+     * @return the parking strategy
+     */
+    public static WaitStrategy parking(final long parkTime, final TimeUnit unit) {
+        final long parkNanos = unit.toNanos(parkTime);
+        return new WaitStrategy() {
+
+            @Override
+            protected void idle(final int counter) {
+                LockSupport.parkNanos(parkNanos);
+            }
+
+            @Override
+            public String toString() {
+                return "ParkingWaitStrategy[parkNanos=" + parkNanos + "]";
+            }
+        };
+    }
+}
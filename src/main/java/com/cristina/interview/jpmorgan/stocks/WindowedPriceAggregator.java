@@ -0,0 +1,306 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+/**
+ * Keeps the running sums needed for the volume weighted and the time weighted prices over a sliding time window.
+ * Trades are added as they arrive and subtracted again once they age out of the window, so the price can be
+ * obtained in O(1) amortized time regardless of how many trades took place inside the window. The trades themselves
+ * are read from the {@link TradeStore} of the stock; the window is the range of sequence numbers starting at
+ * {@link #windowStart} and ending at the head of the store. Since the store keeps the trades in chronological order,
+ * the window only holds trades which took place after the latest start of the window seen so far. Several aggregators
+ * with different window lengths can share the same store.
+ * <p>
+ * The time weighted price holds the price of each trade until the next trade, and the price of the most recent trade
+ * until the current time, starting from the oldest trade inside the window.
+ * <p>
+ * The sums are also kept for each side, so the order flow of the window - i.e. the volume and VWAP of each side - is
+ * available in O(1) too. The sums of the sell trades are kept on their own rather than derived from the totals, so
+ * they do not suffer from the cancellation of subtracting two large sums.
+ *
+ * @author CristinaGroapa
+ */
+class WindowedPriceAggregator {
+
+    /** The store holding the trades */
+    private final TradeStore store;
+
+    /** The length of the window in nanoseconds */
+    private final long windowNanos;
+
+    /** The sequence number of the oldest trade inside the window */
+    private long windowStart;
+
+    /** The latest start of the window seen so far, in nanoseconds since the epoch */
+    private long expiredToNanos;
+
+    /** The sum of price * quantity for all the trades inside the window */
+    private double priceQuantitySum;
+
+    /** The sum of quantities for all the trades inside the window */
+    private long quantitySum;
+
+    /** The sum of price * quantity for the buy trades inside the window */
+    private double buyPriceQuantitySum;
+
+    /** The sum of quantities for the buy trades inside the window */
+    private long buyQuantitySum;
+
+    /** The sum of price * quantity for the sell trades inside the window */
+    private double sellPriceQuantitySum;
+
+    /** The sum of quantities for the sell trades inside the window */
+    private long sellQuantitySum;
+
+    /**
+     * The sum of price * time until the next trade, for all the trades inside the window except the most recent one,
+     * in nanoseconds
+     */
+    private double priceTimeSum;
+
+    /**
+     * Constructor.
+     *
+     * @param store the store holding the trades
+     * @param windowNanos the length of the window in nanoseconds
+     */
+    WindowedPriceAggregator(final TradeStore store, final long windowNanos) {
+        this.store = store;
+        this.windowNanos = windowNanos;
+        this.windowStart = store.head();
+        this.expiredToNanos = Long.MIN_VALUE;
+    }
+
+    /**
+     * Adds the most recent trade of the store to the window. The trades that aged out of the window by the time of this
+     * trade are discarded.
+     *
+     * @param sequence the sequence number of the trade
+     */
+    void add(final long sequence) {
+        if (sequence > this.windowStart) {
+            this.priceTimeSum += priceTime(sequence - 1, sequence);
+        }
+        accumulate(sequence, 1);
+        expire(this.store.timestamp(sequence) - this.windowNanos);
+    }
+
+    /**
+     * Takes into account a trade which was {@link TradeStore#insert inserted} in the store because it arrived late. The
+     * trade is added to the window, unless it sits before the start of the window, in which case the window moves up
+     * by one sequence number along with the trades following the inserted one.
+     *
+     * @param sequence the sequence number of the inserted trade
+     */
+    void insert(final long sequence) {
+        if (sequence < this.windowStart || this.store.timestamp(sequence) <= this.expiredToNanos) {
+            this.windowStart++;
+            return;
+        }
+        boolean hasPrevious = sequence > this.windowStart;
+        boolean hasNext = sequence + 1 < this.store.head();
+        if (hasPrevious && hasNext) {
+            this.priceTimeSum -= priceTime(sequence - 1, sequence + 1);
+        }
+        if (hasPrevious) {
+            this.priceTimeSum += priceTime(sequence - 1, sequence);
+        }
+        if (hasNext) {
+            this.priceTimeSum += priceTime(sequence, sequence + 1);
+        }
+        accumulate(sequence, 1);
+    }
+
+    /**
+     * Calculates the volume weighted price of the trades that took place after the start of the window, as seen
+     * at the given time. Trades that have aged out of the window are discarded.
+     *
+     * @param nowNanos the current time in nanoseconds since the epoch
+     * @return the volume weighted price, or {@link Double#NaN} if there are no trades inside the window
+     */
+    double calculatePrice(final long nowNanos) {
+        expire(nowNanos - this.windowNanos);
+        return this.priceQuantitySum / this.quantitySum;
+    }
+
+    /**
+     * Calculates the time weighted price of the trades that took place after the start of the window, as seen at the
+     * given time. Trades that have aged out of the window are discarded.
+     *
+     * @param nowNanos the current time in nanoseconds since the epoch
+     * @return the time weighted price, or {@link Double#NaN} if there are no trades inside the window
+     */
+    double calculateTimeWeightedPrice(final long nowNanos) {
+        expire(nowNanos - this.windowNanos);
+        long head = this.store.head();
+        if (this.windowStart == head) {
+            return Double.NaN;
+        }
+        long newest = head - 1;
+        long newestNanos = this.store.timestamp(newest);
+        long endNanos = Math.max(nowNanos, newestNanos);
+        long spanNanos = endNanos - this.store.timestamp(this.windowStart);
+        if (spanNanos <= 0) {
+            return this.store.price(newest);
+        }
+        return (this.priceTimeSum + this.store.price(newest) * (endNanos - newestNanos)) / spanNanos;
+    }
+
+    /**
+     * Discards the trades that have aged out of the window by the given time.
+     *
+     * @param nowNanos the current time in nanoseconds since the epoch
+     */
+    void advanceTo(final long nowNanos) {
+        expire(nowNanos - this.windowNanos);
+    }
+
+    /**
+     * @return the length of the window in nanoseconds
+     */
+    long getWindowNanos() {
+        return this.windowNanos;
+    }
+
+    /**
+     * @return the sum of price * quantity for all the trades inside the window
+     */
+    double getPriceQuantitySum() {
+        return this.priceQuantitySum;
+    }
+
+    /**
+     * @return the sum of quantities for all the trades inside the window
+     */
+    long getQuantitySum() {
+        return this.quantitySum;
+    }
+
+    /**
+     * @return the sum of price * quantity for the buy trades inside the window
+     */
+    double getBuyPriceQuantitySum() {
+        return this.buyPriceQuantitySum;
+    }
+
+    /**
+     * @return the sum of quantities for the buy trades inside the window
+     */
+    long getBuyQuantitySum() {
+        return this.buyQuantitySum;
+    }
+
+    /**
+     * @return the sum of price * quantity for the sell trades inside the window
+     */
+    double getSellPriceQuantitySum() {
+        return this.sellPriceQuantitySum;
+    }
+
+    /**
+     * @return the sum of quantities for the sell trades inside the window
+     */
+    long getSellQuantitySum() {
+        return this.sellQuantitySum;
+    }
+
+    /**
+     * @return the number of trades inside the window
+     */
+    int getTradeCount() {
+        return (int) (this.store.head() - this.windowStart);
+    }
+
+    /**
+     * @return the timestamp of the oldest trade inside the window, in nanoseconds since the epoch, or
+     *         {@link Long#MAX_VALUE} if the window is empty
+     */
+    long getWindowStartTimestamp() {
+        if (this.windowStart == this.store.head()) {
+            return Long.MAX_VALUE;
+        }
+        return this.store.timestamp(this.windowStart);
+    }
+
+    /**
+     * Removes from the window all the trades with a sequence number lower than the given one. Must be called before
+     * these trades are evicted from the store.
+     *
+     * @param sequence the sequence number of the oldest trade to keep
+     */
+    void evictTo(final long sequence) {
+        while (this.windowStart < sequence) {
+            remove(this.windowStart++);
+        }
+        resetIfEmpty();
+    }
+
+    /**
+     * Removes from the window all the trades that took place at or before the given time, or at or before a later start
+     * of the window seen before.
+     *
+     * @param windowStartNanos the start of the window in nanoseconds since the epoch
+     */
+    private void expire(final long windowStartNanos) {
+        this.expiredToNanos = Math.max(this.expiredToNanos, windowStartNanos);
+        long head = this.store.head();
+        while (this.windowStart < head && this.store.timestamp(this.windowStart) <= this.expiredToNanos) {
+            remove(this.windowStart++);
+        }
+        resetIfEmpty();
+    }
+
+    /**
+     * Subtracts the oldest trade inside the window from the running sums.
+     *
+     * @param sequence the sequence number of the trade
+     */
+    private void remove(final long sequence) {
+        if (sequence + 1 < this.store.head()) {
+            this.priceTimeSum -= priceTime(sequence, sequence + 1);
+        }
+        accumulate(sequence, -1);
+    }
+
+    /**
+     * Starts from a clean slate when the window is empty, so that rounding errors do not accumulate over time.
+     */
+    private void resetIfEmpty() {
+        if (this.windowStart == this.store.head()) {
+            this.priceQuantitySum = 0.0d;
+            this.quantitySum = 0L;
+            this.buyPriceQuantitySum = 0.0d;
+            this.buyQuantitySum = 0L;
+            this.sellPriceQuantitySum = 0.0d;
+            this.sellQuantitySum = 0L;
+            this.priceTimeSum = 0.0d;
+        }
+    }
+
+    /**
+     * Adds a trade to, or subtracts it from, the volume weighted sums.
+     *
+     * @param sequence the sequence number of the trade
+     * @param sign 1 to add the trade, -1 to subtract it
+     */
+    private void accumulate(final long sequence, final int sign) {
+        long quantity = sign * this.store.quantity(sequence);
+        double priceQuantity = quantity * this.store.price(sequence);
+        this.priceQuantitySum += priceQuantity;
+        this.quantitySum += quantity;
+        if (this.store.side(sequence) == TradeStore.SIDE_BUY) {
+            this.buyPriceQuantitySum += priceQuantity;
+            this.buyQuantitySum += quantity;
+        } else {
+            this.sellPriceQuantitySum += priceQuantity;
+            this.sellQuantitySum += quantity;
+        }
+    }
+
+    /**
+     * @param sequence the sequence number of a trade
+     * @param nextSequence the sequence number of a later trade
+     * @return the price of the trade multiplied by the time until the later trade, in nanoseconds
+     */
+    private double priceTime(final long sequence, final long nextSequence) {
+        return this.store.price(sequence) * (this.store.timestamp(nextSequence) - this.store.timestamp(sequence));
+    }
+}
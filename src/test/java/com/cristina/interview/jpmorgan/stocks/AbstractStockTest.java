@@ -0,0 +1,161 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Tests {@link AbstractStock}.
+ *
+ * @author CristinaGroapa
+ */
+public class AbstractStockTest {
+
+    /**
+     * Tests that transactions older than the maximum age are evicted, but the most recent one is always kept.
+     */
+    @Test
+    public void testRetentionByAge() {
+        AbstractStock stock = new CommonStock(StockSymbol.TEA, 100.0, 8.0, StockSettings.builder()
+                .retentionPolicy(RetentionPolicy.byAge(1, TimeUnit.SECONDS)).build());
+        stock.addTransaction(new Transaction(new Date(0L), 100, TransactionType.BUY, 10.0));
+        stock.addTransaction(new Transaction(new Date(500L), 100, TransactionType.BUY, 11.0));
+        Assert.assertEquals(2, stock.getTransactionCount());
+
+        stock.addTransaction(new Transaction(new Date(1200L), 100, TransactionType.SELL, 12.0));
+        Assert.assertEquals(2, stock.getTransactionCount());
+
+        stock.addTransaction(new Transaction(new Date(60000L), 100, TransactionType.SELL, 13.0));
+        Assert.assertEquals(1, stock.getTransactionCount());
+        Assert.assertEquals(13.0, stock.getTickerPrice(), 0.0);
+    }
+
+    /**
+     * Tests that no more than the maximum number of transactions are kept.
+     */
+    @Test
+    public void testRetentionByCount() {
+        AbstractStock stock = new CommonStock(StockSymbol.TEA, 100.0, 8.0, StockSettings.builder()
+                .retentionPolicy(RetentionPolicy.byCount(3)).build());
+        for (int i = 0; i < 10; i++) {
+            stock.addTransaction(new Transaction(new Date(i), 100, TransactionType.BUY, 10.0 + i));
+        }
+        Assert.assertEquals(3, stock.getTransactionCount());
+        Assert.assertEquals(19.0, stock.getTickerPrice(), 0.0);
+    }
+
+    /**
+     * Tests that a late transaction is inserted at its place within the lateness tolerance, and rejected beyond it.
+     */
+    @Test
+    public void testLateTransactions() {
+        AbstractStock stock = new CommonStock(StockSymbol.ALE, 60.0, 23.0, StockSettings.builder()
+                .retentionPolicy(RetentionPolicy.byAge(1, TimeUnit.HOURS).withLatenessTolerance(1, TimeUnit.SECONDS))
+                .build());
+        long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        Assert.assertTrue(stock.addTrade(now, 100, TransactionType.BUY, 10.0));
+        Assert.assertTrue(stock.addTrade(now - TimeUnit.MILLISECONDS.toNanos(500), 300, TransactionType.SELL, 20.0));
+        Assert.assertFalse(stock.addTrade(now - TimeUnit.SECONDS.toNanos(2), 100, TransactionType.BUY, 1000.0));
+
+        Assert.assertEquals(2, stock.getTransactionCount());
+        // the ticker price is the price of the most recent transaction, not of the last one to arrive
+        Assert.assertEquals(10.0, stock.getTickerPrice(), 0.0);
+        Assert.assertEquals(17.5, stock.calculateStockPrice(), 0.0);
+    }
+
+    /**
+     * Tests that the published snapshot reflects the last change made to the stock.
+     */
+    @Test
+    public void testSnapshot() {
+        AbstractStock stock = new CommonStock(StockSymbol.POP, 100.0, 8.0);
+        StockSnapshot snapshot = stock.getSnapshot();
+        Assert.assertFalse(snapshot.hasTransactions());
+        Assert.assertEquals(8.0, snapshot.getLastDividend(), 0.0);
+
+        stock.addTransaction(new Transaction(100, TransactionType.BUY, 10.0));
+        stock.addTransaction(new Transaction(300, TransactionType.SELL, 20.0));
+        stock.setLastDividend(5.0);
+        snapshot = stock.getSnapshot();
+        Assert.assertEquals(20.0, snapshot.getTickerPrice(), 0.0);
+        Assert.assertEquals(7000.0, snapshot.getPriceQuantitySum(), 0.0);
+        Assert.assertEquals(400L, snapshot.getQuantitySum());
+        Assert.assertEquals(5.0, snapshot.getLastDividend(), 0.0);
+        Assert.assertEquals(0.25, stock.calculateDividendYield(), 0.0);
+    }
+
+    /**
+     * Tests that the derived metrics follow the changes of the ticker price, the last dividend and the price window.
+     */
+    @Test
+    public void testDerivedMetrics() {
+        MarketClock.EventTime clock = MarketClock.eventTime();
+        AbstractStock stock = new PreferredStock(StockSymbol.GIN, 100.0, 0.0, 0.02,
+                                                 StockSettings.builder().clock(clock).build());
+        Assert.assertEquals(Double.NaN, stock.calculateDividendYield(), 0.0);
+        Assert.assertEquals(Double.NaN, stock.calculatePERatio(), 0.0);
+
+        stock.addTrade(TimeUnit.MINUTES.toNanos(1), 100, TransactionType.BUY, 4.0);
+        Assert.assertEquals(0.5, stock.calculateDividendYield(), 0.0);
+        Assert.assertEquals(Double.NaN, stock.calculatePERatio(), 0.0);
+
+        stock.setLastDividend(8.0);
+        Assert.assertEquals(0.5, stock.calculatePERatio(), 0.0);
+
+        stock.addTrade(TimeUnit.MINUTES.toNanos(2), 300, TransactionType.SELL, 8.0);
+        Assert.assertEquals(0.25, stock.calculateDividendYield(), 0.0);
+        Assert.assertEquals(1.0, stock.calculatePERatio(), 0.0);
+        Assert.assertEquals(7.0, stock.calculateStockPrice(), 0.0);
+
+        // the first transaction ages out of the price window, the ticker price stays
+        clock.advanceWatermark(TimeUnit.MINUTES.toNanos(16) + 1);
+        Assert.assertEquals(8.0, stock.calculateStockPrice(), 0.0);
+        Assert.assertEquals(1.0, stock.calculatePERatio(), 0.0);
+    }
+
+    /**
+     * Tests that the order flow of each window follows the transactions added, inserted late and aged out.
+     */
+    @Test
+    public void testOrderFlow() {
+        MarketClock.EventTime clock = MarketClock.eventTime();
+        AbstractStock stock = new CommonStock(StockSymbol.TEA, 100.0, 0.0, StockSettings.builder().clock(clock)
+                .build());
+        OrderFlow flow = stock.calculateOrderFlow(15, TimeUnit.MINUTES);
+        Assert.assertEquals(0L, flow.getBuyVolume());
+        Assert.assertEquals(Double.NaN, flow.getImbalance(), 0.0);
+
+        stock.addTrade(TimeUnit.MINUTES.toNanos(1), 100, TransactionType.BUY, 4.0);
+        stock.addTrade(TimeUnit.MINUTES.toNanos(2), 300, TransactionType.SELL, 8.0);
+        stock.addTrade(TimeUnit.MINUTES.toNanos(3), 200, TransactionType.BUY, 10.0);
+        stock.addTrade(TimeUnit.SECONDS.toNanos(90), 100, TransactionType.SELL, 6.0);
+
+        flow = stock.calculateOrderFlow(15, TimeUnit.MINUTES);
+        Assert.assertEquals(300L, flow.getBuyVolume());
+        Assert.assertEquals(400L, flow.getSellVolume());
+        Assert.assertEquals(8.0, flow.getBuyVwap(), 1e-12);
+        Assert.assertEquals(7.5, flow.getSellVwap(), 1e-12);
+        Assert.assertEquals(-1.0 / 7, flow.getImbalance(), 1e-12);
+        Assert.assertEquals(-600.0, flow.getSignedNotional(), 1e-9);
+
+        flow = stock.calculateOrderFlow(1, TimeUnit.MINUTES);
+        Assert.assertEquals(200L, flow.getBuyVolume());
+        Assert.assertEquals(0L, flow.getSellVolume());
+        Assert.assertEquals(Double.NaN, flow.getSellVwap(), 0.0);
+        Assert.assertEquals(1.0, flow.getImbalance(), 0.0);
+        Assert.assertEquals(2000.0, flow.getSignedNotional(), 1e-9);
+
+        // the first transaction ages out of the 15 minutes window
+        clock.advanceWatermark(TimeUnit.MINUTES.toNanos(16) + 1);
+        flow = stock.calculateOrderFlow(15, TimeUnit.MINUTES);
+        Assert.assertEquals(200L, flow.getBuyVolume());
+        Assert.assertEquals(400L, flow.getSellVolume());
+        Assert.assertEquals(10.0, flow.getBuyVwap(), 1e-12);
+        Assert.assertEquals(-1.0 / 3, flow.getImbalance(), 1e-12);
+        Assert.assertEquals(-1000.0, flow.getSignedNotional(), 1e-9);
+    }
+}
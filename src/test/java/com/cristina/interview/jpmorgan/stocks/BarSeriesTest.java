@@ -0,0 +1,75 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link BarSeries}.
+ *
+ * @author CristinaGroapa
+ */
+public class BarSeriesTest {
+
+    /** One second, in nanoseconds */
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Tests that the trades of the same interval are aggregated into one bar, and a new bar starts with the next
+     * interval.
+     */
+    @Test
+    public void testBars() {
+        BarSeries series = new BarSeries(BarInterval.ONE_SECOND, 4);
+        series.add(10 * SECOND + 1, 100, 10.0);
+        series.add(10 * SECOND + 2, 100, 14.0);
+        series.add(10 * SECOND + 3, 200, 9.0);
+        series.add(12 * SECOND, 50, 11.0);
+
+        List<Bar> bars = series.lastBars(10);
+        Assert.assertEquals(2, bars.size());
+        Bar first = bars.get(0);
+        Assert.assertEquals(10 * SECOND, first.getStartNanos());
+        Assert.assertEquals(10.0, first.getOpen(), 0.0);
+        Assert.assertEquals(14.0, first.getHigh(), 0.0);
+        Assert.assertEquals(9.0, first.getLow(), 0.0);
+        Assert.assertEquals(9.0, first.getClose(), 0.0);
+        Assert.assertEquals(400, first.getVolume());
+        Assert.assertEquals(10.5, first.getVwap(), 0.0);
+        Assert.assertEquals(12 * SECOND, bars.get(1).getStartNanos());
+
+        Assert.assertEquals(1, series.lastBars(1).size());
+        Assert.assertEquals(12 * SECOND, series.lastBars(1).get(0).getStartNanos());
+    }
+
+    /**
+     * Tests that late trades update the bar of their interval, or create it in place, and that only the most recent
+     * bars are kept.
+     */
+    @Test
+    public void testLateTradesAndCapacity() {
+        BarSeries series = new BarSeries(BarInterval.ONE_SECOND, 4);
+        series.add(10 * SECOND + 5, 100, 10.0);
+        series.add(13 * SECOND, 100, 13.0);
+        series.add(10 * SECOND + 1, 100, 8.0);
+        series.add(11 * SECOND, 100, 11.0);
+
+        List<Bar> bars = series.lastBars(4);
+        Assert.assertEquals(3, bars.size());
+        Assert.assertEquals(8.0, bars.get(0).getOpen(), 0.0);
+        Assert.assertEquals(10.0, bars.get(0).getClose(), 0.0);
+        Assert.assertEquals(11 * SECOND, bars.get(1).getStartNanos());
+        Assert.assertEquals(13 * SECOND, bars.get(2).getStartNanos());
+
+        series.add(14 * SECOND, 100, 14.0);
+        series.add(15 * SECOND, 100, 15.0);
+        // the ring buffer is full, so a trade older than the oldest bar kept is ignored
+        series.add(9 * SECOND, 100, 9.0);
+        bars = series.lastBars(10);
+        Assert.assertEquals(4, bars.size());
+        Assert.assertEquals(11 * SECOND, bars.get(0).getStartNanos());
+        Assert.assertEquals(15 * SECOND, bars.get(3).getStartNanos());
+    }
+}
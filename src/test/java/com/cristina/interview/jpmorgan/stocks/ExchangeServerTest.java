@@ -0,0 +1,150 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link ExchangeServer} over localhost.
+ *
+ * @author CristinaGroapa
+ */
+public class ExchangeServerTest {
+
+    /**
+     * Tests pipelined trades and queries, with more responses than the server buffers at once.
+     */
+    @Test
+    public void testPipelinedTradesAndQueries() throws Exception {
+        StockExchangeServiceImpl service = new StockExchangeServiceImplGBCE();
+        try (ExchangeServer server = new ExchangeServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                                                                      0))) {
+            server.start();
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+                ByteBuffer request = ByteBuffer.allocate(128 * 1024);
+                request.put(ExchangeProtocol.SYMBOL).put((byte) 3).put("POP".getBytes(StandardCharsets.US_ASCII));
+                write(client, request);
+                ByteBuffer symbolResponse = read(client, ExchangeProtocol.SYMBOL_RESPONSE_SIZE);
+                Assert.assertEquals(ExchangeProtocol.SYMBOL, symbolResponse.get());
+                int pop = symbolResponse.getInt();
+                Assert.assertEquals(StockSymbol.POP.id(), pop);
+
+                long now = System.currentTimeMillis() * 1000000L;
+                for (int i = 0; i < 1000; i++) {
+                    request.put(ExchangeProtocol.TRADE).putInt(pop).putLong(now + i).putLong(10L)
+                            .put((byte) (i % 2)).putDouble(i % 2 == 0 ? 10.0 : 20.0);
+                }
+                request.put(ExchangeProtocol.SYNC);
+                int queries = 10000;
+                for (int i = 0; i < queries; i++) {
+                    request.put(ExchangeProtocol.QUERY).put(ExchangeProtocol.STOCK_PRICE).putInt(pop);
+                }
+                request.put(ExchangeProtocol.QUERY).put(ExchangeProtocol.PE_RATIO).putInt(pop);
+                request.put(ExchangeProtocol.QUERY).put(ExchangeProtocol.GEOMETRIC_MEAN).putInt(0);
+                write(client, request);
+
+                ByteBuffer responses = read(client, 1 + (queries + 2) * ExchangeProtocol.QUERY_RESPONSE_SIZE);
+                Assert.assertEquals(ExchangeProtocol.SYNC, responses.get());
+                for (int i = 0; i < queries; i++) {
+                    Assert.assertEquals(ExchangeProtocol.QUERY, responses.get());
+                    Assert.assertEquals(15.0, responses.getDouble(), 0.0);
+                }
+                Assert.assertEquals(ExchangeProtocol.QUERY, responses.get());
+                Assert.assertEquals(2.5, responses.getDouble(), 0.0);
+                Assert.assertEquals(ExchangeProtocol.QUERY, responses.get());
+                Assert.assertEquals(15.0, responses.getDouble(), 0.0);
+                Assert.assertEquals(1000, service.getStock(StockSymbol.POP).getTransactionCount());
+            }
+        }
+    }
+
+    /**
+     * Tests that unknown and too long tickers are not registered, and resolve to -1.
+     */
+    @Test
+    public void testUnknownTickers() throws Exception {
+        StockExchangeServiceImpl service = new StockExchangeServiceImplGBCE();
+        try (ExchangeServer server = new ExchangeServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                                                                      0))) {
+            server.start();
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+                ByteBuffer request = ByteBuffer.allocate(1024);
+                String[] tickers = { "NOTLISTED", new String(new char[TradeJournal.MAX_TICKER_LENGTH + 1])
+                        .replace('\0', 'X'), "TEA" };
+                for (String ticker : tickers) {
+                    request.put(ExchangeProtocol.SYMBOL).put((byte) ticker.length())
+                            .put(ticker.getBytes(StandardCharsets.US_ASCII));
+                }
+                write(client, request);
+
+                ByteBuffer responses = read(client, tickers.length * ExchangeProtocol.SYMBOL_RESPONSE_SIZE);
+                for (int expected : new int[] { -1, -1, StockSymbol.TEA.id() }) {
+                    Assert.assertEquals(ExchangeProtocol.SYMBOL, responses.get());
+                    Assert.assertEquals(expected, responses.getInt());
+                }
+                Assert.assertNull(StockSymbol.lookup("NOTLISTED"));
+            }
+        }
+    }
+
+    /**
+     * Tests that closing the server from another thread stops the serving thread, which closes the connections.
+     */
+    @Test
+    public void testCloseFromAnotherThread() throws Exception {
+        ExchangeServer server = new ExchangeServer(new StockExchangeServiceImplGBCE(),
+                                                   new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread thread = server.start();
+        try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+            ByteBuffer request = ByteBuffer.allocate(1);
+            request.put(ExchangeProtocol.SYNC);
+            write(client, request);
+            Assert.assertEquals(ExchangeProtocol.SYNC, read(client, 1).get());
+
+            server.close();
+            thread.join(10000);
+            Assert.assertFalse(thread.isAlive());
+            Assert.assertEquals(-1, client.read(ByteBuffer.allocate(1)));
+        }
+    }
+
+    /**
+     * Writes the content of a buffer and clears it.
+     *
+     * @param client the client channel
+     * @param request the buffer, in write mode
+     * @throws IOException if the channel fails
+     */
+    private static void write(final SocketChannel client, final ByteBuffer request) throws IOException {
+        request.flip();
+        while (request.hasRemaining()) {
+            client.write(request);
+        }
+        request.clear();
+    }
+
+    /**
+     * Reads a given number of bytes.
+     *
+     * @param client the client channel
+     * @param size the number of bytes
+     * @return the bytes, in read mode
+     * @throws IOException if the channel fails or is closed
+     */
+    private static ByteBuffer read(final SocketChannel client, final int size) throws IOException {
+        ByteBuffer response = ByteBuffer.allocate(size);
+        while (response.hasRemaining()) {
+            if (client.read(response) < 0) {
+                throw new IOException("Connection closed by the server");
+            }
+        }
+        response.flip();
+        return response;
+    }
+}
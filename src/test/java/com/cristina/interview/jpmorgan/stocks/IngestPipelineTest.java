@@ -0,0 +1,137 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Tests {@link IngestPipeline}.
+ *
+ * @author CristinaGroapa
+ */
+public class IngestPipelineTest {
+
+    /** The symbols of the stocks created by {@link StockExchangeServiceImplGBCE} */
+    private static final StockSymbol[] GBCE_SYMBOLS = { StockSymbol.TEA, StockSymbol.POP, StockSymbol.ALE,
+        StockSymbol.GIN, StockSymbol.JOE };
+
+    /**
+     * Tests that all the trades published by several producers through a small ring buffer reach their stocks.
+     *
+     * @throws InterruptedException if interrupted while waiting for the producers or consumers
+     */
+    @Test
+    public void testTradesReachTheStocks() throws InterruptedException {
+        StockExchangeServiceImpl service = new StockExchangeServiceImplGBCE();
+        final IngestPipeline pipeline = new IngestPipeline(service, 64, 2, WaitStrategy.yielding(),
+                                                           WaitStrategy.parking(10, TimeUnit.MICROSECONDS));
+        pipeline.start();
+
+        final long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        final int tradesPerProducer = 5000;
+        List<Thread> producers = new ArrayList<>();
+        for (final StockSymbol stockSymbol : GBCE_SYMBOLS) {
+            Thread producer = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < tradesPerProducer; i++) {
+                        pipeline.publish(stockSymbol, now + i, 1, TransactionType.BUY, i % 2 == 0 ? 10.0 : 20.0);
+                    }
+                }
+            };
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        pipeline.stop();
+
+        for (StockSymbol stockSymbol : GBCE_SYMBOLS) {
+            Assert.assertEquals(Double.valueOf(15.0), service.calculateStockPrice(stockSymbol));
+            Assert.assertEquals(tradesPerProducer, service.getStock(stockSymbol).getTransactionCount());
+        }
+    }
+
+    /**
+     * Tests that publishing is refused while the ring buffer is full.
+     */
+    @Test
+    public void testBackPressure() {
+        StockExchangeServiceImpl service = new StockExchangeServiceImplGBCE();
+        IngestPipeline pipeline = new IngestPipeline(service, 4, 1, WaitStrategy.busySpin(),
+                                                     WaitStrategy.busySpin());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(pipeline.tryPublish(StockSymbol.TEA, i, 1, TransactionType.SELL, 10.0));
+        }
+        Assert.assertFalse(pipeline.tryPublish(StockSymbol.TEA, 4, 1, TransactionType.SELL, 10.0));
+    }
+
+    /**
+     * Tests that a trade which fails to be applied is skipped, and the consumer keeps applying the following ones.
+     *
+     * @throws InterruptedException if interrupted while waiting for the consumers
+     */
+    @Test
+    public void testFailedTradeIsSkipped() throws InterruptedException {
+        StockExchangeServiceImpl service = new StockExchangeServiceImplGBCE() {
+
+            @Override
+            void applyTrade(final AbstractStock stock, final long timestampNanos, final long quantityOfShares,
+                    final byte side, final double price) {
+                if (price < 0.0) {
+                    throw new IllegalStateException("Negative price " + price);
+                }
+                super.applyTrade(stock, timestampNanos, quantityOfShares, side, price);
+            }
+        };
+        IngestPipeline pipeline = new IngestPipeline(service, 4, 1, WaitStrategy.yielding(), WaitStrategy.yielding());
+        pipeline.start();
+        long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        pipeline.publish(StockSymbol.TEA, now, 1, TransactionType.BUY, -1.0);
+        for (int i = 1; i <= 10; i++) {
+            pipeline.publish(StockSymbol.TEA, now + i, 1, TransactionType.BUY, 10.0);
+        }
+        pipeline.stop();
+
+        Assert.assertEquals(1L, pipeline.getFailedCount());
+        Assert.assertEquals(10, service.getStock(StockSymbol.TEA).getTransactionCount());
+    }
+
+    /**
+     * Tests that a stopped pipeline refuses trades and cannot be restarted.
+     *
+     * @throws InterruptedException if interrupted while waiting for the consumers
+     */
+    @Test
+    public void testPublishAfterStop() throws InterruptedException {
+        IngestPipeline pipeline = new IngestPipeline(new StockExchangeServiceImplGBCE(), 4, 1, WaitStrategy.yielding(),
+                                                     WaitStrategy.yielding());
+        pipeline.start();
+        pipeline.stop();
+        try {
+            pipeline.tryPublish(StockSymbol.TEA, 0, 1, TransactionType.SELL, 10.0);
+            Assert.fail("Published a trade to a stopped pipeline");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            pipeline.publish(StockSymbol.TEA, 0, 1, TransactionType.SELL, 10.0);
+            Assert.fail("Published a trade to a stopped pipeline");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            pipeline.start();
+            Assert.fail("Restarted a stopped pipeline");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link LatencyHistogram}.
+ *
+ * @author CristinaGroapa
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Tests that every value falls in a bucket whose bounds hold it, within the precision of the histogram.
+     */
+    @Test
+    public void testBuckets() {
+        long[] values = { 0L, 1L, 31L, 32L, 33L, 63L, 64L, 65L, 1000L, 123456789L, Long.MAX_VALUE };
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long highest = LatencyHistogram.highestValue(index);
+            Assert.assertTrue(value + " above " + highest, value <= highest);
+            Assert.assertTrue(value + " below its bucket", LatencyHistogram.lowestValue(index) <= value);
+            Assert.assertTrue(value + " too far below " + highest, highest - value <= value / 32);
+            if (index > 0) {
+                Assert.assertTrue(LatencyHistogram.highestValue(index - 1) < value);
+            }
+        }
+    }
+
+    /**
+     * Tests the percentiles of a known distribution.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0L, histogram.getValueAtPercentile(99.0));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Assert.assertEquals(1000L, histogram.getTotalCount());
+        Assert.assertTrue(histogram.getMaxNanos() >= 1000000L);
+        Assert.assertEquals(1000000.0, histogram.getMaxNanos(), 1000000.0 / 32);
+        Assert.assertEquals(500500.0, histogram.getMeanNanos(), 500500.0 / 32);
+        Assert.assertEquals(500000.0, histogram.getValueAtPercentile(50.0), 500000.0 / 32);
+        Assert.assertEquals(990000.0, histogram.getValueAtPercentile(99.0), 990000.0 / 32);
+        Assert.assertEquals(histogram.getMaxNanos(), histogram.getValueAtPercentile(100.0));
+
+        histogram.reset();
+        Assert.assertEquals(0L, histogram.getTotalCount());
+        Assert.assertEquals(Double.NaN, histogram.getMeanNanos(), 0.0);
+    }
+
+    /**
+     * Tests that the values recorded by several threads at once are all counted.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(100L);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(40000L, histogram.getTotalCount());
+        Assert.assertEquals(100L, histogram.getValueAtPercentile(50.0), 100L / 32);
+    }
+}
@@ -0,0 +1,63 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link MarketClock}.
+ *
+ * @author CristinaGroapa
+ */
+public class MarketClockTest {
+
+    /**
+     * Tests that the system clock follows the system time when it drifts from the elapsed time, stepping forward to it
+     * and slewing towards it without going backwards.
+     */
+    @Test
+    public void testSystemClockFollowsSystemTime() {
+        final long second = TimeUnit.SECONDS.toNanos(1);
+        final long[] epochNanos = { 1000 * second };
+        final long[] nanoTime = { 0L };
+        MarketClock clock = new MarketClock.SystemClock() {
+
+            @Override
+            long readEpochNanos() {
+                return epochNanos[0];
+            }
+
+            @Override
+            long readNanoTime() {
+                return nanoTime[0];
+            }
+        };
+
+        nanoTime[0] = second / 2;
+        Assert.assertEquals(1000 * second + second / 2, clock.nowNanos());
+
+        // the system time ran 100 ms ahead: the clock steps forward at the next anchor
+        nanoTime[0] = second;
+        epochNanos[0] = 1001 * second + 100000000L;
+        Assert.assertEquals(epochNanos[0], clock.nowNanos());
+
+        // the system time is set back by 200 ms: the clock slows down instead of going backwards
+        nanoTime[0] = 2 * second;
+        epochNanos[0] = 1002 * second - 100000000L;
+        long beforeSlew = clock.nowNanos();
+        Assert.assertEquals(1002 * second + 100000000L, beforeSlew);
+        long previous = beforeSlew;
+        for (int i = 1; i <= 10; i++) {
+            nanoTime[0] = 2 * second + i * second / 10;
+            epochNanos[0] += second / 10;
+            long now = clock.nowNanos();
+            Assert.assertTrue(now >= previous);
+            previous = now;
+        }
+        // 200 ms absorbed at half speed over the first 400 ms, then in step with the system time again
+        nanoTime[0] = 4 * second;
+        epochNanos[0] = 1004 * second - 100000000L;
+        Assert.assertEquals(epochNanos[0], clock.nowNanos());
+    }
+}
@@ -0,0 +1,73 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Tests {@link ShardedStockExchangeService}.
+ *
+ * @author CristinaGroapa
+ */
+public class ShardedStockExchangeServiceTest {
+
+    /**
+     * Tests that a sharded service gives the same results as a single service holding all the stocks.
+     */
+    @Test
+    public void testSameResultsAsSingleService() {
+        List<StockExchangeServiceImpl> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shards.add(new StockExchangeServiceImpl());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ShardedStockExchangeService sharded = new ShardedStockExchangeService(shards, executor);
+            StockExchangeServiceImpl single = new StockExchangeServiceImpl();
+
+            StockSymbol[] symbols = new StockSymbol[40];
+            TradeBatch batch = new TradeBatch();
+            long now = System.currentTimeMillis() * 1000000L;
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = StockSymbol.valueOf("SHARD-" + i);
+                sharded.createCommonStock(symbols[i], 100.0, 1.0 + i);
+                single.createCommonStock(symbols[i], 100.0, 1.0 + i);
+                batch.add(symbols[i], now, 10, TransactionType.BUY, 5.0 + i);
+                batch.add(symbols[i], now, 30, TransactionType.SELL, 7.0 + 2 * i);
+            }
+            sharded.addTransactions(batch);
+            single.addTransactions(batch);
+            sharded.addTransaction(symbols[3], new Transaction(now, 20, TransactionType.BUY, 100.0));
+            single.addTransaction(symbols[3], new Transaction(now, 20, TransactionType.BUY, 100.0));
+
+            Assert.assertEquals(single.calculateGeometricMean(), sharded.calculateGeometricMean());
+            GeometricMeanPartial partial = sharded.calculateGeometricMeanPartial();
+            Assert.assertEquals(symbols.length, partial.getCount());
+
+            double[] stockPrices = new double[symbols.length];
+            double[] dividendYields = new double[symbols.length];
+            double[] peRatios = new double[symbols.length];
+            Assert.assertEquals(symbols.length, sharded.fillMetrics(symbols, stockPrices, dividendYields, peRatios));
+            for (int i = 0; i < symbols.length; i++) {
+                Assert.assertEquals(single.calculateStockPrice(symbols[i]), stockPrices[i], 0.0);
+                Assert.assertEquals(single.calculatePERatio(symbols[i]), peRatios[i], 0.0);
+                Assert.assertEquals(single.calculateDividendYield(symbols[i]),
+                                    sharded.calculateDividendYield(symbols[i]));
+            }
+
+            int used = 0;
+            for (StockExchangeServiceImpl shard : shards) {
+                used += shard.calculateGeometricMeanPartial().getCount() > 0 ? 1 : 0;
+            }
+            Assert.assertTrue("The stocks should be spread over the shards", used > 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
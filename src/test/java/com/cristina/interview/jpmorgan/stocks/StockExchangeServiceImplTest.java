@@ -3,8 +3,22 @@ package com.cristina.interview.jpmorgan.stocks;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -19,6 +33,10 @@ import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
  */
 public class StockExchangeServiceImplTest {
 
+    /** The symbols of the stocks created by {@link StockExchangeServiceImplGBCE} */
+    private static final StockSymbol[] GBCE_SYMBOLS = { StockSymbol.TEA, StockSymbol.POP, StockSymbol.ALE,
+        StockSymbol.GIN, StockSymbol.JOE };
+
     /** The object to test */
     private StockExchangeServiceImpl service;
 
@@ -63,6 +81,353 @@ public class StockExchangeServiceImplTest {
         Assert.assertEquals(this.expectedGMean, this.service.calculateGeometricMean());
     }
 
+    /**
+     * Tests that transactions added concurrently, for the same and for different stocks, are all taken into account.
+     *
+     * @throws Exception if one of the threads adding transactions fails
+     */
+    @Test
+    public void testConcurrentTransactions() throws Exception {
+        final StockExchangeServiceImpl concurrentService = new StockExchangeServiceImplGBCE();
+        final int transactionsPerThread = 2000;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (final StockSymbol stockSymbol : GBCE_SYMBOLS) {
+            for (int i = 0; i < 2; i++) {
+                final double price = i == 0 ? 10.0 : 20.0;
+                tasks.add(new Callable<Void>() {
+
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < transactionsPerThread; j++) {
+                            concurrentService.addTransaction(stockSymbol, new Transaction(1, TransactionType.BUY,
+                                                                                          price));
+                            concurrentService.calculateDividendYield(stockSymbol);
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (StockSymbol stockSymbol : GBCE_SYMBOLS) {
+            Assert.assertEquals(Double.valueOf(15.0), concurrentService.calculateStockPrice(stockSymbol));
+        }
+        Assert.assertEquals(Double.valueOf(15.0), concurrentService.calculateGeometricMean());
+    }
+
+    /**
+     * Tests that adding the test transactions in one batch gives the same results as adding them one by one.
+     */
+    @Test
+    public void testBatchTransactions() {
+        loadTests();
+        StockExchangeServiceImpl batchService = new StockExchangeServiceImpl();
+        batchService.createCommonStock(StockSymbol.TEA, 100.0, 0.0);
+        batchService.createCommonStock(StockSymbol.POP, 100.0, 8.0);
+        batchService.createCommonStock(StockSymbol.ALE, 60.0, 23.0);
+        batchService.createPreferredStock(StockSymbol.GIN, 100.0, 8.0, 0.02);
+        batchService.createCommonStock(StockSymbol.JOE, 250.0, 13.0);
+
+        TradeBatch batch = new TradeBatch(2);
+        long now = System.currentTimeMillis() * 1000000L;
+        batch.add(StockSymbol.POP, now, 80, TransactionType.SELL, 5.0);
+        batch.add(StockSymbol.GIN, now, 600, TransactionType.BUY, 23.0);
+        batch.add(StockSymbol.POP, now, 50, TransactionType.SELL, 6.0);
+        batch.add(StockSymbol.GIN, now, 200, TransactionType.SELL, 27.0);
+        batch.add(StockSymbol.POP, now, 100, TransactionType.BUY, 4.0);
+        batch.add(StockSymbol.GIN, now, 300, TransactionType.BUY, 25.0);
+        batch.add(StockSymbol.POP, now, 20, TransactionType.BUY, 7.0);
+        batchService.addTransactions(batch);
+
+        for (StockSymbol stockSymbol : new StockSymbol[] { StockSymbol.POP, StockSymbol.GIN }) {
+            ExpectedStockResult expectedResult = this.expectedResults.get(stockSymbol);
+            Assert.assertEquals(expectedResult.dividendYield, batchService.calculateDividendYield(stockSymbol));
+            Assert.assertEquals(expectedResult.peRatio, batchService.calculatePERatio(stockSymbol));
+            Assert.assertEquals(expectedResult.stockPrice, batchService.calculateStockPrice(stockSymbol));
+        }
+    }
+
+    /**
+     * Tests that the geometric mean follows the stock prices as transactions are added and age out.
+     */
+    @Test
+    public void testGeometricMeanFollowsStockPrices() {
+        StockExchangeServiceImpl indexService = new StockExchangeServiceImplGBCE();
+        Assert.assertEquals(Double.NaN, indexService.calculateGeometricMean(), 0.0);
+
+        long now = System.currentTimeMillis() * 1000000L;
+        indexService.addTransaction(StockSymbol.TEA, new Transaction(now, 10, TransactionType.BUY, 4.0));
+        Assert.assertEquals(Double.valueOf(4.0), indexService.calculateGeometricMean());
+
+        indexService.addTransaction(StockSymbol.POP, new Transaction(now, 10, TransactionType.BUY, 9.0));
+        Assert.assertEquals(Double.valueOf(6.0), indexService.calculateGeometricMean());
+
+        // a transaction older than the price window does not give ALE a valid stock price
+        long old = now - 20 * 60 * 1000000000L;
+        indexService.addTransaction(StockSymbol.ALE, new Transaction(old, 10, TransactionType.BUY, 1000.0));
+        Assert.assertEquals(Double.valueOf(6.0), indexService.calculateGeometricMean());
+
+        indexService.createCommonStock(StockSymbol.POP, 100.0, 8.0);
+        Assert.assertEquals(Double.valueOf(4.0), indexService.calculateGeometricMean());
+    }
+
+    /**
+     * Tests that the all-share index does not drift after its stock prices changed many times.
+     */
+    @Test
+    public void testGeometricMeanDoesNotDrift() {
+        MarketClock.EventTime clock = MarketClock.eventTime();
+        StockExchangeServiceImpl churnService = new StockExchangeServiceImpl(StockSettings.builder()
+                .retentionPolicy(RetentionPolicy.byCount(1)).clock(clock).build());
+        StockSymbol[] symbols = new StockSymbol[50];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = StockSymbol.valueOf("CHURN-" + i);
+            churnService.createCommonStock(symbols[i], 100.0, 1.0);
+        }
+        Random random = new Random(7);
+        long timestamp = TimeUnit.MINUTES.toNanos(1);
+        for (int i = 0; i < 100000; i++) {
+            churnService.addTransaction(symbols[random.nextInt(symbols.length)],
+                                        new Transaction(++timestamp, 10, TransactionType.BUY,
+                                                        0.01 + random.nextInt(100000000) / 100.0));
+            if (i % 10 == 0) {
+                churnService.calculateGeometricMeanAsDouble();
+            }
+        }
+        for (StockSymbol symbol : symbols) {
+            churnService.addTransaction(symbol, new Transaction(++timestamp, 10, TransactionType.SELL, 4.0));
+        }
+        Assert.assertEquals(4.0, churnService.calculateGeometricMeanAsDouble(), 0.0);
+    }
+
+    /**
+     * Tests that with an event-time clock the windows are driven by the trade timestamps and the watermark only.
+     */
+    @Test
+    public void testEventTimeWindows() {
+        MarketClock.EventTime clock = MarketClock.eventTime();
+        StockExchangeServiceImpl replayService = new StockExchangeServiceImplGBCE(StockSettings.builder()
+                .clock(clock).build());
+        long minute = TimeUnit.MINUTES.toNanos(1);
+
+        replayService.addTransaction(StockSymbol.TEA, new Transaction(minute, 10, TransactionType.BUY, 4.0));
+        replayService.addTransaction(StockSymbol.POP, new Transaction(10 * minute, 10, TransactionType.BUY, 9.0));
+        Assert.assertEquals(10 * minute, clock.nowNanos());
+        Assert.assertEquals(Double.valueOf(6.0), replayService.calculateGeometricMean());
+
+        clock.advanceWatermark(16 * minute);
+        Assert.assertEquals(Double.NaN, replayService.calculateStockPrice(StockSymbol.TEA), 0.0);
+        Assert.assertEquals(Double.valueOf(9.0), replayService.calculateGeometricMean());
+
+        // the watermark never goes backwards
+        clock.advanceWatermark(0L);
+        replayService.addTransaction(StockSymbol.TEA, new Transaction(2 * minute, 10, TransactionType.BUY, 4.0));
+        Assert.assertEquals(16 * minute, clock.nowNanos());
+
+        clock.advanceWatermark(25 * minute);
+        Assert.assertEquals(Double.NaN, replayService.calculateGeometricMean(), 0.0);
+    }
+
+    /**
+     * Tests that the prices of several lookback windows are kept over the same transactions.
+     */
+    @Test
+    public void testLookbackWindows() {
+        MarketClock.EventTime clock = MarketClock.eventTime();
+        StockExchangeServiceImpl windowService = new StockExchangeServiceImplGBCE(StockSettings.builder()
+                .clock(clock).build());
+        long minute = TimeUnit.MINUTES.toNanos(1);
+
+        windowService.addTransaction(StockSymbol.TEA, new Transaction(100 * minute, 100, TransactionType.BUY, 10.0));
+        windowService.addTransaction(StockSymbol.TEA, new Transaction(140 * minute, 100, TransactionType.BUY, 20.0));
+        windowService.addTransaction(StockSymbol.TEA, new Transaction(158 * minute, 200, TransactionType.SELL, 5.0));
+        clock.advanceWatermark(158 * minute + minute / 2);
+
+        Assert.assertEquals(Double.valueOf(5.0), windowService.calculateVwap(StockSymbol.TEA, 1, TimeUnit.MINUTES));
+        Assert.assertEquals(Double.valueOf(5.0), windowService.calculateVwap(StockSymbol.TEA, 5, TimeUnit.MINUTES));
+        Assert.assertEquals(Double.valueOf(5.0), windowService.calculateStockPrice(StockSymbol.TEA));
+        Assert.assertEquals(Double.valueOf(10.0), windowService.calculateVwap(StockSymbol.TEA, 60, TimeUnit.MINUTES));
+        // 10 for 40 minutes, 20 for 18 minutes, then 5 for half a minute
+        Assert.assertEquals(Double.valueOf(13.03), windowService.calculateTwap(StockSymbol.TEA, 60, TimeUnit.MINUTES));
+    }
+
+    /**
+     * Tests the rounding of the order flow by the service: the VWAPs are rounded down like the other prices, the
+     * imbalance is not rounded and the signed notional is rounded to the nearest cent whatever its sign.
+     */
+    @Test
+    public void testOrderFlowRounding() {
+        MarketClock.EventTime clock = MarketClock.eventTime();
+        StockExchangeServiceImpl flowService = new StockExchangeServiceImplGBCE(StockSettings.builder()
+                .clock(clock).build());
+        long minute = TimeUnit.MINUTES.toNanos(1);
+
+        flowService.addTransaction(StockSymbol.TEA, new Transaction(minute, 1, TransactionType.BUY, 10.006));
+        flowService.addTransaction(StockSymbol.TEA, new Transaction(2 * minute, 2, TransactionType.SELL, 15.0));
+        OrderFlow flow = flowService.calculateOrderFlow(StockSymbol.TEA, 15, TimeUnit.MINUTES);
+        Assert.assertEquals(10.0, flow.getBuyVwap(), 0.0);
+        Assert.assertEquals(15.0, flow.getSellVwap(), 0.0);
+        Assert.assertEquals(-1.0 / 3, flow.getImbalance(), 1e-15);
+        Assert.assertEquals(-19.99, flow.getSignedNotional(), 0.0);
+
+        flowService.addTransaction(StockSymbol.TEA, new Transaction(3 * minute, 4, TransactionType.BUY, 10.0));
+        flow = flowService.calculateOrderFlow(StockSymbol.TEA, 15, TimeUnit.MINUTES);
+        Assert.assertEquals(3.0 / 7, flow.getImbalance(), 1e-15);
+        Assert.assertEquals(20.01, flow.getSignedNotional(), 0.0);
+    }
+
+    /**
+     * Tests that a lookback window must be configured before it is queried.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownLookbackWindow() {
+        new StockExchangeServiceImplGBCE().calculateVwap(StockSymbol.TEA, 2, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Tests that subscribers get the metrics pushed as they change, conflated while they have no outstanding demand.
+     */
+    @Test
+    public void testMetricsSubscription() {
+        StockExchangeServiceImpl pushService = new StockExchangeServiceImplGBCE();
+        final List<StockMetrics> received = new ArrayList<>();
+        final List<Throwable> errors = new ArrayList<>();
+        final StockMetricsSubscription[] subscription = new StockMetricsSubscription[1];
+        Executor callerRuns = new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        };
+        pushService.subscribe(StockSymbol.POP, new StockMetricsSubscriber() {
+
+            @Override
+            public void onSubscribe(final StockMetricsSubscription newSubscription) {
+                subscription[0] = newSubscription;
+                newSubscription.request(1);
+            }
+
+            @Override
+            public void onNext(final StockMetrics metrics) {
+                received.add(metrics);
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                errors.add(throwable);
+            }
+        }, callerRuns);
+        Assert.assertEquals(1, received.size());
+        Assert.assertEquals(Double.NaN, received.get(0).getStockPrice(), 0.0);
+
+        long now = System.currentTimeMillis() * 1000000L;
+        pushService.addTransaction(StockSymbol.POP, new Transaction(now, 10, TransactionType.BUY, 10.0));
+        pushService.addTransaction(StockSymbol.POP, new Transaction(now, 10, TransactionType.BUY, 20.0));
+        Assert.assertEquals(1, received.size());
+
+        // only the latest metrics are delivered once more are requested
+        subscription[0].request(2);
+        Assert.assertEquals(2, received.size());
+        Assert.assertEquals(15.0, received.get(1).getStockPrice(), 0.0);
+        Assert.assertEquals(0.4, received.get(1).getDividendYield(), 0.0);
+        Assert.assertEquals(2.5, received.get(1).getPERatio(), 0.0);
+
+        // unchanged metrics are not pushed
+        pushService.getStock(StockSymbol.POP).setLastDividend(8.0);
+        Assert.assertEquals(2, received.size());
+        pushService.getStock(StockSymbol.POP).setLastDividend(4.0);
+        Assert.assertEquals(3, received.size());
+        Assert.assertEquals(5.0, received.get(2).getPERatio(), 0.0);
+
+        subscription[0].request(0);
+        Assert.assertEquals(1, errors.size());
+        pushService.addTransaction(StockSymbol.POP, new Transaction(now, 10, TransactionType.BUY, 30.0));
+        Assert.assertEquals(3, received.size());
+    }
+
+    /**
+     * Tests that the primitive queries and the bulk query agree with the boxed queries.
+     */
+    @Test
+    public void testPrimitiveQueries() {
+        StockExchangeServiceImpl scanService = new StockExchangeServiceImplGBCE();
+        long now = System.currentTimeMillis() * 1000000L;
+        scanService.addTransaction(StockSymbol.POP, new Transaction(now, 10, TransactionType.BUY, 10.0));
+        scanService.addTransaction(StockSymbol.GIN, new Transaction(now, 10, TransactionType.BUY, 4.0));
+
+        StockSymbol[] symbols = { StockSymbol.POP, StockSymbol.valueOf("UNLISTED"), StockSymbol.GIN, StockSymbol.TEA };
+        double[] stockPrices = new double[symbols.length];
+        double[] dividendYields = new double[symbols.length];
+        double[] peRatios = new double[symbols.length];
+        Assert.assertEquals(3, scanService.fillMetrics(symbols, stockPrices, dividendYields, peRatios));
+        for (int i = 0; i < symbols.length; i++) {
+            Assert.assertEquals(scanService.calculateStockPrice(symbols[i]), stockPrices[i], 0.0);
+            Assert.assertEquals(scanService.calculateStockPriceAsDouble(symbols[i]), stockPrices[i], 0.0);
+            Assert.assertEquals(scanService.calculateDividendYieldAsDouble(symbols[i]), dividendYields[i], 0.0);
+            Assert.assertEquals(scanService.calculatePERatioAsDouble(symbols[i]), peRatios[i], 0.0);
+        }
+        Assert.assertEquals(0.5, dividendYields[2], 0.0);
+        Assert.assertEquals(Double.NaN, stockPrices[1], 0.0);
+        Assert.assertEquals(Double.NaN, stockPrices[3], 0.0);
+        Assert.assertEquals(6.32, scanService.calculateGeometricMeanAsDouble(), 0.0);
+    }
+
+    /**
+     * Tests that the counters and latencies of the service are exported through JMX.
+     */
+    @Test
+    public void testJmxMetrics() throws Exception {
+        StockExchangeServiceImpl observedService = new StockExchangeServiceImplGBCE();
+        long now = System.currentTimeMillis() * 1000000L;
+        observedService.addTransaction(StockSymbol.TEA, new Transaction(now, 10, TransactionType.BUY, 10.0));
+        observedService.addTransaction(StockSymbol.TEA, new Transaction(now - TimeUnit.HOURS.toNanos(2), 10,
+                                                                        TransactionType.BUY, 10.0));
+        observedService.calculateStockPrice(StockSymbol.TEA);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try (JmxMetricsExporter exporter = new JmxMetricsExporter("test")) {
+            observedService.attachExporter(exporter);
+            TabularData added = (TabularData) server.getAttribute(exporter.getObjectName(), "AddedTransactions");
+            Assert.assertEquals(1L, added.get(new Object[] { "TEA" }).get("value"));
+            TabularData rejected = (TabularData) server.getAttribute(exporter.getObjectName(),
+                                                                     "RejectedTransactions");
+            Assert.assertEquals(1L, rejected.get(new Object[] { "TEA" }).get("value"));
+            TabularData latencies = (TabularData) server.getAttribute(exporter.getObjectName(), "Latencies");
+            CompositeData stockPrice = (CompositeData) latencies.get(new Object[] { "STOCK_PRICE" }).get("value");
+            Assert.assertEquals(1L, stockPrice.get("count"));
+        }
+        Assert.assertEquals(1, observedService.getStock(StockSymbol.TEA).getWindowDepth());
+    }
+
+    /**
+     * Tests that stocks can be listed for symbols registered at runtime.
+     */
+    @Test
+    public void testRuntimeSymbols() {
+        StockExchangeServiceImpl runtimeService = new StockExchangeServiceImpl();
+        StockSymbol first = StockSymbol.valueOf("RUNTIME-1");
+        Assert.assertSame(first, StockSymbol.valueOf("RUNTIME-1"));
+        Assert.assertSame(first, StockSymbol.forId(first.id()));
+
+        for (int i = 0; i < 100; i++) {
+            runtimeService.createCommonStock(StockSymbol.valueOf("RUNTIME-" + i), 100.0, 5.0);
+        }
+        StockSymbol last = StockSymbol.valueOf("RUNTIME-99");
+        runtimeService.addTransaction(last, new Transaction(10, TransactionType.BUY, 20.0));
+        Assert.assertEquals(Double.valueOf(0.25), runtimeService.calculateDividendYield(last));
+        Assert.assertEquals(Double.NaN, runtimeService.calculateStockPrice(StockSymbol.valueOf("UNLISTED")), 0.0);
+    }
+
     /**
      * Reads the stock data from the test file and adds it to the service.
      */
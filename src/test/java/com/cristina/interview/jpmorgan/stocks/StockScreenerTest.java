@@ -0,0 +1,84 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Tests {@link StockScreener}.
+ *
+ * @author CristinaGroapa
+ */
+public class StockScreenerTest {
+
+    /**
+     * Tests that a parallel screen keeps the same stocks, in the same order, as filtering and sorting the metrics
+     * returned by the service one stock at a time.
+     */
+    @Test
+    public void testTopK() {
+        final StockExchangeServiceImpl service = new StockExchangeServiceImpl();
+        TradeBatch batch = new TradeBatch();
+        long now = System.currentTimeMillis() * 1000000L;
+        List<StockSymbol> symbols = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            StockSymbol symbol = StockSymbol.valueOf("SCREEN-" + i);
+            symbols.add(symbol);
+            service.createCommonStock(symbol, 100.0, i % 37);
+            if (i % 10 != 0) {
+                batch.add(symbol, now, 100, TransactionType.BUY, 1.0 + i % 101);
+            }
+        }
+        service.addTransactions(batch);
+
+        StockScreener.Filter filter = new StockScreener.Filter() {
+
+            @Override
+            public boolean accept(final StockSymbol stockSymbol, final double stockPrice, final double dividendYield,
+                    final double peRatio) {
+                return stockPrice >= 20.0;
+            }
+        };
+        try (StockScreener screener = new StockScreener(service, 4)) {
+            ScreenResult result = screener.screen(filter, StockScreener.Metric.DIVIDEND_YIELD, true, 25);
+
+            List<StockSymbol> expected = new ArrayList<>();
+            for (StockSymbol symbol : symbols) {
+                if (service.calculateStockPriceAsDouble(symbol) >= 20.0) {
+                    expected.add(symbol);
+                }
+            }
+            Collections.sort(expected, new Comparator<StockSymbol>() {
+
+                @Override
+                public int compare(final StockSymbol first, final StockSymbol second) {
+                    int byYield = Double.compare(service.calculateDividendYieldAsDouble(second),
+                                                 service.calculateDividendYieldAsDouble(first));
+                    return byYield != 0 ? byYield : Integer.compare(first.id(), second.id());
+                }
+            });
+            Assert.assertEquals(25, result.size());
+            for (int rank = 0; rank < result.size(); rank++) {
+                StockSymbol symbol = expected.get(rank);
+                Assert.assertSame(symbol, result.getSymbol(rank));
+                Assert.assertEquals(service.calculateStockPriceAsDouble(symbol), result.getStockPrice(rank), 0.0);
+                Assert.assertEquals(service.calculateDividendYieldAsDouble(symbol), result.getDividendYield(rank), 0.0);
+                Assert.assertEquals(service.calculatePERatioAsDouble(symbol), result.getPERatio(rank), 0.0);
+            }
+
+            ScreenResult lowestPrices = screener.screen(StockScreener.ALL, StockScreener.Metric.STOCK_PRICE, false, 3);
+            Assert.assertEquals(3, lowestPrices.size());
+            Assert.assertEquals(1.0, lowestPrices.getStockPrice(0), 0.0);
+            Assert.assertEquals(1.0, lowestPrices.getStockPrice(2), 0.0);
+            Assert.assertTrue(lowestPrices.getSymbol(0).id() < lowestPrices.getSymbol(1).id());
+
+            Assert.assertEquals(3000, screener.screen(StockScreener.ALL).size());
+        }
+    }
+}
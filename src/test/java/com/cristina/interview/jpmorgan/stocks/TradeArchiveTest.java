@@ -0,0 +1,130 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Tests {@link TradeArchiveWriter} and {@link TradeArchiveReader}.
+ *
+ * @author CristinaGroapa
+ */
+public class TradeArchiveTest {
+
+    /** Holds the archive files */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that the trades read back from an archive are exactly those written, that a range scan only decodes the
+     * blocks overlapping the range, and that the archive is much smaller than the raw trades.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        File file = this.folder.newFile("trades.archive");
+        Random random = new Random(42);
+        long startNanos = TimeUnit.HOURS.toNanos(400000);
+        int count = 10000;
+
+        TradeBatch written = new TradeBatch();
+        long timestamp = startNanos;
+        double price = 100.0;
+        for (int i = 0; i < count; i++) {
+            timestamp += random.nextInt(4) == 0 ? random.nextInt(1000000) : 1000000;
+            price = Math.max(0.01, Math.round(price * 100 + random.nextInt(11) - 5) / 100.0);
+            long quantity = i == 7 ? Long.MAX_VALUE : 1 + random.nextInt(i % 10 == 0 ? 1000000 : 100);
+            written.add(StockSymbol.TEA, timestamp, quantity, random.nextBoolean() ? TransactionType.BUY
+                    : TransactionType.SELL, price);
+            if (i % 100 == 0) {
+                written.add(StockSymbol.POP, timestamp, 10, TransactionType.SELL, 20.0);
+            }
+        }
+        try (TradeArchiveWriter writer = new TradeArchiveWriter(file)) {
+            Assert.assertEquals(count + count / 100, writer.append(written));
+        }
+        Assert.assertTrue("Archive of " + file.length() + " bytes", file.length() < count * 25L / 2);
+
+        try (TradeArchiveReader reader = new TradeArchiveReader(file)) {
+            Assert.assertEquals(count, reader.getTradeCount(StockSymbol.TEA));
+            Assert.assertEquals(count / 100, reader.getTradeCount(StockSymbol.POP));
+            Assert.assertEquals(0L, reader.getTradeCount(StockSymbol.GIN));
+            Assert.assertEquals(new HashSet<>(Arrays.asList("TEA", "POP")), reader.getTickers());
+
+            TradeBatch read = new TradeBatch();
+            Assert.assertEquals(count, reader.scan(StockSymbol.TEA, Long.MIN_VALUE, Long.MAX_VALUE, read));
+            written.groupBySymbol();
+            read.groupBySymbol();
+            for (int i = 0; i < count; i++) {
+                int expected = written.orderedIndex(i);
+                int actual = read.orderedIndex(i);
+                Assert.assertEquals(written.timestamp(expected), read.timestamp(actual));
+                Assert.assertEquals(written.quantity(expected), read.quantity(actual));
+                Assert.assertEquals(written.side(expected), read.side(actual));
+                Assert.assertEquals(Double.doubleToRawLongBits(written.price(expected)),
+                                    Double.doubleToRawLongBits(read.price(actual)));
+            }
+
+            long fromNanos = written.timestamp(written.orderedIndex(4200));
+            long toNanos = written.timestamp(written.orderedIndex(4800));
+            double priceQuantitySum = 0.0;
+            long quantitySum = 0L;
+            for (int i = 4200; i < 4800; i++) {
+                int index = written.orderedIndex(i);
+                priceQuantitySum += written.price(index) * written.quantity(index);
+                quantitySum += written.quantity(index);
+            }
+            long decodedBefore = reader.getDecodedBlocks();
+            Assert.assertEquals(priceQuantitySum / quantitySum,
+                                reader.calculateVwap(StockSymbol.TEA, fromNanos, toNanos), 1e-9);
+            Assert.assertEquals(1L, reader.getDecodedBlocks() - decodedBefore);
+            Assert.assertTrue(Double.isNaN(reader.calculateVwap(StockSymbol.GIN, fromNanos, toNanos)));
+        }
+    }
+
+    /**
+     * Tests archiving the transaction history of the stocks of a service periodically, and that trades older than
+     * those already archived for a stock are rejected.
+     */
+    @Test
+    public void testAppendStocks() throws Exception {
+        File file = this.folder.newFile("stocks.archive");
+        long nowNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        StockExchangeServiceImpl service = new StockExchangeServiceImplGBCE();
+        service.addTransaction(StockSymbol.GIN, new Transaction(nowNanos - 2, 100, TransactionType.BUY, 5.0));
+        service.addTransaction(StockSymbol.GIN, new Transaction(nowNanos - 1, 300, TransactionType.SELL, 7.0));
+        service.addTransaction(StockSymbol.ALE, new Transaction(nowNanos, 50, TransactionType.BUY, 12.5));
+
+        try (TradeArchiveWriter writer = new TradeArchiveWriter(file)) {
+            Assert.assertEquals(3L, writer.appendStocks(service));
+            Assert.assertEquals(0L, writer.appendStocks(service));
+            service.addTransaction(StockSymbol.GIN, new Transaction(nowNanos, 200, TransactionType.BUY, 8.0));
+            Assert.assertEquals(1L, writer.appendStocks(service));
+            TradeBatch late = new TradeBatch();
+            late.add(StockSymbol.GIN, nowNanos - 3, 1, TransactionType.BUY, 1.0);
+            try {
+                writer.append(late);
+                Assert.fail("Trades older than the archived ones should be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        try (TradeArchiveReader reader = new TradeArchiveReader(file)) {
+            Assert.assertEquals(3L, reader.getTradeCount(StockSymbol.GIN));
+            Assert.assertEquals(6.5, reader.calculateVwap(StockSymbol.GIN, nowNanos - 2, nowNanos), 1e-12);
+            Assert.assertEquals(12.5, reader.calculateVwap(StockSymbol.ALE, nowNanos, nowNanos + 1), 1e-12);
+            TradeBatch batch = new TradeBatch();
+            Assert.assertEquals(1, reader.scan(StockSymbol.GIN, nowNanos - 1, nowNanos, batch));
+            Assert.assertEquals(TradeStore.toSide(TransactionType.SELL), batch.side(0));
+        }
+    }
+}
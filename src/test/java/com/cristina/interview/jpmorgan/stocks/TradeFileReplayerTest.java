@@ -0,0 +1,70 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link TradeFileReplayer}.
+ *
+ * @author CristinaGroapa
+ */
+public class TradeFileReplayerTest {
+
+    /** Holds the trade files */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that the trades of a file spanning several segments and chunks all reach their stocks, keeping the
+     * timestamps of the file, and that the trades of unknown tickers are skipped without registering the tickers.
+     */
+    @Test
+    public void testReplay() throws Exception {
+        long nowNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        File file = this.folder.newFile("trades.txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.US_ASCII)) {
+            writer.write("# ticker timestamp side quantity price\n\n");
+            for (int i = 0; i < 100; i++) {
+                writer.write("TEA " + (nowNanos - i) + " BUY 100 12\n");
+                writer.write("POP\t" + (nowNanos - i) + "\tSELL\t80\t5.50\r\n");
+                writer.write("NOT-LISTED " + (nowNanos - i) + " SELL 10 1.5\n");
+            }
+            writer.write("GIN " + nowNanos + " BUY 600 23.25");
+        }
+
+        StockExchangeServiceImpl service = new StockExchangeServiceImplGBCE();
+        try (TradeFileReplayer replayer = new TradeFileReplayer(service, 3, 100)) {
+            Assert.assertEquals(201L, replayer.replay(file));
+            Assert.assertEquals(100L, replayer.getLastUnknownTrades());
+        }
+        Assert.assertNull(StockSymbol.lookup("NOT-LISTED"));
+        Assert.assertEquals(100, service.getStock(StockSymbol.TEA).getTransactionCount());
+        Assert.assertEquals(100, service.getStock(StockSymbol.POP).getTransactionCount());
+        Assert.assertEquals(Double.valueOf(12.0), service.calculateStockPrice(StockSymbol.TEA));
+        Assert.assertEquals(Double.valueOf(5.5), service.calculateStockPrice(StockSymbol.POP));
+        Assert.assertEquals(Double.valueOf(23.25), service.calculateStockPrice(StockSymbol.GIN));
+    }
+
+    /**
+     * Tests that a malformed line is reported.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedLine() throws Exception {
+        File file = this.folder.newFile("malformed.txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.US_ASCII)) {
+            writer.write("TEA 1 HOLD 100 12\n");
+        }
+        try (TradeFileReplayer replayer = new TradeFileReplayer(new StockExchangeServiceImplGBCE(), 2, 100)) {
+            replayer.replay(file);
+        }
+    }
+}
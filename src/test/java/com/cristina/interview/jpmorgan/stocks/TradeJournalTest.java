@@ -0,0 +1,185 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.cristina.interview.jpmorgan.stocks.Transaction.TransactionType;
+
+/**
+ * Tests {@link TradeJournal}.
+ *
+ * @author CristinaGroapa
+ */
+public class TradeJournalTest {
+
+    /** Holds the journal files */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that a restarted service gets back the trades of the longest lookback window from the journal, and skips
+     * the older ones.
+     */
+    @Test
+    public void testRecovery() throws Exception {
+        File file = new File(this.folder.getRoot(), "trades.journal");
+        long nowNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+
+        StockExchangeServiceImpl service = new StockExchangeServiceImplGBCE();
+        try (TradeJournal journal = new TradeJournal(file, 4)) {
+            Assert.assertEquals(0L, service.attachJournal(journal));
+            service.addTransaction(StockSymbol.TEA, new Transaction(nowNanos - TimeUnit.MINUTES.toNanos(90), 100,
+                                                                    TransactionType.BUY, 50.0));
+            TradeBatch batch = new TradeBatch();
+            for (int i = 0; i < 10; i++) {
+                batch.add(StockSymbol.POP, nowNanos - i, 100, TransactionType.SELL, 20.0);
+            }
+            batch.add(StockSymbol.TEA, nowNanos, 300, TransactionType.BUY, 10.0);
+            service.addTransactions(batch);
+            Assert.assertEquals(12L, journal.size());
+        }
+
+        StockExchangeServiceImpl restarted = new StockExchangeServiceImplGBCE();
+        try (TradeJournal journal = new TradeJournal(file, 4)) {
+            Assert.assertEquals(12L, journal.size());
+            Assert.assertEquals(11L, restarted.attachJournal(journal));
+            Assert.assertEquals(Double.valueOf(10.0), restarted.calculateStockPrice(StockSymbol.TEA));
+            Assert.assertEquals(Double.valueOf(20.0), restarted.calculateStockPrice(StockSymbol.POP));
+            Assert.assertEquals(1, restarted.getStock(StockSymbol.TEA).getTransactionCount());
+
+            restarted.addTransaction(StockSymbol.GIN, new Transaction(100, TransactionType.BUY, 5.0));
+            Assert.assertEquals(13L, journal.size());
+        }
+    }
+
+    /**
+     * Tests that the trades rejected by their stock, single or batched, are not journaled.
+     */
+    @Test
+    public void testRejectedTradesAreNotJournaled() throws Exception {
+        File file = new File(this.folder.getRoot(), "trades.journal");
+        long nowNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        long lateNanos = nowNanos - TimeUnit.HOURS.toNanos(2);
+
+        StockExchangeServiceImpl service = new StockExchangeServiceImplGBCE();
+        try (TradeJournal journal = new TradeJournal(file, 4)) {
+            service.attachJournal(journal);
+            service.addTransaction(StockSymbol.TEA, new Transaction(nowNanos, 100, TransactionType.BUY, 50.0));
+            service.addTransaction(StockSymbol.TEA, new Transaction(lateNanos, 100, TransactionType.BUY, 60.0));
+            TradeBatch batch = new TradeBatch();
+            batch.add(StockSymbol.TEA, lateNanos, 100, TransactionType.SELL, 70.0);
+            batch.add(StockSymbol.TEA, nowNanos - 1, 100, TransactionType.SELL, 40.0);
+            service.addTransactions(batch);
+            Assert.assertEquals(2L, journal.size());
+        }
+    }
+
+    /**
+     * Tests that the segments holding only trades older than the retention are deleted when new segments are started.
+     */
+    @Test
+    public void testSegmentRetirement() throws Exception {
+        File file = new File(this.folder.getRoot(), "trades.journal");
+        try (TradeJournal journal = new TradeJournal(file, 4)) {
+            journal.retainFor(100L);
+            for (long timestampNanos = 1; timestampNanos <= 40; timestampNanos++) {
+                journal.append(StockSymbol.TEA, timestampNanos * 10, 100, TradeStore.SIDE_BUY, 10.0);
+            }
+            Assert.assertEquals(40L, journal.size());
+            Assert.assertFalse(new File(file.getPath() + ".0").exists());
+            Assert.assertFalse(new File(file.getPath() + ".5").exists());
+            Assert.assertTrue(new File(file.getPath() + ".6").exists());
+            Assert.assertTrue(new File(file.getPath() + ".9").exists());
+        }
+
+        StockExchangeServiceImpl restarted = new StockExchangeServiceImplGBCE();
+        try (TradeJournal journal = new TradeJournal(file, 4)) {
+            Assert.assertEquals(40L, journal.size());
+            Assert.assertEquals(40L - 4 * 6, journal.replay(restarted, 0L));
+        }
+    }
+
+    /**
+     * Tests that trades journaled out of chronological order - e.g. late trades - are all replayed, and that a segment
+     * is not retired while one of its trades, though not the last one, is within the retention.
+     */
+    @Test
+    public void testOutOfOrderTrades() throws Exception {
+        File file = new File(this.folder.getRoot(), "trades.journal");
+        long nowNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        try (TradeJournal journal = new TradeJournal(file, 2)) {
+            journal.append(StockSymbol.TEA, nowNanos - TimeUnit.MINUTES.toNanos(10), 100, TradeStore.SIDE_BUY, 10.0);
+            journal.append(StockSymbol.TEA, nowNanos - TimeUnit.MINUTES.toNanos(4), 100, TradeStore.SIDE_BUY, 10.0);
+            journal.append(StockSymbol.TEA, nowNanos - TimeUnit.MINUTES.toNanos(70), 100, TradeStore.SIDE_BUY, 10.0);
+            journal.append(StockSymbol.TEA, nowNanos - TimeUnit.MINUTES.toNanos(1), 100, TradeStore.SIDE_BUY, 10.0);
+        }
+
+        StockExchangeServiceImpl restarted = new StockExchangeServiceImplGBCE();
+        try (TradeJournal journal = new TradeJournal(file, 2)) {
+            Assert.assertEquals(3L, restarted.attachJournal(journal));
+            Assert.assertEquals(3, restarted.getStock(StockSymbol.TEA).getTransactionCount());
+        }
+
+        File retiring = new File(this.folder.getRoot(), "retiring.journal");
+        try (TradeJournal journal = new TradeJournal(retiring, 2)) {
+            journal.retainFor(100L);
+            long[] timestamps = {550, 10, 20, 30, 40, 50, 600, 610};
+            for (long timestampNanos : timestamps) {
+                journal.append(StockSymbol.TEA, timestampNanos, 100, TradeStore.SIDE_BUY, 10.0);
+            }
+            Assert.assertTrue(new File(retiring.getPath() + ".0").exists());
+            Assert.assertEquals(0, journal.retireBefore(549L));
+            Assert.assertEquals(3, journal.retireBefore(550L));
+            Assert.assertFalse(new File(retiring.getPath() + ".2").exists());
+        }
+    }
+
+    /**
+     * Tests that a trade with a zero timestamp is journaled like any other.
+     */
+    @Test
+    public void testZeroTimestamp() throws Exception {
+        File file = new File(this.folder.getRoot(), "trades.journal");
+        try (TradeJournal journal = new TradeJournal(file, 4)) {
+            journal.append(StockSymbol.TEA, 1L, 100, TradeStore.SIDE_BUY, 10.0);
+            journal.append(StockSymbol.TEA, 0L, 100, TradeStore.SIDE_BUY, 20.0);
+        }
+
+        StockExchangeServiceImpl restarted = new StockExchangeServiceImplGBCE(StockSettings.builder()
+                .clock(MarketClock.eventTime()).build());
+        try (TradeJournal journal = new TradeJournal(file, 4)) {
+            Assert.assertEquals(2L, journal.size());
+            Assert.assertEquals(2L, journal.replay(restarted, -1L));
+        }
+    }
+
+    /**
+     * Tests that a torn record - e.g. partly written before a crash - is detected by its checksum and skipped.
+     */
+    @Test
+    public void testTornRecordIsSkipped() throws Exception {
+        File file = new File(this.folder.getRoot(), "trades.journal");
+        try (TradeJournal journal = new TradeJournal(file, 4)) {
+            for (long timestampNanos = 1; timestampNanos <= 3; timestampNanos++) {
+                journal.append(StockSymbol.TEA, timestampNanos, 100, TradeStore.SIDE_BUY, 10.0 * timestampNanos);
+            }
+        }
+        try (RandomAccessFile segment = new RandomAccessFile(file.getPath() + ".0", "rw")) {
+            // the price of the second record, as if the crash happened before it was written
+            segment.seek(TradeJournal.RECORD_SIZE + 16);
+            segment.writeLong(0L);
+        }
+
+        StockExchangeServiceImpl restarted = new StockExchangeServiceImplGBCE();
+        try (TradeJournal journal = new TradeJournal(file, 4)) {
+            Assert.assertEquals(2L, journal.replay(restarted, 0L));
+            Assert.assertEquals(2, restarted.getStock(StockSymbol.TEA).getTransactionCount());
+        }
+    }
+}
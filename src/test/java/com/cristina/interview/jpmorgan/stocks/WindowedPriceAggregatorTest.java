@@ -0,0 +1,113 @@
+package com.cristina.interview.jpmorgan.stocks;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link WindowedPriceAggregator}.
+ *
+ * @author CristinaGroapa
+ */
+public class WindowedPriceAggregatorTest {
+
+    /** The length of the window used in the tests */
+    private static final long WINDOW = 1000L;
+
+    /**
+     * Tests that transactions are taken into account while inside the window and discarded once they age out.
+     */
+    @Test
+    public void testTransactionsAgeOut() {
+        TradeStore store = new TradeStore();
+        WindowedPriceAggregator aggregator = new WindowedPriceAggregator(store, WINDOW);
+        aggregator.add(store.append(100L, 100, TradeStore.SIDE_BUY, 10.0));
+        aggregator.add(store.append(200L, 300, TradeStore.SIDE_SELL, 20.0));
+        aggregator.add(store.append(300L, 100, TradeStore.SIDE_BUY, 30.0));
+
+        Assert.assertEquals(20.0, aggregator.calculatePrice(1000L), 0.0);
+        // the first transaction is exactly at the start of the window, so it is excluded
+        Assert.assertEquals(22.5, aggregator.calculatePrice(1100L), 0.0);
+        Assert.assertEquals(30.0, aggregator.calculatePrice(1299L), 0.0);
+        Assert.assertTrue(Double.isNaN(aggregator.calculatePrice(1300L)));
+    }
+
+    /**
+     * Tests that trades evicted from the store are also removed from the window.
+     */
+    @Test
+    public void testEvictedTradesLeaveTheWindow() {
+        TradeStore store = new TradeStore();
+        WindowedPriceAggregator aggregator = new WindowedPriceAggregator(store, WINDOW);
+        for (int i = 0; i < 40; i++) {
+            aggregator.add(store.append(i, 10, TradeStore.SIDE_BUY, i));
+        }
+        Assert.assertEquals(19.5, aggregator.calculatePrice(100L), 0.0);
+
+        aggregator.evictTo(30L);
+        store.evictTo(30L);
+        Assert.assertEquals(34.5, aggregator.calculatePrice(100L), 0.0);
+    }
+
+    /**
+     * Tests that the aggregator keeps working after the window became empty.
+     */
+    @Test
+    public void testAddAfterEmptyWindow() {
+        TradeStore store = new TradeStore();
+        WindowedPriceAggregator aggregator = new WindowedPriceAggregator(store, WINDOW);
+        aggregator.add(store.append(100L, 100, TradeStore.SIDE_BUY, 10.0));
+        Assert.assertTrue(Double.isNaN(aggregator.calculatePrice(5000L)));
+
+        aggregator.add(store.append(5000L, 50, TradeStore.SIDE_BUY, 12.0));
+        Assert.assertEquals(12.0, aggregator.calculatePrice(5500L), 0.0);
+    }
+
+    /**
+     * Tests that late trades are inserted in chronological order and only counted when they fall inside the window.
+     */
+    @Test
+    public void testLateTrades() {
+        TradeStore store = new TradeStore();
+        WindowedPriceAggregator aggregator = new WindowedPriceAggregator(store, WINDOW);
+        aggregator.add(store.append(100L, 100, TradeStore.SIDE_BUY, 10.0));
+        aggregator.add(store.append(300L, 100, TradeStore.SIDE_BUY, 30.0));
+        Assert.assertEquals(30.0, aggregator.calculatePrice(1150L), 0.0);
+
+        aggregator.insert(store.insert(200L, 100, TradeStore.SIDE_SELL, 20.0));
+        Assert.assertEquals(25.0, aggregator.calculatePrice(1150L), 0.0);
+
+        // the window already started after this trade, so it is stored but not counted
+        aggregator.insert(store.insert(120L, 100, TradeStore.SIDE_BUY, 1000.0));
+        Assert.assertEquals(25.0, aggregator.calculatePrice(1150L), 0.0);
+        Assert.assertEquals(200L, aggregator.getWindowStartTimestamp());
+
+        long[] expected = {100L, 120L, 200L, 300L};
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], store.timestamp(store.tail() + i));
+        }
+        Assert.assertEquals(30.0, aggregator.calculatePrice(1250L), 0.0);
+    }
+
+    /**
+     * Tests that the time weighted price holds each price until the next trade, and follows late and expired trades.
+     */
+    @Test
+    public void testTimeWeightedPrice() {
+        TradeStore store = new TradeStore();
+        WindowedPriceAggregator aggregator = new WindowedPriceAggregator(store, WINDOW);
+        Assert.assertTrue(Double.isNaN(aggregator.calculateTimeWeightedPrice(0L)));
+
+        aggregator.add(store.append(100L, 100, TradeStore.SIDE_BUY, 10.0));
+        Assert.assertEquals(10.0, aggregator.calculateTimeWeightedPrice(100L), 0.0);
+        aggregator.add(store.append(300L, 1, TradeStore.SIDE_BUY, 20.0));
+        // 10 for 200ns, then 20 for 100ns
+        Assert.assertEquals(40.0 / 3, aggregator.calculateTimeWeightedPrice(400L), 1e-9);
+
+        // 10 for 100ns, 40 for 100ns, then 20 for 100ns
+        aggregator.insert(store.insert(200L, 1, TradeStore.SIDE_SELL, 40.0));
+        Assert.assertEquals(70.0 / 3, aggregator.calculateTimeWeightedPrice(400L), 1e-9);
+
+        // the first trade aged out: 40 for 100ns, then 20 for 800ns
+        Assert.assertEquals(200.0 / 9, aggregator.calculateTimeWeightedPrice(1100L), 1e-9);
+    }
+}